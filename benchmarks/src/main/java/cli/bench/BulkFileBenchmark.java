@@ -0,0 +1,71 @@
+package cli.bench;
+
+import cli.TerminalParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating and removing {@value #FILES} files, one {@code touch} and one {@code rm} command per
+ * file as a script would have to before {@code xargs}, against {@code xargs} batches run on one
+ * and on several workers. Scores are files created and removed per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BulkFileBenchmark.FILES)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkFileBenchmark {
+    static final int FILES = 10_000;
+
+    @Param({"disk", "memory"})
+    public String fileSystem;
+
+    private Path directory;
+    private TerminalParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Shells.scratchDirectory(fileSystem, "bulk-bench");
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < FILES; i++) {
+            names.append("files/file-").append(i).append('\n');
+        }
+        Files.writeString(directory.resolve("names.txt"), names);
+        Files.createDirectory(directory.resolve("files"));
+        parser = Shells.silentParser(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Shells.delete(directory);
+    }
+
+    @Benchmark
+    public int commandPerFile() {
+        int status = 0;
+        for (int i = 0; i < FILES; i++) {
+            status |= parser.processInput("touch files/file-" + i);
+        }
+        for (int i = 0; i < FILES; i++) {
+            status |= parser.processInput("rm files/file-" + i);
+        }
+        return status;
+    }
+
+    @Benchmark
+    public int xargsBatches() {
+        return parser.processInput("xargs touch < names.txt") | parser.processInput("xargs rm < names.txt");
+    }
+
+    @Benchmark
+    public int xargsParallelBatches() {
+        return parser.processInput("xargs -n 500 -P 8 touch < names.txt")
+                | parser.processInput("xargs -n 500 -P 8 rm < names.txt");
+    }
+}
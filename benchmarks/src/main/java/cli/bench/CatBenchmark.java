@@ -0,0 +1,47 @@
+package cli.bench;
+
+import cli.TerminalParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** {@code cat} of 1 MB to 1 GB files, to the terminal and into a file. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatBenchmark {
+    @Param({"1MB", "64MB", "1GB"})
+    public String size;
+
+    private Path directory;
+    private TerminalParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cat-bench");
+        Shells.createFile(directory.resolve("data.txt"), Shells.parseSize(size));
+        parser = Shells.silentParser(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Shells.delete(directory);
+    }
+
+    @Benchmark
+    public int catToTerminal() {
+        return parser.processInput("cat data.txt");
+    }
+
+    @Benchmark
+    public int catToFile() throws IOException {
+        Files.deleteIfExists(directory.resolve("copy.txt"));
+        return parser.processInput("cat data.txt > copy.txt");
+    }
+}
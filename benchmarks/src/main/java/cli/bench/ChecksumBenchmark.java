@@ -0,0 +1,59 @@
+package cli.bench;
+
+import cli.TerminalParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code sha256sum} over many small files, {@code crc32c} of one large file and {@code du} of a
+ * tree; run with different {@code -XX:ActiveProcessorCount} values to see how each scales.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChecksumBenchmark {
+    private static final int SMALL_FILES = 2_000;
+    private static final long SMALL_FILE_SIZE = 64 * 1024;
+    private static final long LARGE_FILE_SIZE = 512L * 1024 * 1024;
+
+    private Path directory;
+    private TerminalParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("checksum-bench");
+        Path small = Files.createDirectories(directory.resolve("small"));
+        for (int i = 0; i < SMALL_FILES; i++) {
+            Shells.createFile(small.resolve("file-" + i), SMALL_FILE_SIZE);
+        }
+        Shells.createFile(directory.resolve("large.bin"), LARGE_FILE_SIZE);
+        parser = Shells.silentParser(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Shells.delete(directory);
+    }
+
+    @Benchmark
+    public int sha256ManyFiles() {
+        return parser.processInput("sha256sum small/*");
+    }
+
+    @Benchmark
+    public int crc32cLargeFile() {
+        return parser.processInput("crc32c large.bin");
+    }
+
+    @Benchmark
+    public int duTree() {
+        return parser.processInput("du -s .");
+    }
+}
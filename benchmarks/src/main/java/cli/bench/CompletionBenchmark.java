@@ -0,0 +1,60 @@
+package cli.bench;
+
+import cli.Completion;
+import cli.TerminalParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** Tab completion in a directory of 100k entries, warm and right after the shell changed it. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompletionBenchmark {
+    @Param({"100000"})
+    public int entries;
+
+    @Param({"disk", "memory"})
+    public String fileSystem;
+
+    private Path directory;
+    private TerminalParser parser;
+    private int touched;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Shells.scratchDirectory(fileSystem, "completion-bench");
+        for (int i = 0; i < entries; i++) {
+            Files.createFile(directory.resolve("entry-" + i + ".dat"));
+        }
+        parser = Shells.silentParser(directory);
+        parser.complete("cat entry-");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Shells.delete(directory);
+    }
+
+    @Benchmark
+    public Completion completeCommonPrefix() {
+        return parser.complete("cat entry-4");
+    }
+
+    @Benchmark
+    public Completion completeUnique() {
+        return parser.complete("wc -l entry-4242");
+    }
+
+    @Benchmark
+    public Completion completeAfterTouch() {
+        parser.processInput("touch new-" + touched++);
+        return parser.complete("cat new-");
+    }
+}
@@ -0,0 +1,51 @@
+package cli.bench;
+
+import cli.TerminalParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** {@code ls} over directories of 10, 10k and 1M entries, on disk and in memory. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LsBenchmark {
+    @Param({"10", "10000", "1000000"})
+    public int entries;
+
+    @Param({"disk", "memory"})
+    public String fileSystem;
+
+    private Path directory;
+    private TerminalParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Shells.scratchDirectory(fileSystem, "ls-bench");
+        for (int i = 0; i < entries; i++) {
+            Files.createFile(directory.resolve("file-" + i + ".txt"));
+        }
+        parser = Shells.silentParser(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Shells.delete(directory);
+    }
+
+    @Benchmark
+    public int ls() {
+        return parser.processInput("ls");
+    }
+
+    @Benchmark
+    public int lsReverseAll() {
+        return parser.processInput("ls -a -r");
+    }
+}
@@ -0,0 +1,56 @@
+package cli.bench;
+
+import cli.CommandLexer;
+import cli.CommandLine;
+import cli.TerminalParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** Per-line cost of turning input into a {@link CommandLine}, with and without the parse cache. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+    @Param({"pwd", "cat 'a b.txt' | ls -r | cat >> \"out file.txt\""})
+    public String line;
+
+    private CommandLexer uncached;
+    private CommandLexer cached;
+    private TerminalParser parser;
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        uncached = new CommandLexer(0);
+        cached = new CommandLexer();
+        directory = Files.createTempDirectory("parse-bench");
+        parser = Shells.silentParser(directory);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Shells.delete(directory);
+    }
+
+    @Benchmark
+    public CommandLine parseUncached() {
+        return uncached.parse(line);
+    }
+
+    @Benchmark
+    public CommandLine parseCached() {
+        return cached.parse(line);
+    }
+
+    @Benchmark
+    public int processInputPwd() {
+        return parser.processInput("pwd");
+    }
+}
@@ -0,0 +1,52 @@
+package cli.bench;
+
+import cli.TerminalParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a file through {@code cat | cat | ...} pipelines of increasing length; in memory, only
+ * the pipes themselves are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+    @Param({"1", "2", "4"})
+    public int stages;
+
+    @Param({"1MB", "64MB"})
+    public String size;
+
+    @Param({"disk", "memory"})
+    public String fileSystem;
+
+    private Path directory;
+    private TerminalParser parser;
+    private String command;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Shells.scratchDirectory(fileSystem, "pipe-bench");
+        Shells.createFile(directory.resolve("data.txt"), Shells.parseSize(size));
+        parser = Shells.silentParser(directory);
+        command = "cat data.txt" + " | cat".repeat(stages - 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Shells.delete(directory);
+    }
+
+    @Benchmark
+    public int pipeline() {
+        return parser.processInput(command);
+    }
+}
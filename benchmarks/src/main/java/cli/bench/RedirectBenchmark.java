@@ -0,0 +1,75 @@
+package cli.bench;
+
+import cli.RedirectionManager;
+import cli.TerminalParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of small {@code >} and {@code >>} redirections, the pattern of logging scripts, in
+ * redirections per second. {@link #append} keeps hitting one cached channel, while
+ * {@link #appendRotating} cycles through more logs than the session keeps open, so every append
+ * pays for an open and a close.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RedirectBenchmark {
+    private static final int ROTATING_LOGS = 2 * RedirectionManager.MAX_OPEN_FILES;
+
+    private Path directory;
+    private TerminalParser parser;
+    private String[] rotatingCommands;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("redirect-bench");
+        parser = Shells.silentParser(directory);
+        rotatingCommands = new String[ROTATING_LOGS];
+        for (int i = 0; i < ROTATING_LOGS; i++) {
+            rotatingCommands[i] = "pwd >> log-" + i + ".txt";
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        parser.close();
+        Shells.delete(directory);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncateLog() throws IOException {
+        Files.deleteIfExists(directory.resolve("log.txt"));
+        Files.createFile(directory.resolve("log.txt"));
+    }
+
+    @Benchmark
+    public int overwrite() {
+        return parser.processInput("pwd > out.txt");
+    }
+
+    @Benchmark
+    public int append() {
+        return parser.processInput("pwd >> log.txt");
+    }
+
+    @Benchmark
+    public int appendRotating() {
+        String command = rotatingCommands[next];
+        next = (next + 1) % ROTATING_LOGS;
+        return parser.processInput(command);
+    }
+
+    @Benchmark
+    public int appendBothStreams() {
+        return parser.processInput("pwd >> log.txt 2>&1");
+    }
+}
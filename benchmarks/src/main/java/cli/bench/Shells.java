@@ -0,0 +1,85 @@
+package cli.bench;
+
+import cli.MemoryFileSystem;
+import cli.TerminalParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/** Fixtures shared by the benchmarks: silent parsers and scratch trees on disk or in memory. */
+final class Shells {
+    private Shells() {
+    }
+
+    /** A parser whose terminal output is discarded, so only the shell's own work is measured. */
+    static TerminalParser silentParser(Path directory) {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        return new TerminalParser(directory, InputStream.nullInputStream(), discard, discard);
+    }
+
+    /**
+     * A fresh scratch directory: a temp directory on disk for {@code "disk"}, or one in a new
+     * {@link MemoryFileSystem} for {@code "memory"}, to measure the shell without the disk.
+     */
+    static Path scratchDirectory(String fileSystem, String prefix) throws IOException {
+        if (fileSystem.equals("memory")) {
+            return Files.createDirectory(MemoryFileSystem.newFileSystem().getPath("/" + prefix));
+        }
+        return Files.createTempDirectory(prefix);
+    }
+
+    static Path createFile(Path file, long size) throws IOException {
+        byte[] line = "0123456789 the quick brown fox jumps over the lazy dog 0123456789\n".getBytes();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 20);
+            while (chunk.remaining() >= line.length) {
+                chunk.put(line);
+            }
+            chunk.flip();
+            long written = 0;
+            while (written < size) {
+                chunk.limit((int) Math.min(chunk.capacity() - chunk.capacity() % line.length, size - written));
+                chunk.position(0);
+                written += channel.write(chunk);
+            }
+        }
+        return file;
+    }
+
+    static long parseSize(String size) {
+        String unit = size.replaceAll("[0-9]", "");
+        long amount = Long.parseLong(size.substring(0, size.length() - unit.length()));
+        switch (unit) {
+            case "KB":
+                return amount << 10;
+            case "MB":
+                return amount << 20;
+            case "GB":
+                return amount << 30;
+            default:
+                return amount;
+        }
+    }
+
+    static void delete(Path root) throws IOException {
+        if (root == null) return;
+        if (root.getFileSystem() instanceof MemoryFileSystem) {
+            root.getFileSystem().close();
+            return;
+        }
+        if (!Files.exists(root)) return;
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package cli;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class CLI {
+    private Path currentDirectory;
+    private TerminalParser parser;
+
+    public CLI() {
+        this(FileSystems.getDefault(), Paths.get(System.getProperty("user.home")),
+                Paths.get(System.getProperty("user.dir")));
+    }
+
+    /** A CLI working in {@code fileSystem} from {@code initialDirectory}; {@code cd} alone goes to {@code home}. */
+    public CLI(FileSystem fileSystem, Path home, Path initialDirectory) {
+        currentDirectory = initialDirectory;
+        parser = new TerminalParser(fileSystem, home, initialDirectory, null, null, null);
+    }
+
+    public void start() {
+        // output and the next prompt reach the terminal together, in one write
+        OutputSink sink = OutputSink.stdout();
+        PrintStream out = new PrintStream(sink, false);
+        System.setOut(out);
+        parser.setTerminalIsTty(sink.isTerminal());
+        CommandHistory history = null;
+        try {
+            history = CommandHistory.open(CommandHistory.defaultFile());
+            parser.setHistory(history);
+        } catch (IOException e) {
+            System.err.println("History disabled: " + e.getMessage());
+        }
+        // command lines, here-documents and cat > file all read the one buffered stdin
+        SessionInput in = new SessionInput(System.in);
+        parser.setInput(in);
+        // with a terminal to switch to raw mode, lines are edited key by key and Tab completes
+        LineEditor editor = LineEditor.open(in, parser::complete);
+        try {
+            out.println("Welcome to the CLI! Type 'help' for a list of commands.");
+            while (true) {
+                String prompt = currentDirectory + "> ";
+                String input;
+                if (editor != null) {
+                    input = editor.readLine(prompt);
+                } else {
+                    out.print(prompt);
+                    out.flush();
+                    input = in.readLine();
+                }
+                if (input == null || input.trim().equalsIgnoreCase("exit")) {
+                    out.println("Exiting the CLI. Goodbye!");
+                    break;
+                }
+
+                parser.processInput(input.trim());
+                currentDirectory = parser.getCurrentDirectory();
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading input: " + e.getMessage());
+        } finally {
+            out.flush();
+            // cached >> channels, background jobs and the history are released before exiting
+            parser.close();
+            if (history != null) {
+                try {
+                    history.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing history: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs every line of {@code script} as a command, without banner or prompt. Blank lines and
+     * lines starting with {@code #} are skipped; {@code exit [status]} stops early. Here-documents
+     * are read from the script too. Returns the status of the last command run, like a POSIX
+     * shell does for a script.
+     */
+    public int runScript(SessionInput script) throws IOException {
+        parser.setInput(script);
+        int status = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            String input = line.trim();
+            if (input.isEmpty() || input.startsWith("#")) {
+                continue;
+            }
+            if (input.equals("exit") || input.startsWith("exit ")) {
+                return exitStatus(input, status);
+            }
+            status = parser.processInput(input);
+        }
+        return status;
+    }
+
+    private static int exitStatus(String input, int lastStatus) {
+        String argument = input.substring("exit".length()).trim();
+        if (argument.isEmpty()) {
+            return lastStatus;
+        }
+        try {
+            return Integer.parseInt(argument) & 0xff;
+        } catch (NumberFormatException e) {
+            System.err.println("exit: numeric argument required: " + argument);
+            return TerminalParser.STATUS_SYNTAX_ERROR;
+        }
+    }
+
+    /**
+     * Non-interactive entry point: {@code CLI script.sh}, {@code CLI -c "commands"}, or commands
+     * piped on stdin.
+     */
+    int runBatch(String[] args) {
+        try {
+            if (args.length == 0) {
+                return runScript(new SessionInput(System.in));
+            }
+            if (args[0].equals("-c")) {
+                if (args.length < 2) {
+                    System.err.println("Usage: CLI [-c <commands> | <script>]");
+                    return TerminalParser.STATUS_SYNTAX_ERROR;
+                }
+                return runScript(new SessionInput(new ByteArrayInputStream(args[1].getBytes(StandardCharsets.UTF_8))));
+            }
+            try (SessionInput script = new SessionInput(Files.newInputStream(Paths.get(args[0])))) {
+                return runScript(script);
+            }
+        } catch (NoSuchFileException e) {
+            System.err.println("Script does not exist: " + e.getMessage());
+            return TerminalParser.STATUS_NOT_FOUND;
+        } catch (IOException e) {
+            System.err.println("Error reading script: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0 && Terminal.interactive()) {
+            new CLI().start();
+            return;
+        }
+
+        // Batch output goes through one large buffer that is only flushed when full and at exit.
+        PrintStream stdout = new PrintStream(OutputSink.stdout(), false);
+        System.setOut(stdout);
+        CLI cli = new CLI();
+        int status;
+        try {
+            status = cli.runBatch(args);
+        } finally {
+            cli.parser.close();
+            stdout.flush();
+        }
+        System.exit(status);
+    }
+}
@@ -0,0 +1,61 @@
+package cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Stage input backed by a {@link FileChannel}, used for {@code <} redirections. Read as a
+ * stream it is like any other input, but copied to a {@link ChannelOutput} with
+ * {@link #transferTo} the bytes go from file to file in the kernel, as {@code cat file > copy}
+ * does.
+ */
+public class ChannelInput extends InputStream {
+    private final FileChannel channel;
+
+    /** Input that owns {@code channel} and closes it when it is closed itself. */
+    public ChannelInput(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public FileChannel channel() {
+        return channel;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        return channel.read(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, channel.size() - channel.position()));
+    }
+
+    /** Moves the rest of the file to {@code target}, without copying it through the heap if it is a file too. */
+    @Override
+    public long transferTo(OutputStream target) throws IOException {
+        if (!(target instanceof ChannelOutput)) {
+            return super.transferTo(target);
+        }
+        long start = channel.position();
+        long end = channel.size();
+        ((ChannelOutput) target).transferFrom(channel, start, end);
+        channel.position(end);
+        return end - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
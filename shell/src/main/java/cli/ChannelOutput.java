@@ -0,0 +1,136 @@
+package cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+
+/**
+ * Stage output backed by a {@link FileChannel}, used for {@code >}, {@code >>} and {@code 2>}
+ * targets.
+ *
+ * Text written through the {@link PrintStream} API is gathered in a direct buffer and reaches
+ * the channel in one write whenever the buffer fills or the output is flushed or closed, so the
+ * JDK never copies it into a temporary direct buffer of its own. Whole files can be moved into
+ * the channel with {@link #transferFrom(FileChannel)}, which lets the kernel copy the bytes
+ * without them ever being decoded or passing through the heap.
+ */
+public class ChannelOutput extends PrintStream {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ChannelSink sink;
+    private long bytesTransferred;
+
+    /** Output that owns {@code channel} and closes it when it is closed itself. */
+    public ChannelOutput(FileChannel channel) {
+        this(channel, ByteBuffer.allocateDirect(BUFFER_SIZE), null);
+    }
+
+    /**
+     * Output writing through {@code buffer}; once it is closed, the buffer is handed to
+     * {@code onClose}, which then also decides what becomes of the channel.
+     */
+    ChannelOutput(FileChannel channel, ByteBuffer buffer, Consumer<ByteBuffer> onClose) {
+        this(channel, new ChannelSink(channel, buffer, onClose));
+    }
+
+    private ChannelOutput(FileChannel channel, ChannelSink sink) {
+        super(sink, false);
+        this.channel = channel;
+        this.sink = sink;
+    }
+
+    public FileChannel channel() {
+        return channel;
+    }
+
+    public void transferFrom(FileChannel source) throws IOException {
+        transferFrom(source, 0, source.size());
+    }
+
+    /** Moves {@code source[position, end)} into the channel, after anything still buffered. */
+    public void transferFrom(FileChannel source, long position, long end) throws IOException {
+        flush();
+        while (position < end) {
+            long transferred = source.transferTo(position, end - position, channel);
+            if (transferred <= 0) break;
+            position += transferred;
+            bytesTransferred += transferred;
+        }
+    }
+
+    /** Bytes that have reached the channel so far, through either path. */
+    public long getBytesWritten() {
+        return sink.count + bytesTransferred;
+    }
+
+    /** Buffers bytes in a direct buffer and drains it into the channel. Guarded by the PrintStream. */
+    private static final class ChannelSink extends OutputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final Consumer<ByteBuffer> onClose;
+        private long count;
+
+        ChannelSink(FileChannel channel, ByteBuffer buffer, Consumer<ByteBuffer> onClose) {
+            this.channel = channel;
+            this.buffer = buffer.clear();
+            this.onClose = onClose;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buffer.remaining()) {
+                drain();
+                if (len >= buffer.capacity()) {
+                    writeFully(ByteBuffer.wrap(b, off, len));
+                    return;
+                }
+            }
+            buffer.put(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            try {
+                writeFully(buffer);
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                count += channel.write(bytes);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                if (onClose == null) {
+                    channel.close();
+                } else {
+                    onClose.accept(buffer);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command history backed by a {@link HistoryLog}, for {@code history}, {@code !!}, {@code !n},
+ * {@code !-n} and {@code !prefix}.
+ *
+ * Entries are numbered from 1 in the order they reached the log. Each distinct line is kept
+ * once, and three indexes over the distinct lines answer queries without scanning the history:
+ * a radix tree whose every node knows the latest entry below it answers {@code !prefix} in time
+ * proportional to the prefix, and a trigram index narrows {@code history -s} substring searches
+ * to the lines holding every trigram of the query. One instance is shared by all sessions of a
+ * process that use the same file, and it picks up what other processes appended whenever it
+ * appends or is searched. Every {@link #open} must be matched by a {@link #close}; the log is
+ * only closed when the last holder closes it.
+ */
+public final class CommandHistory implements Closeable {
+    private static final Map<Path, CommandHistory> OPEN = new HashMap<>();
+
+    private final Path file;
+    private final HistoryLog log;
+    private final List<String> lines = new ArrayList<>();
+    private final Map<String, Integer> lineIds = new HashMap<>();
+    private final PrefixTree prefixes = new PrefixTree();
+    private final TrigramIndex trigrams = new TrigramIndex();
+    private final IntList entries = new IntList();
+    private final IntList latestEntry = new IntList();
+    /** Opens not yet matched by a close; guarded by the class lock, like {@link #OPEN}. */
+    private int holders;
+
+    private CommandHistory(Path file) throws IOException {
+        this.file = file;
+        this.log = new HistoryLog(file);
+        log.readNew(this::index);
+    }
+
+    /** The history in {@code file}, shared with every other caller in this process. */
+    public static synchronized CommandHistory open(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        CommandHistory history = OPEN.get(key);
+        if (history == null) {
+            history = new CommandHistory(key);
+            OPEN.put(key, history);
+        }
+        history.holders++;
+        return history;
+    }
+
+    /** {@code -Dcli.history} if set, {@code ~/.cli_history} otherwise. */
+    public static Path defaultFile() {
+        String file = System.getProperty("cli.history");
+        return file != null ? Paths.get(file) : Paths.get(System.getProperty("user.home"), ".cli_history");
+    }
+
+    public synchronized void add(String line) throws IOException {
+        log.append(line, this::index);
+        index(line);
+    }
+
+    private void index(String line) {
+        Integer id = lineIds.get(line);
+        if (id == null) {
+            id = lines.size();
+            lines.add(line);
+            lineIds.put(line, id);
+            latestEntry.add(0);
+            for (int i = 0; i + 3 <= line.length(); i++) {
+                trigrams.postings(trigram(line, i), true).addUnique(id);
+            }
+        }
+        entries.add(id);
+        latestEntry.set(id, entries.size());
+        prefixes.touch(line, entries.size());
+    }
+
+    private static long trigram(String text, int i) {
+        return (long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2);
+    }
+
+    private void refresh() {
+        try {
+            log.readNew(this::index);
+        } catch (IOException e) {
+            // what is already indexed is still right, only possibly behind other processes
+        }
+    }
+
+    public synchronized int size() {
+        refresh();
+        return entries.size();
+    }
+
+    /** Entry {@code number}, counted from 1, or null if there is none. */
+    public synchronized String get(int number) {
+        refresh();
+        return number >= 1 && number <= entries.size() ? lines.get(entries.get(number - 1)) : null;
+    }
+
+    /**
+     * Expands a leading {@code !!}, {@code !n}, {@code !-n} or {@code !prefix} event in
+     * {@code input}; returns null if the event is not in the history.
+     */
+    public synchronized String expand(String input) {
+        refresh();
+        int space = 1;
+        while (space < input.length() && !Character.isWhitespace(input.charAt(space))) space++;
+        String event = input.substring(1, space);
+        String rest = input.substring(space);
+        long number;
+        if (event.equals("!")) {
+            number = entries.size();
+        } else if (event.matches("-?[0-9]+")) {
+            try {
+                number = Long.parseLong(event);
+            } catch (NumberFormatException e) {
+                return null; // too many digits to be any entry
+            }
+            if (number < 0) number = entries.size() + 1 + number;
+        } else {
+            number = prefixes.latest(event);
+        }
+        String line = number >= 1 && number <= entries.size() ? lines.get(entries.get((int) number - 1)) : null;
+        return line == null ? null : line + rest;
+    }
+
+    /** Prints the last {@code count} entries, numbered. */
+    public synchronized void print(int count, PrintStream output) {
+        refresh();
+        for (int i = Math.max(0, entries.size() - count); i < entries.size() && !output.checkError(); i++) {
+            output.printf("%5d  %s%n", i + 1, lines.get(entries.get(i)));
+        }
+    }
+
+    /** Prints every distinct line containing {@code text} once, at its latest number, oldest first. */
+    public synchronized void search(String text, PrintStream output) {
+        refresh();
+        IntList candidates = null;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            IntList posting = trigrams.postings(trigram(text, i), false);
+            if (posting == null) return;
+            if (candidates == null || posting.size() < candidates.size()) candidates = posting;
+        }
+        int[] numbers = new int[candidates == null ? lines.size() : candidates.size()];
+        int found = 0;
+        for (int i = 0; i < numbers.length; i++) {
+            int id = candidates == null ? i : candidates.get(i);
+            if (lines.get(id).contains(text)) {
+                numbers[found++] = latestEntry.get(id);
+            }
+        }
+        Arrays.sort(numbers, 0, found);
+        for (int i = 0; i < found && !output.checkError(); i++) {
+            output.printf("%5d  %s%n", numbers[i], lines.get(entries.get(numbers[i] - 1)));
+        }
+    }
+
+    /** Releases this holder's use of the history; the last one to close it closes the log. */
+    @Override
+    public void close() throws IOException {
+        synchronized (CommandHistory.class) {
+            if (holders == 0 || --holders > 0) return;
+            OPEN.remove(file);
+        }
+        log.close();
+    }
+
+    /** Radix tree over the distinct lines; each node holds the latest entry at or below it. */
+    private static final class PrefixTree {
+        private final Node root = new Node("", 0);
+
+        void touch(String line, int entry) {
+            Node node = root;
+            node.latest = entry;
+            int i = 0;
+            while (i < line.length()) {
+                int index = node.childIndex(line.charAt(i));
+                if (index < 0) {
+                    node.addChild(new Node(line.substring(i), entry));
+                    return;
+                }
+                Node child = node.children[index];
+                int common = commonPrefix(child.edge, line, i);
+                if (common < child.edge.length()) {
+                    Node split = new Node(child.edge.substring(0, common), child.latest);
+                    child.edge = child.edge.substring(common);
+                    split.addChild(child);
+                    node.children[index] = split;
+                    child = split;
+                }
+                child.latest = entry;
+                node = child;
+                i += common;
+            }
+        }
+
+        /** Latest entry starting with {@code prefix}, or 0 if none does. */
+        int latest(String prefix) {
+            Node node = root;
+            int i = 0;
+            while (i < prefix.length()) {
+                int index = node.childIndex(prefix.charAt(i));
+                if (index < 0) return 0;
+                Node child = node.children[index];
+                int common = commonPrefix(child.edge, prefix, i);
+                if (i + common == prefix.length()) return child.latest;
+                if (common < child.edge.length()) return 0;
+                node = child;
+                i += common;
+            }
+            return node.latest;
+        }
+
+        private static int commonPrefix(String edge, String text, int from) {
+            int n = Math.min(edge.length(), text.length() - from);
+            int i = 0;
+            while (i < n && edge.charAt(i) == text.charAt(from + i)) i++;
+            return i;
+        }
+
+        private static final class Node {
+            private static final Node[] NO_CHILDREN = new Node[0];
+
+            String edge;
+            int latest;
+            Node[] children = NO_CHILDREN;
+
+            Node(String edge, int latest) {
+                this.edge = edge;
+                this.latest = latest;
+            }
+
+            int childIndex(char first) {
+                for (int i = 0; i < children.length; i++) {
+                    if (children[i].edge.charAt(0) == first) return i;
+                }
+                return -1;
+            }
+
+            void addChild(Node child) {
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = child;
+            }
+        }
+    }
+
+    /** Open-addressing map from a trigram, three chars packed into a long, to its line ids. */
+    private static final class TrigramIndex {
+        private long[] keys = new long[1024];
+        private IntList[] postings = new IntList[1024];
+        private int size;
+
+        /** The ids of lines holding {@code trigram}; null if there are none and {@code create} is false. */
+        IntList postings(long trigram, boolean create) {
+            // keys are stored plus one so that zero can mark an empty slot
+            long key = trigram + 1;
+            int mask = keys.length - 1;
+            int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) return postings[slot];
+                slot = (slot + 1) & mask;
+            }
+            if (!create) return null;
+            if (2 * (size + 1) > keys.length) {
+                grow();
+                return postings(trigram, true);
+            }
+            keys[slot] = key;
+            size++;
+            return postings[slot] = new IntList();
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            IntList[] oldPostings = postings;
+            keys = new long[oldKeys.length * 2];
+            postings = new IntList[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = (int) (oldKeys[i] * 0x9E3779B97F4A7C15L >>> 40) & mask;
+                while (keys[slot] != 0) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                postings[slot] = oldPostings[i];
+            }
+        }
+    }
+
+    /** Growable {@code int[]}, so a million entries cost four bytes each. */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /** Adds {@code value} unless it is already last; ids only ever grow, so that is enough. */
+        void addUnique(int value) {
+            if (size == 0 || values[size - 1] != value) add(value);
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package cli;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass tokenizer turning an input line into a {@link CommandLine}.
+ *
+ * Supports single quotes (literal), double quotes (with {@code \"} and {@code \\} escapes),
+ * backslash escapes outside quotes, the {@code |} pipe operator, the {@code ;}, {@code &&} and
+ * {@code &} separators between pipelines, {@code >}/{@code >>}
+ * redirections and their stderr forms {@code 2>}, {@code 2>>} and {@code 2>&1}, where the
+ * {@code 2} must be an unquoted word of its own directly before the {@code >}, and the input
+ * redirections {@code <} and {@code <<}, the latter naming the line that ends a here-document.
+ * A line may have one here-document, read from the session's input after the line itself, and
+ * it may not be run in the background, where it would compete with the next command line. A word with an
+ * unquoted {@code *}, {@code ?}, {@code [} or {@code {} also keeps its glob form, with any quoted
+ * metacharacters escaped, for {@link GlobExpander}. Parsed lines are kept in a bounded LRU so
+ * scripts that repeat the same command skip tokenizing altogether.
+ */
+public class CommandLexer {
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    private final Map<String, CommandLine> cache;
+
+    public CommandLexer() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public CommandLexer(int cacheSize) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CommandLine> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public CommandLine parse(String line) {
+        synchronized (cache) {
+            CommandLine cached = cache.get(line);
+            if (cached != null) return cached;
+        }
+        CommandLine parsed = tokenize(line);
+        synchronized (cache) {
+            cache.put(line, parsed);
+        }
+        return parsed;
+    }
+
+    static CommandLine tokenize(String line) {
+        Builder builder = new Builder();
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            switch (c) {
+                case ' ':
+                case '\t':
+                    builder.endWord();
+                    i++;
+                    break;
+                case '\'': {
+                    int end = line.indexOf('\'', i + 1);
+                    if (end < 0) throw new IllegalArgumentException("unterminated single quote");
+                    builder.quoted(line, i + 1, end);
+                    i = end + 1;
+                    break;
+                }
+                case '"':
+                    i = readDoubleQuoted(line, i + 1, builder);
+                    break;
+                case '\\':
+                    if (i + 1 == length) throw new IllegalArgumentException("trailing backslash");
+                    builder.quoted(line, i + 1, i + 2);
+                    i += 2;
+                    break;
+                case '|':
+                    builder.endStage(true);
+                    i++;
+                    break;
+                case ';':
+                    builder.endPipeline(false, false);
+                    i++;
+                    break;
+                case '&':
+                    if (i + 1 < length && line.charAt(i + 1) == '&') {
+                        builder.endPipeline(false, true);
+                        i += 2;
+                    } else {
+                        builder.endPipeline(true, false);
+                        i++;
+                    }
+                    break;
+                case '>': {
+                    boolean append = i + 1 < length && line.charAt(i + 1) == '>';
+                    if (!isStderrDescriptor(line, i, builder)) {
+                        builder.redirect(append ? CommandLine.Redirection.Type.APPEND : CommandLine.Redirection.Type.OUTPUT);
+                        i += append ? 2 : 1;
+                        break;
+                    }
+                    builder.clearWord();
+                    if (!append && line.startsWith("&1", i + 1) && (i + 3 == length || isSeparator(line.charAt(i + 3)))) {
+                        builder.redirect(CommandLine.Redirection.Type.ERROR_TO_OUTPUT);
+                        i += 3;
+                    } else {
+                        builder.redirect(append ? CommandLine.Redirection.Type.ERROR_APPEND : CommandLine.Redirection.Type.ERROR);
+                        i += append ? 2 : 1;
+                    }
+                    break;
+                }
+                case '<': {
+                    boolean heredoc = i + 1 < length && line.charAt(i + 1) == '<';
+                    builder.redirect(heredoc ? CommandLine.Redirection.Type.HEREDOC : CommandLine.Redirection.Type.INPUT);
+                    i += heredoc ? 2 : 1;
+                    break;
+                }
+                default:
+                    builder.unquoted(c);
+                    i++;
+                    break;
+            }
+        }
+        builder.endLine();
+        return new CommandLine(builder.pipelines);
+    }
+
+    /** Whether the word just before the {@code >} at {@code i} is a bare, unquoted {@code 2}. */
+    private static boolean isStderrDescriptor(String line, int i, Builder builder) {
+        return builder.inWord && builder.word.length() == 1 && builder.word.charAt(0) == '2'
+                && line.charAt(i - 1) == '2' && (i == 1 || isSeparator(line.charAt(i - 2)));
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '|' || c == ';' || c == '&';
+    }
+
+    private static int readDoubleQuoted(String line, int i, Builder builder) {
+        int length = line.length();
+        builder.inWord = true;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == '"') return i + 1;
+            if (c == '\\' && i + 1 < length && (line.charAt(i + 1) == '"' || line.charAt(i + 1) == '\\')) {
+                builder.quoted(line, i + 1, i + 2);
+                i += 2;
+            } else {
+                builder.quoted(line, i, i + 1);
+                i++;
+            }
+        }
+        throw new IllegalArgumentException("unterminated double quote");
+    }
+
+    /** Characters that make an unquoted word a glob pattern. */
+    private static final String GLOB_METACHARACTERS = "*?[{";
+    /** Characters that must be escaped to stand for themselves in a glob. */
+    private static final String GLOB_SPECIAL = "*?[]{}\\,";
+
+    private static final class Builder {
+        final List<CommandLine.Pipeline> pipelines = new ArrayList<>(1);
+        final List<CommandLine.Stage> stages = new ArrayList<>(2);
+        final List<String> argv = new ArrayList<>();
+        final List<CommandLine.Redirection> redirections = new ArrayList<>(1);
+        final List<String> globs = new ArrayList<>();
+        final StringBuilder word = new StringBuilder();
+        /** The word as a glob, with quoted metacharacters escaped; only used if {@link #globbing}. */
+        final StringBuilder glob = new StringBuilder();
+        boolean inWord;
+        boolean globbing;
+        CommandLine.Redirection.Type pendingRedirect;
+        boolean conditional;
+        int hereDocuments;
+        boolean pipelineHasHereDocument;
+
+        void endWord() {
+            if (!inWord) return;
+            String text = word.toString();
+            if (pendingRedirect != null) {
+                if (pendingRedirect == CommandLine.Redirection.Type.HEREDOC) {
+                    if (++hereDocuments > 1) throw new IllegalArgumentException("more than one here-document");
+                    pipelineHasHereDocument = true;
+                }
+                redirections.add(new CommandLine.Redirection(pendingRedirect, text));
+                pendingRedirect = null;
+            } else {
+                argv.add(text);
+                globs.add(globbing ? glob.toString() : null);
+            }
+            clearWord();
+        }
+
+        void clearWord() {
+            word.setLength(0);
+            glob.setLength(0);
+            inWord = false;
+            globbing = false;
+        }
+
+        void unquoted(char c) {
+            word.append(c);
+            glob.append(c);
+            inWord = true;
+            globbing |= GLOB_METACHARACTERS.indexOf(c) >= 0;
+        }
+
+        void quoted(String line, int start, int end) {
+            word.append(line, start, end);
+            for (int i = start; i < end; i++) {
+                char c = line.charAt(i);
+                if (GLOB_SPECIAL.indexOf(c) >= 0) glob.append('\\');
+                glob.append(c);
+            }
+            inWord = true;
+        }
+
+        void redirect(CommandLine.Redirection.Type type) {
+            endWord();
+            if (pendingRedirect != null) throw new IllegalArgumentException("missing redirection target");
+            if (type == CommandLine.Redirection.Type.ERROR_TO_OUTPUT) {
+                redirections.add(new CommandLine.Redirection(type, null));
+            } else {
+                pendingRedirect = type;
+            }
+        }
+
+        void endStage(boolean pipe) {
+            endWord();
+            if (pendingRedirect != null) throw new IllegalArgumentException("missing redirection target");
+            if (argv.isEmpty()) {
+                if (pipe || !stages.isEmpty() || !redirections.isEmpty()) {
+                    throw new IllegalArgumentException("missing command");
+                }
+                return;
+            }
+            stages.add(new CommandLine.Stage(argv, globs, redirections));
+            argv.clear();
+            globs.clear();
+            redirections.clear();
+        }
+
+        void endPipeline(boolean background, boolean conditionalNext) {
+            endStage(false);
+            if (stages.isEmpty()) throw new IllegalArgumentException("missing command");
+            if (background && pipelineHasHereDocument) {
+                throw new IllegalArgumentException("here-document in a background job");
+            }
+            pipelines.add(new CommandLine.Pipeline(stages, background, conditional));
+            stages.clear();
+            pipelineHasHereDocument = false;
+            conditional = conditionalNext;
+        }
+
+        void endLine() {
+            endStage(false);
+            if (!stages.isEmpty()) {
+                pipelines.add(new CommandLine.Pipeline(stages, false, conditional));
+            } else if (conditional) {
+                throw new IllegalArgumentException("missing command");
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package cli;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable parse of one input line: the pipelines separated by {@code ;}, {@code &&} and
+ * {@code &}, each with its stages in order, and each stage with its own argv and redirections.
+ * Instances are shared through the {@link CommandLexer} cache, so nothing in here may be mutated
+ * after construction.
+ */
+public final class CommandLine {
+    private final List<Pipeline> pipelines;
+
+    public CommandLine(List<Pipeline> pipelines) {
+        this.pipelines = List.copyOf(pipelines);
+    }
+
+    public List<Pipeline> pipelines() {
+        return pipelines;
+    }
+
+    /** The stages of the first pipeline, which is the whole line unless it uses {@code ;}, {@code &&} or {@code &}. */
+    public List<Stage> stages() {
+        return pipelines.isEmpty() ? List.of() : pipelines.get(0).stages();
+    }
+
+    public boolean isEmpty() {
+        return pipelines.isEmpty();
+    }
+
+    /** Stages joined by pipes, run in the background if followed by {@code &}. */
+    public static final class Pipeline {
+        private final List<Stage> stages;
+        private final boolean background;
+        private final boolean conditional;
+
+        public Pipeline(List<Stage> stages, boolean background, boolean conditional) {
+            this.stages = List.copyOf(stages);
+            this.background = background;
+            this.conditional = conditional;
+        }
+
+        public List<Stage> stages() {
+            return stages;
+        }
+
+        public boolean background() {
+            return background;
+        }
+
+        /** Whether it follows {@code &&}, and so only runs if the pipeline before it succeeded. */
+        public boolean conditional() {
+            return conditional;
+        }
+
+        /** The pipeline as it could be typed again, though without its original quoting. */
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (Stage stage : stages) {
+                if (text.length() > 0) text.append(" | ");
+                text.append(String.join(" ", stage.argv()));
+                for (Redirection redirection : stage.redirections()) {
+                    text.append(' ').append(redirection);
+                }
+            }
+            return background ? text.append(" &").toString() : text.toString();
+        }
+    }
+
+    public static final class Stage {
+        private final List<String> argv;
+        private final String[] globs;
+        private final List<Redirection> redirections;
+
+        public Stage(List<String> argv, List<Redirection> redirections) {
+            this.argv = List.copyOf(argv);
+            this.globs = null;
+            this.redirections = List.copyOf(redirections);
+        }
+
+        /** A stage whose words may be globs: {@code globs} holds each word's pattern, or null if it is literal. */
+        public Stage(List<String> argv, List<String> globs, List<Redirection> redirections) {
+            this.argv = List.copyOf(argv);
+            this.globs = globs.stream().allMatch(Objects::isNull) ? null : globs.toArray(new String[0]);
+            this.redirections = List.copyOf(redirections);
+        }
+
+        public List<String> argv() {
+            return argv;
+        }
+
+        /** Each word's glob pattern, or null for a literal word; null if every word is literal. */
+        public String[] globs() {
+            return globs == null ? null : globs.clone();
+        }
+
+        public String[] tokens() {
+            return argv.toArray(new String[0]);
+        }
+
+        public List<Redirection> redirections() {
+            return redirections;
+        }
+
+        @Override
+        public String toString() {
+            return "Stage" + argv + redirections;
+        }
+    }
+
+    /**
+     * One redirection; {@link #target()} is null for {@code 2>&1}, which names no file, and for
+     * a {@code <<} here-document it is the line that ends the document.
+     */
+    public static final class Redirection {
+        public enum Type { OUTPUT, APPEND, ERROR, ERROR_APPEND, ERROR_TO_OUTPUT, INPUT, HEREDOC }
+
+        private final Type type;
+        private final String target;
+
+        public Redirection(Type type, String target) {
+            this.type = type;
+            this.target = target;
+        }
+
+        public Type type() {
+            return type;
+        }
+
+        public String target() {
+            return target;
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case APPEND:
+                    return ">>" + target;
+                case ERROR:
+                    return "2>" + target;
+                case ERROR_APPEND:
+                    return "2>>" + target;
+                case ERROR_TO_OUTPUT:
+                    return "2>&1";
+                case INPUT:
+                    return "<" + target;
+                case HEREDOC:
+                    return "<<" + target;
+                default:
+                    return ">" + target;
+            }
+        }
+    }
+}
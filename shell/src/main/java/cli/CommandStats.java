@@ -0,0 +1,50 @@
+package cli;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-command latency and I/O counters behind the {@code stats} built-in.
+ *
+ * Recording is lock-free: a map lookup, a histogram increment and two adders per pipeline stage.
+ */
+public class CommandStats {
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+
+    public void record(String command, long nanos, long bytesRead, long bytesWritten) {
+        Recorder recorder = recorders.computeIfAbsent(command, name -> new Recorder());
+        recorder.latency.record(nanos);
+        recorder.bytesRead.add(bytesRead);
+        recorder.bytesWritten.add(bytesWritten);
+    }
+
+    public void reset() {
+        recorders.clear();
+    }
+
+    public void print(PrintStream output) {
+        output.printf("%-10s %8s %10s %10s %10s %12s %12s%n",
+                "command", "count", "p50(ms)", "p99(ms)", "max(ms)", "read(B)", "written(B)");
+        for (Map.Entry<String, Recorder> entry : new TreeMap<>(recorders).entrySet()) {
+            Recorder recorder = entry.getValue();
+            LatencyHistogram latency = recorder.latency;
+            output.printf("%-10s %8d %10.3f %10.3f %10.3f %12d %12d%n",
+                    entry.getKey(), latency.getCount(),
+                    millis(latency.getPercentile(50)), millis(latency.getPercentile(99)), millis(latency.getMax()),
+                    recorder.bytesRead.sum(), recorder.bytesWritten.sum());
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class Recorder {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder bytesRead = new LongAdder();
+        final LongAdder bytesWritten = new LongAdder();
+    }
+}
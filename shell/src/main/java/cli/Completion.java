@@ -0,0 +1,33 @@
+package cli;
+
+import java.util.List;
+
+/** What completing a word offers: the text every candidate continues with, and the candidates. */
+public final class Completion {
+    static final Completion NONE = new Completion("", List.of(), false);
+
+    private final String extension;
+    private final List<String> candidates;
+    private final boolean unique;
+
+    Completion(String extension, List<String> candidates, boolean unique) {
+        this.extension = extension;
+        this.candidates = candidates;
+        this.unique = unique;
+    }
+
+    /** The text to insert at the cursor; empty if the candidates share nothing more. */
+    public String extension() {
+        return extension;
+    }
+
+    /** The matching names in order, at most {@link PathCompleter#MAX_CANDIDATES} of them. */
+    public List<String> candidates() {
+        return candidates;
+    }
+
+    /** True if exactly one name matched, so the word is complete once extended. */
+    public boolean unique() {
+        return unique;
+    }
+}
@@ -0,0 +1,299 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional per-session cache of directory listings and file attributes.
+ *
+ * Entries are grouped by parent directory, and a directory only holds cached entries while it
+ * is registered with a {@link WatchService}; create, delete and modify events, as well as the
+ * shell's own mutations through {@link #invalidate}, drop the affected entries. The number of
+ * cached directories is LRU-bounded, and evicting one cancels its watch. When the cache is
+ * disabled (the default) every call goes straight to the file system.
+ */
+public class DirectoryCache implements Closeable {
+    public static final int DEFAULT_MAX_DIRECTORIES = 256;
+    /** Listings larger than this are never cached, so huge directories keep streaming. */
+    public static final int MAX_ENTRIES_PER_DIRECTORY = 10_000;
+
+    private static final BasicFileAttributes MISSING = null;
+
+    private final Map<Path, DirectoryEntry> directories;
+    private final LongAdder attributeHits = new LongAdder();
+    private final LongAdder attributeMisses = new LongAdder();
+    private final LongAdder listingHits = new LongAdder();
+    private final LongAdder listingMisses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private volatile boolean enabled;
+    private WatchService watchService;
+
+    public DirectoryCache() {
+        this(DEFAULT_MAX_DIRECTORIES);
+    }
+
+    public DirectoryCache(int maxDirectories) {
+        this.directories = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, DirectoryEntry> eldest) {
+                if (size() <= maxDirectories) return false;
+                eldest.getValue().watchKey.cancel();
+                return true;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * Attributes of {@code path} without following a final symbolic link, read as
+     * {@link PosixFileAttributes} where supported. Returns {@code null} if it does not exist.
+     */
+    public BasicFileAttributes attributes(Path path) throws IOException {
+        Path parent = path.getParent();
+        String name = path.getFileName() == null ? null : path.getFileName().toString();
+        if (enabled && parent != null && name != null) {
+            synchronized (this) {
+                DirectoryEntry entry = directories.get(parent);
+                if (entry != null && entry.attributes.containsKey(name)) {
+                    attributeHits.increment();
+                    return entry.attributes.get(name);
+                }
+            }
+            attributeMisses.increment();
+        }
+
+        long generation = enabled && parent != null && name != null ? generation(parent) : -1;
+        BasicFileAttributes attributes = read(path);
+        if (generation >= 0) {
+            synchronized (this) {
+                DirectoryEntry entry = current(parent, generation);
+                if (entry != null && entry.attributes.size() < MAX_ENTRIES_PER_DIRECTORY) {
+                    entry.attributes.put(name, attributes);
+                }
+            }
+        }
+        return attributes;
+    }
+
+    public boolean exists(Path path) throws IOException {
+        return attributes(path) != MISSING;
+    }
+
+    /** Like {@link Files#isDirectory(Path, LinkOption...)}: follows symbolic links. */
+    public boolean isDirectory(Path path) throws IOException {
+        BasicFileAttributes attributes = attributes(path);
+        if (attributes != null && attributes.isSymbolicLink()) {
+            return Files.isDirectory(path);
+        }
+        return attributes != null && attributes.isDirectory();
+    }
+
+    /** Returns the cached names in {@code directory}, or {@code null} if they must be read. */
+    public List<String> listing(Path directory) {
+        if (!enabled) return null;
+        synchronized (this) {
+            DirectoryEntry entry = directories.get(directory);
+            if (entry != null && entry.names != null) {
+                listingHits.increment();
+                return entry.names;
+            }
+        }
+        listingMisses.increment();
+        return null;
+    }
+
+    /**
+     * Starts watching {@code directory} before it is read and returns a token for
+     * {@link #putListing}, or -1 if the result will not be cached. Anything that changes the
+     * directory between this call and {@code putListing} makes the token stale, so a listing
+     * read concurrently with a change is never stored.
+     */
+    public synchronized long generation(Path directory) {
+        if (!enabled) return -1;
+        DirectoryEntry entry = watched(directory);
+        return entry == null ? -1 : entry.generation;
+    }
+
+    public void putListing(Path directory, List<String> names, long generation) {
+        if (generation < 0 || names.size() > MAX_ENTRIES_PER_DIRECTORY) return;
+        synchronized (this) {
+            DirectoryEntry entry = current(directory, generation);
+            if (entry != null) {
+                entry.names = List.copyOf(names);
+            }
+        }
+    }
+
+    private DirectoryEntry current(Path directory, long generation) {
+        DirectoryEntry entry = directories.get(directory);
+        return entry != null && entry.generation == generation ? entry : null;
+    }
+
+    /** Drops everything cached about {@code path}: its own listing and its entry in the parent. */
+    public void invalidate(Path path) {
+        if (!enabled) return;
+        synchronized (this) {
+            invalidations.increment();
+            DirectoryEntry own = directories.remove(path);
+            if (own != null) {
+                own.watchKey.cancel();
+            }
+            Path parent = path.getParent();
+            DirectoryEntry entry = parent == null ? null : directories.get(parent);
+            if (entry != null) {
+                entry.generation++;
+                entry.names = null;
+                if (path.getFileName() != null) {
+                    entry.attributes.remove(path.getFileName().toString());
+                }
+            }
+        }
+    }
+
+    /** Like {@link #invalidate}, and also drops every cached directory below {@code root}. */
+    public void invalidateTree(Path root) {
+        if (!enabled) return;
+        synchronized (this) {
+            invalidate(root);
+            directories.entrySet().removeIf(cached -> {
+                if (!cached.getKey().startsWith(root)) return false;
+                cached.getValue().watchKey.cancel();
+                return true;
+            });
+        }
+    }
+
+    public synchronized void clear() {
+        for (DirectoryEntry entry : directories.values()) {
+            entry.watchKey.cancel();
+        }
+        directories.clear();
+    }
+
+    public void printStats(PrintStream output) {
+        output.printf("cache: %s, %d directories watched%n", enabled ? "on" : "off", watchedCount());
+        printRate(output, "attributes", attributeHits.sum(), attributeMisses.sum());
+        printRate(output, "listings", listingHits.sum(), listingMisses.sum());
+        output.printf("%-13s %10d%n", "invalidations", invalidations.sum());
+    }
+
+    private synchronized int watchedCount() {
+        return directories.size();
+    }
+
+    private static void printRate(PrintStream output, String name, long hits, long misses) {
+        long total = hits + misses;
+        output.printf("%-13s %10d hits %10d misses %6.1f%% hit rate%n",
+                name, hits, misses, total == 0 ? 0.0 : 100.0 * hits / total);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        enabled = false;
+        clear();
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    private static BasicFileAttributes read(Path path) throws IOException {
+        boolean posix = path.getFileSystem().supportedFileAttributeViews().contains("posix");
+        try {
+            return posix
+                    ? Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                    : Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return MISSING;
+        }
+    }
+
+    /** Returns the entry for {@code directory}, registering a watch first; null if it cannot be watched. */
+    private DirectoryEntry watched(Path directory) {
+        DirectoryEntry entry = directories.get(directory);
+        if (entry != null) return entry;
+        try {
+            if (watchService == null) {
+                watchService = directory.getFileSystem().newWatchService();
+                WatchService service = watchService;
+                Thread.ofVirtual().name("directory-cache-watcher").start(() -> watch(service));
+            }
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            entry = new DirectoryEntry(key);
+            directories.put(directory, entry);
+            return entry;
+        } catch (IOException | UnsupportedOperationException e) {
+            // without a watch we could serve stale data, so this directory is simply not cached
+            return null;
+        }
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Path directory = (Path) key.watchable();
+                synchronized (this) {
+                    DirectoryEntry entry = directories.get(directory);
+                    if (entry != null && entry.watchKey == key) {
+                        entry.generation++;
+                        entry.names = null;
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                                entry.attributes.clear();
+                            } else {
+                                entry.attributes.remove(event.context().toString());
+                            }
+                        }
+                    } else {
+                        key.pollEvents();
+                    }
+                    if (!key.reset() && entry != null && entry.watchKey == key) {
+                        directories.remove(directory);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // cache closed
+        }
+    }
+
+    private static final class DirectoryEntry {
+        final WatchKey watchKey;
+        final Map<String, BasicFileAttributes> attributes = new HashMap<>();
+        List<String> names;
+        long generation;
+
+        DirectoryEntry(WatchKey watchKey) {
+            this.watchKey = watchKey;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The work behind {@code ls}, built to stay bounded on directories with millions of entries.
+ *
+ * Entries are read from a {@link DirectoryStream} one at a time. With {@code -U} they are
+ * written out as soon as they are read; otherwise they go through an {@link ExternalSort} that
+ * spills to disk once the in-memory share passes {@link #SORT_MEMORY_BUDGET}. When attributes
+ * are needed ({@code -l}, {@code -S}, {@code -t}) they are fetched with one
+ * {@code readAttributes} call per entry, a batch of entries at a time in parallel. Listings and
+ * attributes come from the session's {@link DirectoryCache} when it is enabled.
+ */
+public class DirectoryLister {
+    static final long SORT_MEMORY_BUDGET = 16L * 1024 * 1024;
+    static final int ATTRIBUTE_BATCH = 1024;
+
+    private static final char KEY_SEPARATOR = '\0';
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    boolean showAll;
+    boolean reverse;
+    boolean unsorted;
+    boolean longFormat;
+    boolean bySize;
+    boolean byTime;
+    boolean humanSizes;
+
+    /** Applies one {@code ls} flag character; returns false if it is not a known flag. */
+    boolean option(char flag) {
+        switch (flag) {
+            case 'a':
+                showAll = true;
+                return true;
+            case 'r':
+                reverse = true;
+                return true;
+            case 'U':
+                unsorted = true;
+                return true;
+            case 'l':
+                longFormat = true;
+                return true;
+            case 'S':
+                bySize = true;
+                return true;
+            case 't':
+                byTime = true;
+                return true;
+            case 'h':
+                humanSizes = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public void list(Path directory, DirectoryCache cache, PrintStream output) throws IOException {
+        List<String> cached = cache.listing(directory);
+        if (cached != null) {
+            list(() -> cached.stream().map(directory::resolve).iterator(), cache, output);
+            return;
+        }
+
+        long generation = cache.generation(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            if (generation < 0) {
+                list(stream, cache, output);
+                return;
+            }
+            RecordingIterator entries = new RecordingIterator(stream.iterator());
+            list(() -> entries, cache, output);
+            if (entries.complete) {
+                cache.putListing(directory, entries.names, generation);
+            }
+        }
+    }
+
+    /**
+     * Lists operands that are not directories, each under the name it was given, sorted as
+     * entries of a directory would be; unlike entries, hidden ones are shown too.
+     */
+    public void listFiles(List<Path> files, List<String> names, DirectoryCache cache, PrintStream output) {
+        List<Line> lines = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            Line line = describe(files.get(i), names.get(i), cache);
+            if (line != null) lines.add(line);
+        }
+        if (!unsorted) {
+            Comparator<Line> order = Comparator.comparing(line -> line.sortKey);
+            lines.sort(reverse ? order.reversed() : order);
+        }
+        for (Line line : lines) {
+            output.append(line.display).append(System.lineSeparator());
+        }
+    }
+
+    private void list(Iterable<Path> entries, DirectoryCache cache, PrintStream output) throws IOException {
+        if (unsorted) {
+            listUnsorted(entries, cache, output);
+        } else {
+            listSorted(entries, cache, output);
+        }
+    }
+
+    private boolean needsAttributes() {
+        return longFormat || bySize || byTime;
+    }
+
+    private boolean visible(Path entry) {
+        return showAll || !entry.getFileName().toString().startsWith(".");
+    }
+
+    private void listUnsorted(Iterable<Path> entries, DirectoryCache cache, PrintStream output) {
+        List<Path> batch = new ArrayList<>(needsAttributes() ? ATTRIBUTE_BATCH : 0);
+        for (Path entry : entries) {
+            if (!visible(entry)) continue;
+            if (!needsAttributes()) {
+                output.append(entry.getFileName().toString()).append(System.lineSeparator());
+            } else {
+                batch.add(entry);
+                if (batch.size() == ATTRIBUTE_BATCH) {
+                    describe(batch, cache).forEach(line -> output.append(line.display).append(System.lineSeparator()));
+                    batch.clear();
+                }
+            }
+            if (output.checkError()) return;
+        }
+        describe(batch, cache).forEach(line -> output.append(line.display).append(System.lineSeparator()));
+    }
+
+    private void listSorted(Iterable<Path> entries, DirectoryCache cache, PrintStream output) throws IOException {
+        Comparator<String> order = reverse ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+        try (ExternalSort sort = new ExternalSort(order, SORT_MEMORY_BUDGET, tempDirectory)) {
+            List<Path> batch = new ArrayList<>(needsAttributes() ? ATTRIBUTE_BATCH : 0);
+            for (Path entry : entries) {
+                if (!visible(entry)) continue;
+                if (!needsAttributes()) {
+                    sort.add(entry.getFileName().toString());
+                } else {
+                    batch.add(entry);
+                    if (batch.size() == ATTRIBUTE_BATCH) {
+                        addAll(sort, describe(batch, cache));
+                        batch.clear();
+                    }
+                }
+            }
+            addAll(sort, describe(batch, cache));
+            sort.drain(record -> {
+                int separator = record.indexOf(KEY_SEPARATOR);
+                output.append(separator < 0 ? record : record.substring(separator + 1)).append(System.lineSeparator());
+                return !output.checkError();
+            });
+        }
+    }
+
+    private static void addAll(ExternalSort sort, List<Line> lines) throws IOException {
+        for (Line line : lines) {
+            sort.add(line.sortKey + KEY_SEPARATOR + line.display);
+        }
+    }
+
+    /** Reads attributes for a batch in parallel, keeping the batch order. */
+    private List<Line> describe(List<Path> batch, DirectoryCache cache) {
+        if (batch.isEmpty()) return List.of();
+        return batch.parallelStream()
+                .map(entry -> describe(entry, entry.getFileName().toString(), cache))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private Line describe(Path entry, String name, DirectoryCache cache) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = cache.attributes(entry);
+            if (attributes == null) return null;
+        } catch (IOException e) {
+            return new Line(name, longFormat ? "?????????? " + name : name);
+        }
+
+        String sortKey = name;
+        if (bySize) {
+            sortKey = descendingKey(attributes.size()) + name;
+        } else if (byTime) {
+            sortKey = descendingKey(attributes.lastModifiedTime().toMillis()) + name;
+        }
+        return new Line(sortKey, longFormat ? longLine(name, attributes, humanSizes) : name);
+    }
+
+    private static String descendingKey(long value) {
+        String hex = Long.toHexString(Long.MAX_VALUE - Math.max(value, 0));
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+
+    private static String longLine(String name, BasicFileAttributes attributes, boolean humanSizes) {
+        String type = attributes.isDirectory() ? "d" : attributes.isSymbolicLink() ? "l" : attributes.isOther() ? "?" : "-";
+        String permissions = "?????????";
+        String owner = "?";
+        String group = "?";
+        if (attributes instanceof PosixFileAttributes) {
+            PosixFileAttributes posix = (PosixFileAttributes) attributes;
+            permissions = PosixFilePermissions.toString(posix.permissions());
+            owner = posix.owner().getName();
+            group = posix.group().getName();
+        }
+        Instant modified = attributes.lastModifiedTime().toInstant();
+        String size = humanSizes ? humanSize(attributes.size()) : Long.toString(attributes.size());
+        return String.format("%s%s %-8s %-8s %10s %s %s",
+                type, permissions, owner, group, size, TIME_FORMAT.format(modified), name);
+    }
+
+    /**
+     * {@code size} the way {@code ls -h} and {@code du -h} show it: bytes below 1K, otherwise
+     * in K, M, G, T or P, rounded up, with one decimal while under 10.
+     */
+    static String humanSize(long size) {
+        if (size < 1024) return Long.toString(size);
+        String units = "KMGTPE";
+        int unit = 0;
+        double value = size / 1024.0;
+        while (value >= 1024 && unit < units.length() - 1) {
+            value /= 1024;
+            unit++;
+        }
+        if (value < 10) {
+            double tenths = Math.ceil(value * 10) / 10;
+            if (tenths < 10) return String.format(Locale.ROOT, "%.1f%c", tenths, units.charAt(unit));
+        }
+        return String.format("%d%c", (long) Math.ceil(value), units.charAt(unit));
+    }
+
+    /** Passes entries through while remembering their names, for filling the cache. */
+    private static final class RecordingIterator implements Iterator<Path> {
+        final Iterator<Path> delegate;
+        final List<String> names = new ArrayList<>();
+        boolean complete;
+
+        RecordingIterator(Iterator<Path> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext) {
+                complete = true;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Path next() {
+            Path entry = delegate.next();
+            if (names.size() <= DirectoryCache.MAX_ENTRIES_PER_DIRECTORY) {
+                names.add(entry.getFileName().toString());
+            }
+            return entry;
+        }
+    }
+
+    private static final class Line {
+        final String sortKey;
+        final String display;
+
+        Line(String sortKey, String display) {
+            this.sortKey = sortKey;
+            this.display = display;
+        }
+    }
+}
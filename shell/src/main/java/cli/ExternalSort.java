@@ -0,0 +1,182 @@
+package cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Sorts an unbounded stream of records within a fixed memory budget.
+ *
+ * Records are collected in memory until their estimated footprint reaches the budget; each full
+ * batch is sorted, in parallel on multi-core hosts, and spilled to a temporary run file as
+ * length-prefixed UTF-8, so records may contain any character including newlines. {@link #drain}
+ * then k-way merges the runs, or just walks the in-memory batch when nothing was spilled. With
+ * more than {@link #MERGE_FAN_IN} runs the oldest are first merged into larger runs, so the
+ * number of open files and read buffers stays bounded however much input there is.
+ */
+public class ExternalSort implements Closeable {
+    private static final int RECORD_OVERHEAD = 48;
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+    static final int MERGE_FAN_IN = 128;
+
+    private final Comparator<String> order;
+    private final long memoryBudget;
+    private final Path tempDirectory;
+    private final List<Path> runs = new ArrayList<>();
+    private List<String> batch = new ArrayList<>();
+    private long batchBytes;
+
+    public ExternalSort(Comparator<String> order, long memoryBudget, Path tempDirectory) {
+        this.order = order;
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+    }
+
+    public void add(String record) throws IOException {
+        batch.add(record);
+        batchBytes += RECORD_OVERHEAD + 2L * record.length();
+        if (batchBytes >= memoryBudget) {
+            spill();
+        }
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /** Hands records to {@code sink} in sorted order until it returns {@code false}. */
+    public void drain(Predicate<String> sink) throws IOException {
+        if (runs.isEmpty()) {
+            for (String record : sortedBatch()) {
+                if (!sink.test(record)) return;
+            }
+            return;
+        }
+        if (!batch.isEmpty()) {
+            spill();
+        }
+        while (runs.size() > MERGE_FAN_IN) {
+            List<Path> oldest = new ArrayList<>(runs.subList(0, MERGE_FAN_IN));
+            runs.subList(0, MERGE_FAN_IN).clear();
+            try (DataOutputStream out = openRun(newRun())) {
+                merge(oldest, record -> write(out, record));
+            } finally {
+                for (Path run : oldest) {
+                    Files.deleteIfExists(run);
+                }
+            }
+        }
+        merge(runs, sink);
+    }
+
+    /** The batch as a sorted array; the parallel sort falls back to a sequential one for small batches. */
+    private String[] sortedBatch() {
+        String[] records = batch.toArray(new String[0]);
+        batch = new ArrayList<>();
+        Arrays.parallelSort(records, order);
+        return records;
+    }
+
+    private void spill() throws IOException {
+        String[] records = sortedBatch();
+        batchBytes = 0;
+        try (DataOutputStream out = openRun(newRun())) {
+            for (String record : records) {
+                writeRecord(out, record);
+            }
+        }
+    }
+
+    private Path newRun() throws IOException {
+        Path run = Files.createTempFile(tempDirectory, "cli-sort-", ".run");
+        runs.add(run);
+        return run;
+    }
+
+    private static DataOutputStream openRun(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE));
+    }
+
+    private static void writeRecord(DataOutputStream out, String record) throws IOException {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static boolean write(DataOutputStream out, String record) {
+        try {
+            writeRecord(out, record);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void merge(List<Path> inputs, Predicate<String> sink) throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(inputs.size(), (a, b) -> order.compare(a.current, b.current));
+        List<RunReader> readers = new ArrayList<>(inputs.size());
+        try {
+            for (Path run : inputs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) heads.add(reader);
+            }
+            while (!heads.isEmpty()) {
+                RunReader reader = heads.poll();
+                if (!sink.test(reader.current)) return;
+                if (reader.advance()) heads.add(reader);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        batch = new ArrayList<>();
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    private static final class RunReader {
+        final DataInputStream in;
+        String current;
+
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+        }
+
+        boolean advance() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            current = new String(bytes, StandardCharsets.UTF_8);
+            return true;
+        }
+    }
+}
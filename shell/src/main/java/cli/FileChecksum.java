@@ -0,0 +1,260 @@
+package cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Checksums for {@code sha256sum}, {@code md5sum}, {@code crc32} and {@code crc32c}.
+ *
+ * Each file is one task on the pool every walk shares, {@link FileTreeWalker#pool}, so many
+ * files are hashed at once. A file is read through a per-worker direct buffer if it is small,
+ * and in memory-mapped windows otherwise.
+ * Digests have to see the bytes in order, but a CRC does not: a file of at least
+ * {@link #PARALLEL_THRESHOLD} is cut into {@link #CHUNK_SIZE} slices whose CRCs are computed in
+ * parallel and then combined, which gives exactly the CRC of the whole file.
+ */
+public final class FileChecksum {
+    static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    static final long PARALLEL_THRESHOLD = 4L * CHUNK_SIZE;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    public enum Algorithm {
+        SHA256("sha256sum", "SHA-256", 0),
+        MD5("md5sum", "MD5", 0),
+        CRC32("crc32", null, 0xEDB88320),
+        CRC32C("crc32c", null, 0x82F63B78);
+
+        private final String command;
+        private final String digest;
+        /** The reflected polynomial of a CRC, for combining the CRCs of adjacent slices. */
+        private final int polynomial;
+
+        Algorithm(String command, String digest, int polynomial) {
+            this.command = command;
+            this.digest = digest;
+            this.polynomial = polynomial;
+        }
+
+        public String command() {
+            return command;
+        }
+
+        /** The algorithm run by {@code command}, or null if there is none. */
+        public static Algorithm forCommand(String command) {
+            for (Algorithm algorithm : values()) {
+                if (algorithm.command.equals(command)) return algorithm;
+            }
+            return null;
+        }
+
+        boolean isCrc() {
+            return digest == null;
+        }
+
+        Checksum newCrc() {
+            return this == CRC32 ? new CRC32() : new CRC32C();
+        }
+
+        MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance(digest);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // both are required of every JDK
+            }
+        }
+    }
+
+    private FileChecksum() {
+    }
+
+    /** The checksum of {@code file} in lower-case hex, computed on the shared pool. */
+    public static String of(Path file, Algorithm algorithm) throws IOException, InterruptedException {
+        return join(start(file, algorithm));
+    }
+
+    /** Starts checksumming {@code file} in the background; the result is collected with {@link #join}. */
+    static RecursiveTask<String> start(Path file, Algorithm algorithm) {
+        RecursiveTask<String> task = new FileTask(file, algorithm);
+        FileTreeWalker.pool().execute(task);
+        return task;
+    }
+
+    /** Waits for a task from {@link #start}, rethrowing its I/O failure. */
+    static String join(RecursiveTask<String> task) throws IOException, InterruptedException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** The checksum of everything left in {@code input}. */
+    public static String of(InputStream input, Algorithm algorithm) throws IOException {
+        byte[] block = new byte[64 * 1024];
+        int n;
+        if (algorithm.isCrc()) {
+            Checksum crc = algorithm.newCrc();
+            while ((n = input.read(block)) != -1) crc.update(block, 0, n);
+            return crcHex(crc.getValue());
+        }
+        MessageDigest digest = algorithm.newDigest();
+        while ((n = input.read(block)) != -1) digest.update(block, 0, n);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String crcHex(long crc) {
+        return String.format("%08x", crc);
+    }
+
+    /**
+     * The CRC of two adjacent ranges from the CRCs of each, {@code second} covering
+     * {@code secondLength} bytes. This is zlib's {@code crc32_combine}: appending n zero bytes
+     * to a CRC is a linear map over GF(2), applied here by squaring it once per bit of n.
+     */
+    static long combine(long first, long second, long secondLength, int polynomial) {
+        if (secondLength <= 0) return first;
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        odd[0] = polynomial & 0xffffffffL; // the operator for one zero bit
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd); // two zero bits
+        square(odd, even); // four zero bits
+        long crc = first;
+        long length = secondLength;
+        do {
+            square(even, odd);
+            if ((length & 1) != 0) crc = times(even, crc);
+            length >>= 1;
+            if (length == 0) break;
+            square(odd, even);
+            if ((length & 1) != 0) crc = times(odd, crc);
+            length >>= 1;
+        } while (length != 0);
+        return crc ^ second;
+    }
+
+    private static long times(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) sum ^= matrix[i];
+        }
+        return sum;
+    }
+
+    private static void square(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+
+    /** Feeds {@code channel[position, position + length)} to {@code sink} a buffer or window at a time. */
+    private static void read(FileChannel channel, long position, long length, Sink sink) throws IOException {
+        if (length <= BUFFER_SIZE) {
+            ByteBuffer buffer = BUFFERS.get().clear().limit((int) length);
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+                // positional reads until the range is in
+            }
+            sink.accept(buffer.flip());
+            return;
+        }
+        for (long offset = 0; offset < length; offset += CHUNK_SIZE) {
+            sink.accept(FileRegions.map(channel, position + offset, Math.min(CHUNK_SIZE, length - offset)));
+        }
+    }
+
+    private interface Sink {
+        void accept(ByteBuffer bytes);
+    }
+
+    @SuppressWarnings("serial")
+    private static final class FileTask extends RecursiveTask<String> {
+        final Path file;
+        final Algorithm algorithm;
+
+        FileTask(Path file, Algorithm algorithm) {
+            this.file = file;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        protected String compute() {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (!algorithm.isCrc()) {
+                    MessageDigest digest = algorithm.newDigest();
+                    read(channel, 0, size, digest::update);
+                    return HexFormat.of().formatHex(digest.digest());
+                }
+                if (size < PARALLEL_THRESHOLD) {
+                    return crcHex(crc(channel, 0, size, algorithm));
+                }
+                List<SliceTask> slices = new ArrayList<>();
+                for (long position = 0; position < size; position += CHUNK_SIZE) {
+                    slices.add(new SliceTask(channel, position, Math.min(CHUNK_SIZE, size - position), algorithm));
+                }
+                invokeAll(slices);
+                long crc = 0;
+                for (SliceTask slice : slices) {
+                    crc = combine(crc, slice.join(), slice.length, algorithm.polynomial);
+                }
+                return crcHex(crc);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        static long crc(FileChannel channel, long position, long length, Algorithm algorithm) throws IOException {
+            Checksum crc = algorithm.newCrc();
+            read(channel, position, length, crc::update);
+            return crc.getValue();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class SliceTask extends RecursiveTask<Long> {
+        final FileChannel channel;
+        final long position;
+        final long length;
+        final Algorithm algorithm;
+
+        SliceTask(FileChannel channel, long position, long length, Algorithm algorithm) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        protected Long compute() {
+            try {
+                return FileTask.crc(channel, position, length, algorithm);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
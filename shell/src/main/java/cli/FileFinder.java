@@ -0,0 +1,121 @@
+package cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Implements {@code find}: prints every path under a directory that passes all of the given
+ * tests, in the order of {@link SortedTreeIterator}, as soon as it is found.
+ *
+ * Sizes follow POSIX {@code find}: a size is rounded up to whole units (512-byte blocks unless
+ * {@code c}, {@code k}, {@code M} or {@code G} is given) before it is compared, and {@code +N}
+ * and {@code -N} mean more and less than N.
+ */
+public class FileFinder {
+    private PathMatcher name;
+    private char type;
+    private long size = -1;
+    private long sizeUnit;
+    private int sizeComparison;
+    private FileTime newer;
+
+    /**
+     * Parses the test at {@code tokens[index]} and its argument; returns the index after them.
+     * Throws IllegalArgumentException for an unknown test or a bad argument.
+     */
+    public int test(String[] tokens, int index, Path directory) throws IOException {
+        String test = tokens[index];
+        if (index + 1 >= tokens.length) {
+            throw new IllegalArgumentException("Missing argument to " + test);
+        }
+        String argument = tokens[index + 1];
+        switch (test) {
+            case "-name":
+                name = directory.getFileSystem().getPathMatcher("glob:" + argument);
+                break;
+            case "-type":
+                if (argument.length() != 1 || "fdl".indexOf(argument.charAt(0)) < 0) {
+                    throw new IllegalArgumentException("Unknown type for -type: " + argument);
+                }
+                type = argument.charAt(0);
+                break;
+            case "-size":
+                parseSize(argument);
+                break;
+            case "-newer":
+                newer = Files.getLastModifiedTime(directory.resolve(argument));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown test for find: " + test);
+        }
+        return index + 2;
+    }
+
+    private void parseSize(String argument) {
+        String number = argument;
+        if (number.startsWith("+") || number.startsWith("-")) {
+            sizeComparison = number.charAt(0) == '+' ? 1 : -1;
+            number = number.substring(1);
+        }
+        sizeUnit = 512;
+        if (!number.isEmpty() && !Character.isDigit(number.charAt(number.length() - 1))) {
+            switch (number.charAt(number.length() - 1)) {
+                case 'c': sizeUnit = 1; break;
+                case 'k': sizeUnit = 1024; break;
+                case 'M': sizeUnit = 1024 * 1024; break;
+                case 'G': sizeUnit = 1024 * 1024 * 1024; break;
+                default: throw new IllegalArgumentException("Invalid size for -size: " + argument);
+            }
+            number = number.substring(0, number.length() - 1);
+        }
+        try {
+            size = Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size for -size: " + argument);
+        }
+    }
+
+    /**
+     * Prints the matching paths under {@code operand}, resolved against {@code directory}, and
+     * what could not be read to {@code errors}. Returns 0, or 1 if part of the tree could not
+     * be read.
+     */
+    public int find(Path directory, String operand, PrintStream output, PrintStream errors) {
+        Path root = directory.resolve(operand);
+        boolean[] failed = new boolean[1];
+        SortedTreeIterator paths = new SortedTreeIterator(root, e -> {
+            failed[0] = true;
+            errors.append("Error reading directory: ").append(e.getMessage()).append(System.lineSeparator());
+        });
+        while (paths.hasNext() && !output.checkError()) {
+            Path path = paths.next();
+            if (matches(path, paths.attributes())) {
+                String display = path.equals(root) ? operand : root.getFileSystem().getPath(operand).resolve(root.relativize(path)).toString();
+                output.append(display).append(System.lineSeparator());
+            }
+        }
+        return failed[0] ? 1 : 0;
+    }
+
+    private boolean matches(Path path, BasicFileAttributes attributes) {
+        if (name != null) {
+            Path fileName = path.getFileName();
+            if (fileName == null || !name.matches(fileName)) return false;
+        }
+        if (type == 'f' && !attributes.isRegularFile()
+                || type == 'd' && !attributes.isDirectory()
+                || type == 'l' && !attributes.isSymbolicLink()) {
+            return false;
+        }
+        if (size >= 0) {
+            long units = (attributes.size() + sizeUnit - 1) / sizeUnit;
+            if (Integer.signum(Long.compare(units, size)) != sizeComparison) return false;
+        }
+        return newer == null || attributes.lastModifiedTime().compareTo(newer) > 0;
+    }
+}
@@ -0,0 +1,27 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Read-only views of a region of a file, for the scanners that work on whole windows at once. */
+final class FileRegions {
+    private FileRegions() {
+    }
+
+    /**
+     * {@code channel[position, position + length)}: memory-mapped where the channel allows it, and
+     * read into the heap where it does not, as for the files of a {@link MemoryFileSystem}.
+     */
+    static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        } catch (UnsupportedOperationException e) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+                // positional reads until the window is full
+            }
+            return buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parallel recursive delete, copy and size, for {@code rm -r}, {@code cp -r}, {@code mv} across
+ * file systems and {@code du}.
+ *
+ * The walk is a tree of {@link CountedCompleter} tasks: a directory task only reads names and
+ * forks a batch task per {@link #BATCH_SIZE} entries, and a batch task reads attributes, handles
+ * the files itself and forks a directory task per subdirectory. A directory is finished (for a
+ * delete: removed) once every task below it has completed. Nothing ever blocks in a join and
+ * completion propagates in a loop, so a deep tree costs heap rather than stack. Symbolic links
+ * are never followed. Failures are collected and the rest of the tree is still processed.
+ * Every directory task also totals the sizes of the files below it, adding its total to its
+ * parent's as it completes, so sizes are aggregated with one counter per directory being walked
+ * and nothing per file.
+ */
+public final class FileTreeWalker {
+    /** Workers shared by every walk; the tasks block on I/O, so there are more than cores. */
+    static final int PARALLELISM = Math.min(64, 2 * Runtime.getRuntime().availableProcessors());
+    static final int BATCH_SIZE = 128;
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+    private FileTreeWalker() {
+    }
+
+    /** Deletes {@code root} and, if it is a directory, everything below it. */
+    public static Result delete(Path root, PrintStream progress) throws InterruptedException {
+        return run("rm", new Delete(), root, progress);
+    }
+
+    /**
+     * Copies {@code source} to {@code target}, recursing into directories. Existing files are
+     * overwritten and existing directories are merged into.
+     */
+    public static Result copy(Path source, Path target, PrintStream progress) throws InterruptedException {
+        return run("cp", new Copy(source, target, false), source, progress);
+    }
+
+    /**
+     * Copies {@code source} to {@code target} as the first half of a move to another file
+     * store, leaving the source for the caller to delete. Like a rename, it fails if
+     * {@code target} exists, and files and directories keep their times and, where both file
+     * systems have them, their POSIX permissions; a directory's are set once everything in it
+     * has been copied.
+     */
+    public static Result copyForMove(Path source, Path target, PrintStream progress)
+            throws IOException, InterruptedException {
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+        return run("mv", new Copy(source, target, true), source, progress);
+    }
+
+    /**
+     * Totals the sizes of the files below {@code root}, or of {@code root} itself if it is not a
+     * directory. {@code totals}, if given, is told each directory's total as soon as it is known,
+     * so a directory is always reported after everything below it.
+     */
+    public static Result size(Path root, DirectoryTotals totals, PrintStream progress) throws InterruptedException {
+        return run("du", new Size(totals), root, progress);
+    }
+
+    /** Receives directory totals from {@link #size}; called from several workers at once. */
+    public interface DirectoryTotals {
+        void total(Path directory, long bytes);
+    }
+
+    /** Whether {@code target} (or, if it does not exist yet, its parent) is on the same store as {@code source}. */
+    public static boolean sameFileStore(Path source, Path target) throws IOException {
+        Path existing = Files.exists(target, LinkOption.NOFOLLOW_LINKS) || target.getParent() == null
+                ? target : target.getParent();
+        return Files.getFileStore(source).equals(Files.getFileStore(existing));
+    }
+
+    /**
+     * The workers shared by every parallel walk in the shell, so that walks, glob searches and
+     * checksums running at once do not each bring a pool of their own.
+     */
+    static ForkJoinPool pool() {
+        return Pool.INSTANCE;
+    }
+
+    private static Result run(String name, Operation operation, Path root, PrintStream progress)
+            throws InterruptedException {
+        Result result = operation.result;
+        Batch task = new Batch(null, operation, List.of(root), null);
+        Pool.INSTANCE.execute(task);
+        try {
+            while (true) {
+                try {
+                    task.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (progress != null) {
+                        result.print(name, progress);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            result.cancelled = true;
+            throw e;
+        } catch (ExecutionException e) {
+            // every I/O failure is caught by the tasks, so this is a bug rather than a bad file
+            throw new IllegalStateException(e.getCause());
+        }
+        if (progress != null) {
+            result.print(name, progress);
+        }
+        return result;
+    }
+
+    /** Counters and failures of one walk, updated concurrently by the tasks. */
+    public static final class Result {
+        private final LongAdder files = new LongAdder();
+        private final LongAdder directories = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+        private volatile boolean cancelled;
+
+        public long getFiles() {
+            return files.sum();
+        }
+
+        public long getDirectories() {
+            return directories.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /** One message per path that could not be processed. */
+        public List<String> getErrors() {
+            return List.copyOf(errors);
+        }
+
+        void failed(IOException e) {
+            errors.add(describe(e));
+        }
+
+        void print(String name, PrintStream output) {
+            output.printf("%s: %d files, %d directories, %d bytes%n", name, getFiles(), getDirectories(), getBytes());
+            output.flush();
+        }
+
+        private static String describe(IOException e) {
+            if (e instanceof FileSystemException) {
+                FileSystemException failure = (FileSystemException) e;
+                if (failure.getReason() == null && failure.getFile() != null) {
+                    // e.g. AccessDeniedException only carries the path
+                    String kind = failure.getClass().getSimpleName().replace("Exception", "");
+                    return failure.getFile() + ": " + kind;
+                }
+            }
+            return e.getMessage();
+        }
+    }
+
+    /** What a walk does with each entry; called from several workers at once. */
+    private abstract static class Operation {
+        final Result result = new Result();
+
+        /** Called before a directory's entries are visited; false skips them. */
+        abstract boolean enter(Path directory) throws IOException;
+
+        abstract void visit(Path file, BasicFileAttributes attributes) throws IOException;
+
+        /** Called once every entry below {@code directory}, of {@code bytes} in all, has been visited. */
+        abstract void leave(Path directory, long bytes) throws IOException;
+    }
+
+    private static final class Delete extends Operation {
+        @Override
+        boolean enter(Path directory) {
+            return true;
+        }
+
+        @Override
+        void visit(Path file, BasicFileAttributes attributes) throws IOException {
+            try {
+                Files.delete(file);
+            } catch (NoSuchFileException e) {
+                return;
+            }
+            result.files.increment();
+        }
+
+        @Override
+        void leave(Path directory, long bytes) throws IOException {
+            Files.delete(directory);
+            result.directories.increment();
+        }
+    }
+
+    private static final class Copy extends Operation {
+        final Path sourceRoot;
+        final Path targetRoot;
+        /** Whether this is a move: nothing may be replaced and attributes are kept. */
+        final boolean moving;
+
+        Copy(Path sourceRoot, Path targetRoot, boolean moving) {
+            this.sourceRoot = sourceRoot;
+            this.targetRoot = targetRoot;
+            this.moving = moving;
+        }
+
+        private Path target(Path source) {
+            return targetRoot.resolve(sourceRoot.relativize(source).toString());
+        }
+
+        @Override
+        boolean enter(Path directory) throws IOException {
+            Path target = target(directory);
+            try {
+                Files.createDirectory(target);
+            } catch (FileAlreadyExistsException e) {
+                if (moving || !Files.isDirectory(target)) throw e;
+            }
+            result.directories.increment();
+            return true;
+        }
+
+        @Override
+        void visit(Path file, BasicFileAttributes attributes) throws IOException {
+            Path target = target(file);
+            if (attributes.isSymbolicLink()) {
+                if (moving) {
+                    Files.copy(file, target, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.COPY_ATTRIBUTES);
+                } else {
+                    Files.copy(file, target, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else if (attributes.isRegularFile()) {
+                result.bytes.add(copyFile(file, target));
+                if (moving) {
+                    copyAttributes(file, attributes, target);
+                }
+            } else {
+                throw new FileSystemException(file.toString(), null, "not a regular file");
+            }
+            result.files.increment();
+        }
+
+        @Override
+        void leave(Path directory, long bytes) throws IOException {
+            if (moving) {
+                // only now, so copying the entries neither bumps the times nor trips over the permissions
+                copyAttributes(directory,
+                        Files.readAttributes(directory, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS),
+                        target(directory));
+            }
+        }
+
+        /** Copies in kernel space where the platform allows it; returns the bytes copied. */
+        private long copyFile(Path source, Path target) throws IOException {
+            StandardOpenOption create = moving ? StandardOpenOption.CREATE_NEW : StandardOpenOption.CREATE;
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                         create, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, size - position, out);
+                    if (transferred <= 0) break;
+                    position += transferred;
+                }
+                return position;
+            }
+        }
+
+        /** Gives {@code target} the times, and POSIX permissions if both ends have them, of {@code source}. */
+        private static void copyAttributes(Path source, BasicFileAttributes attributes, Path target)
+                throws IOException {
+            if (source.getFileSystem().supportedFileAttributeViews().contains("posix")
+                    && target.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source, LinkOption.NOFOLLOW_LINKS));
+            }
+            Files.getFileAttributeView(target, BasicFileAttributeView.class, LinkOption.NOFOLLOW_LINKS)
+                    .setTimes(attributes.lastModifiedTime(), attributes.lastAccessTime(), attributes.creationTime());
+        }
+    }
+
+    private static final class Size extends Operation {
+        final DirectoryTotals totals;
+
+        Size(DirectoryTotals totals) {
+            this.totals = totals;
+        }
+
+        @Override
+        boolean enter(Path directory) {
+            return true;
+        }
+
+        @Override
+        void visit(Path file, BasicFileAttributes attributes) {
+            result.files.increment();
+            result.bytes.add(attributes.size());
+        }
+
+        @Override
+        void leave(Path directory, long bytes) {
+            result.directories.increment();
+            if (totals != null) {
+                totals.total(directory, bytes);
+            }
+        }
+    }
+
+    /** Reads one directory's names and hands them out in batches. */
+    @SuppressWarnings("serial")
+    private static final class Directory extends CountedCompleter<Void> {
+        final Operation operation;
+        final Path directory;
+        /** The directory this one is in, whose total it adds to; null for the root. */
+        final Directory enclosing;
+        final AtomicLong bytes = new AtomicLong();
+        boolean entered;
+
+        Directory(CountedCompleter<?> parent, Operation operation, Path directory, Directory enclosing) {
+            super(parent);
+            this.operation = operation;
+            this.directory = directory;
+            this.enclosing = enclosing;
+        }
+
+        @Override
+        public void compute() {
+            Result result = operation.result;
+            try {
+                entered = !result.cancelled && operation.enter(directory);
+            } catch (IOException e) {
+                result.failed(e);
+            }
+            if (entered) {
+                List<Path> batch = new ArrayList<>(BATCH_SIZE);
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                    for (Path entry : entries) {
+                        if (result.cancelled) break;
+                        batch.add(entry);
+                        if (batch.size() == BATCH_SIZE) {
+                            addToPendingCount(1);
+                            new Batch(this, operation, batch, this).fork();
+                            batch = new ArrayList<>(BATCH_SIZE);
+                        }
+                    }
+                } catch (IOException e) {
+                    result.failed(e);
+                } catch (DirectoryIteratorException e) {
+                    result.failed(e.getCause());
+                }
+                if (!batch.isEmpty()) {
+                    addToPendingCount(1);
+                    new Batch(this, operation, batch, this).fork();
+                }
+            }
+            tryComplete();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (!entered || operation.result.cancelled) return;
+            long total = bytes.get();
+            try {
+                operation.leave(directory, total);
+            } catch (IOException e) {
+                operation.result.failed(e);
+            }
+            if (enclosing != null) {
+                enclosing.bytes.addAndGet(total);
+            }
+        }
+    }
+
+    /** Visits files itself and forks a {@link Directory} task for each subdirectory. */
+    @SuppressWarnings("serial")
+    private static final class Batch extends CountedCompleter<Void> {
+        final Operation operation;
+        final List<Path> entries;
+        /** The directory the entries are in; null for the root. */
+        final Directory directory;
+
+        Batch(CountedCompleter<?> parent, Operation operation, List<Path> entries, Directory directory) {
+            super(parent);
+            this.operation = operation;
+            this.entries = entries;
+            this.directory = directory;
+        }
+
+        @Override
+        public void compute() {
+            Result result = operation.result;
+            long bytes = 0;
+            for (Path entry : entries) {
+                if (result.cancelled) break;
+                try {
+                    BasicFileAttributes attributes =
+                            Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        addToPendingCount(1);
+                        new Directory(this, operation, entry, directory).fork();
+                    } else {
+                        operation.visit(entry, attributes);
+                        bytes += attributes.size();
+                    }
+                } catch (NoSuchFileException e) {
+                    // removed while we were walking: nothing left to do with it
+                } catch (IOException e) {
+                    result.failed(e);
+                }
+            }
+            if (directory != null) {
+                directory.bytes.addAndGet(bytes);
+            }
+            tryComplete();
+        }
+    }
+
+    private static final class Pool {
+        static final ForkJoinPool INSTANCE = new ForkJoinPool(PARALLELISM);
+    }
+}
@@ -0,0 +1,303 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Shell-style expansion of {@code *}, {@code ?}, {@code [...]}, {@code {a,b}} and {@code **} in
+ * command arguments.
+ *
+ * A pattern is matched one path segment at a time: literal segments are resolved directly, and
+ * every other segment filters a directory stream through a {@link PathMatcher}, compiled once and
+ * kept in an LRU of {@link #MAX_CACHED_MATCHERS}. A {@code **} segment matches any number of
+ * directories and is walked in parallel, one {@link CountedCompleter} per directory, with the
+ * segment after it matched against each listing as it is read, so memory grows with the depth
+ * and fan-out of the tree, never with the number of matches. As in POSIX shells, a segment only
+ * matches a name starting with {@code .} if it starts with one itself, {@code **} does not enter
+ * hidden directories, symbolic links are not followed, and a word matching nothing is kept as
+ * it was typed.
+ */
+public class GlobExpander {
+    static final int MAX_CACHED_MATCHERS = 256;
+    private static final String DOUBLE_STAR = "**";
+
+    private final Map<String, PathMatcher> matchers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PathMatcher> eldest) {
+            return size() > MAX_CACHED_MATCHERS;
+        }
+    };
+    private FileSystem matcherFileSystem;
+
+    /**
+     * Replaces each word of {@code tokens} that has a glob in {@code globs} by its matches under
+     * {@code directory}, sorted; words without matches, and the command name, are kept as they are.
+     */
+    public String[] expand(String[] tokens, String[] globs, Path directory) {
+        List<String> expanded = new ArrayList<>(tokens.length);
+        expanded.add(tokens[0]);
+        for (int i = 1; i < tokens.length; i++) {
+            if (globs[i] == null) {
+                expanded.add(tokens[i]);
+                continue;
+            }
+            Queue<String> matches = new ConcurrentLinkedQueue<>();
+            forEach(directory, globs[i], false, (path, display) -> matches.add(display));
+            if (matches.isEmpty()) {
+                expanded.add(tokens[i]);
+            } else {
+                String[] sorted = matches.toArray(new String[0]);
+                Arrays.sort(sorted);
+                Collections.addAll(expanded, sorted);
+            }
+        }
+        return expanded.toArray(new String[0]);
+    }
+
+    /** Receives each match: its path and the path as it should be shown, spelled like the pattern. */
+    public interface Match {
+        void accept(Path path, String display);
+    }
+
+    /**
+     * Passes every match of {@code glob} under {@code directory} to {@code action} as it is
+     * found, possibly from several threads at once, and returns the number of matches. With
+     * {@code prune}, a matching directory is not searched for further matches, so the action may
+     * remove it.
+     */
+    public long forEach(Path directory, String glob, boolean prune, Match action) {
+        boolean absolute = glob.startsWith("/");
+        List<Segment> segments = new ArrayList<>();
+        for (String part : split(glob)) {
+            if (part.isEmpty()) continue;
+            Segment segment = segment(directory.getFileSystem(), part);
+            // "**/**" matches what "**" does, and a walk only ever looks past one of them
+            if (segment == Segment.DOUBLE_STAR && !segments.isEmpty()
+                    && segments.get(segments.size() - 1) == Segment.DOUBLE_STAR) {
+                continue;
+            }
+            segments.add(segment);
+        }
+        Path start = absolute ? directory.getRoot() : directory;
+        long[] count = new long[1];
+        Match counted = (path, display) -> {
+            synchronized (count) {
+                count[0]++;
+            }
+            action.accept(path, display);
+        };
+        new Search(segments, prune, counted).expand(start, absolute ? "/" : "", 0);
+        return count[0];
+    }
+
+    /** Splits at every {@code /} outside brackets and braces. */
+    static List<String> split(String glob) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[' || c == '{') {
+                depth++;
+            } else if ((c == ']' || c == '}') && depth > 0) {
+                depth--;
+            } else if (c == '/' && depth == 0) {
+                parts.add(glob.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(glob.substring(start));
+        return parts;
+    }
+
+    private Segment segment(FileSystem fileSystem, String part) {
+        if (part.equals(DOUBLE_STAR)) {
+            return Segment.DOUBLE_STAR;
+        }
+        StringBuilder literal = new StringBuilder(part.length());
+        for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (c == '\\' && i + 1 < part.length()) {
+                literal.append(part.charAt(++i));
+            } else if ("*?[{".indexOf(c) >= 0) {
+                try {
+                    return new Segment(null, matcher(fileSystem, part), part.startsWith("."));
+                } catch (PatternSyntaxException e) {
+                    // such as an unclosed "[": like other shells, take the segment literally
+                    return new Segment(part, null, true);
+                }
+            } else {
+                literal.append(c);
+            }
+        }
+        return new Segment(literal.toString(), null, true);
+    }
+
+    private synchronized PathMatcher matcher(FileSystem fileSystem, String glob) {
+        if (fileSystem != matcherFileSystem) {
+            matchers.clear();
+            matcherFileSystem = fileSystem;
+        }
+        PathMatcher matcher = matchers.get(glob);
+        if (matcher == null) {
+            matcher = fileSystem.getPathMatcher("glob:" + glob);
+            matchers.put(glob, matcher);
+        }
+        return matcher;
+    }
+
+    synchronized int cachedMatchers() {
+        return matchers.size();
+    }
+
+    /** One segment of a pattern: a literal name, a matcher, or {@code **}. */
+    private static final class Segment {
+        static final Segment DOUBLE_STAR = new Segment(null, null, false);
+
+        final String literal;
+        final PathMatcher matcher;
+        final boolean matchesHidden;
+
+        Segment(String literal, PathMatcher matcher, boolean matchesHidden) {
+            this.literal = literal;
+            this.matcher = matcher;
+            this.matchesHidden = matchesHidden;
+        }
+
+        boolean matches(Path name) {
+            if (literal != null) {
+                return literal.equals(name.toString());
+            }
+            return (matchesHidden || !name.toString().startsWith(".")) && matcher.matches(name);
+        }
+    }
+
+    /** One expansion of one pattern. */
+    private static final class Search {
+        final List<Segment> segments;
+        final boolean prune;
+        final Match action;
+
+        Search(List<Segment> segments, boolean prune, Match action) {
+            this.segments = segments;
+            this.prune = prune;
+            this.action = action;
+        }
+
+        /** Matches {@code segments[index...]} below {@code directory}, shown as {@code display}. */
+        void expand(Path directory, String display, int index) {
+            if (index == segments.size()) {
+                action.accept(directory, display);
+                return;
+            }
+            Segment segment = segments.get(index);
+            boolean last = index == segments.size() - 1;
+            if (segment == Segment.DOUBLE_STAR) {
+                FileTreeWalker.pool().invoke(new Walk(null, this, directory, prefix(display), index));
+            } else if (segment.literal != null) {
+                Path next = directory.resolve(segment.literal);
+                String shown = prefix(display) + segment.literal;
+                if (last ? Files.exists(next, LinkOption.NOFOLLOW_LINKS) : Files.isDirectory(next)) {
+                    expand(next, shown, index + 1);
+                }
+            } else {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory,
+                        entry -> segment.matches(entry.getFileName()))) {
+                    for (Path entry : entries) {
+                        String shown = prefix(display) + entry.getFileName();
+                        if (last) {
+                            action.accept(entry, shown);
+                        } else if (Files.isDirectory(entry)) {
+                            expand(entry, shown, index + 1);
+                        }
+                    }
+                } catch (IOException | DirectoryIteratorException e) {
+                    // an unreadable directory simply has no matches, as in any shell
+                }
+            }
+        }
+
+        private static String prefix(String display) {
+            return display.isEmpty() || display.endsWith("/") ? display : display + "/";
+        }
+    }
+
+    /**
+     * The {@code **} at {@code segments[index]}, applied to one directory: the rest of the
+     * pattern is matched here, and a task is forked for every subdirectory.
+     */
+    @SuppressWarnings("serial")
+    private static final class Walk extends CountedCompleter<Void> {
+        private final Search search;
+        private final Path directory;
+        private final String prefix;
+        private final int index;
+
+        Walk(Walk parent, Search search, Path directory, String prefix, int index) {
+            super(parent);
+            this.search = search;
+            this.directory = directory;
+            this.prefix = prefix;
+            this.index = index;
+        }
+
+        @Override
+        public void compute() {
+            List<Segment> segments = search.segments;
+            boolean rest = index + 1 < segments.size();
+            // the next segment is matched against this listing; anything after it is a search of its own
+            Segment next = rest ? segments.get(index + 1) : null;
+            boolean nextIsLast = index + 2 == segments.size();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    Path name = entry.getFileName();
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    String shown = prefix + name;
+                    boolean matched = false;
+                    if (next == null) {
+                        matched = !name.toString().startsWith(".");
+                        if (matched) search.action.accept(entry, shown);
+                    } else if (next != Segment.DOUBLE_STAR && next.matches(name)) {
+                        matched = true;
+                        if (nextIsLast) {
+                            search.action.accept(entry, shown);
+                        } else if (attributes.isDirectory()) {
+                            search.expand(entry, shown, index + 2);
+                        }
+                    }
+                    if (attributes.isDirectory() && !name.toString().startsWith(".") && !(matched && search.prune)) {
+                        addToPendingCount(1);
+                        new Walk(this, search, entry, shown + "/", index).fork();
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                // unreadable: nothing below it matches
+            }
+            tryComplete();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped file of command lines, shared by every process that opens it.
+ *
+ * Each record is its length, the CRC-32 of its bytes, and the UTF-8 bytes themselves. The file
+ * grows in {@link #CHUNK_SIZE} steps and is zero past the last record, so a zero length marks
+ * the end. A record's bytes and checksum are stored before its length, so a record torn by a
+ * crash either reads as the end of the log or fails its checksum; either way reading stops
+ * there, and the next append simply overwrites it. Appends hold an exclusive {@link FileLock}
+ * and first read whatever other processes appended since, so every reader sees the same order.
+ */
+final class HistoryLog implements Closeable {
+    static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int HEADER_SIZE = 8;
+
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private int end;
+
+    HistoryLog(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), CHUNK_SIZE));
+    }
+
+    /** Passes every record after those already read to {@code reader}, oldest first. */
+    synchronized void readNew(Consumer<String> reader) throws IOException {
+        if (channel.size() > map.capacity()) {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        CRC32 crc = new CRC32();
+        while (end + HEADER_SIZE <= map.capacity()) {
+            int length = map.getInt(end);
+            if (length <= 0 || length > map.capacity() - end - HEADER_SIZE) return;
+            byte[] bytes = new byte[length];
+            map.get(end + HEADER_SIZE, bytes);
+            crc.reset();
+            crc.update(bytes);
+            if ((int) crc.getValue() != map.getInt(end + 4)) return;
+            reader.accept(new String(bytes, StandardCharsets.UTF_8));
+            end += HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * Appends {@code line}; records other processes appended first are passed to {@code reader}
+     * before it, so they keep their place in the shared order.
+     */
+    synchronized void append(String line, Consumer<String> reader) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        FileLock lock = channel.lock();
+        try {
+            readNew(reader);
+            long needed = (long) end + 2 * HEADER_SIZE + bytes.length;
+            if (needed > map.capacity()) {
+                long size = (needed + CHUNK_SIZE - 1) / CHUNK_SIZE * CHUNK_SIZE;
+                if (size > Integer.MAX_VALUE) throw new IOException("History file is full");
+                channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+                map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            // bytes and checksum first, length last: until the length lands the record does not exist
+            map.put(end + HEADER_SIZE, bytes);
+            map.putInt(end + 4, (int) crc.getValue());
+            map.putInt(end, bytes.length);
+            end += HEADER_SIZE + bytes.length;
+        } finally {
+            lock.release();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,233 @@
+package cli;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * One session's background jobs, for {@code &}, {@code jobs}, {@code wait} and {@code fg}.
+ *
+ * Every job runs on its own virtual thread, but at most {@link #MAX_RUNNING} at a time; the rest
+ * queue for a permit. A job's output is held back in its own buffer, spilling to a temp file past
+ * {@link #SPILL_THRESHOLD}, so concurrent jobs never interleave on the terminal. It is written out
+ * in one piece when the job is waited for or brought to the foreground, after which the job
+ * writes straight to the terminal until it finishes and leaves the table.
+ */
+public class JobTable implements Closeable {
+    static final int MAX_RUNNING = 16;
+    static final int SPILL_THRESHOLD = 1024 * 1024;
+
+    public enum State { QUEUED, RUNNING, DONE }
+
+    private final TreeMap<Integer, Job> jobs = new TreeMap<>();
+    private final Semaphore permits = new Semaphore(MAX_RUNNING);
+
+    /**
+     * Starts {@code body} as a new job; it is given the job's output and returns its status.
+     * Returns the job's number.
+     */
+    public synchronized int start(String command, Function<PrintStream, Integer> body) {
+        int id = jobs.isEmpty() ? 1 : jobs.lastKey() + 1;
+        Job job = new Job(id, command);
+        jobs.put(id, job);
+        job.thread = Thread.ofVirtual().name("job-" + id).start(() -> run(job, body));
+        return id;
+    }
+
+    private void run(Job job, Function<PrintStream, Integer> body) {
+        PrintStream output = new PrintStream(job.output, false);
+        try {
+            permits.acquire();
+            try {
+                job.started = System.nanoTime();
+                job.state = State.RUNNING;
+                job.status = body.apply(output);
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            job.status = TerminalParser.STATUS_INTERRUPTED;
+        } finally {
+            output.flush();
+            job.finished = System.nanoTime();
+            job.state = State.DONE;
+        }
+    }
+
+    /** Lists every job; finished jobs with no output left to show are dropped once listed. */
+    public synchronized void list(PrintStream output) {
+        List<Integer> reaped = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            State state = job.state;
+            long end = state == State.DONE ? job.finished : System.nanoTime();
+            String label = state == State.QUEUED ? "Queued"
+                    : state == State.RUNNING ? "Running"
+                    : job.status == 0 ? "Done" : "Exit " + job.status;
+            output.printf("[%d] %-8s %8.1fs  %s%n", job.id, label,
+                    state == State.QUEUED ? 0.0 : (end - job.started) / 1e9, job.command);
+            if (state == State.DONE && job.output.isEmpty()) {
+                reaped.add(job.id);
+            }
+        }
+        reaped.forEach(jobs::remove);
+    }
+
+    /**
+     * Parses a job reference, {@code %n} or {@code n}; null means the most recent job. Throws
+     * IllegalArgumentException if there is no such job.
+     */
+    public synchronized int find(String reference) {
+        if (reference == null) {
+            if (jobs.isEmpty()) throw new IllegalArgumentException("No current job");
+            return jobs.lastKey();
+        }
+        String number = reference.startsWith("%") ? reference.substring(1) : reference;
+        try {
+            int id = Integer.parseInt(number);
+            if (jobs.containsKey(id)) return id;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("No such job: " + reference);
+    }
+
+    public synchronized List<Integer> ids() {
+        return new ArrayList<>(jobs.keySet());
+    }
+
+    /**
+     * Writes out what job {@code id} has printed so far, lets it write straight to
+     * {@code terminal} from then on, and waits for it to finish. Returns its status.
+     */
+    public int join(int id, PrintStream terminal) throws InterruptedException {
+        Job job;
+        synchronized (this) {
+            job = jobs.get(id);
+        }
+        if (job == null) throw new IllegalArgumentException("No such job: %" + id);
+        if (job.thread == Thread.currentThread()) throw new IllegalArgumentException("A job cannot wait for itself");
+        job.output.attach(terminal);
+        job.thread.join();
+        terminal.flush();
+        synchronized (this) {
+            jobs.remove(id);
+        }
+        return job.status;
+    }
+
+    /** Interrupts every job and drops whatever output they still held. */
+    @Override
+    public void close() {
+        List<Job> all;
+        synchronized (this) {
+            all = new ArrayList<>(jobs.values());
+            jobs.clear();
+        }
+        for (Job job : all) {
+            job.thread.interrupt();
+            job.output.discard();
+        }
+    }
+
+    private static final class Job {
+        final int id;
+        final String command;
+        final JobOutput output = new JobOutput();
+        volatile State state = State.QUEUED;
+        volatile long started;
+        volatile long finished;
+        volatile int status;
+        Thread thread;
+
+        Job(int id, String command) {
+            this.id = id;
+            this.command = command;
+        }
+    }
+
+    /** Output held in memory, then in a temp file, until it is attached to the terminal. */
+    private static final class JobOutput extends OutputStream {
+        private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path spillFile;
+        private OutputStream spill;
+        private OutputStream live;
+        private boolean discarded;
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            if (discarded) throw new IOException("Job output discarded");
+            if (live != null) {
+                live.write(b, off, len);
+                return;
+            }
+            if (spill == null && memory.size() + len > SPILL_THRESHOLD) {
+                spillFile = Files.createTempFile("job", ".out");
+                spill = new BufferedOutputStream(Files.newOutputStream(spillFile));
+                memory.writeTo(spill);
+                memory.reset();
+            }
+            (spill != null ? spill : memory).write(b, off, len);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (live != null) {
+                live.flush();
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return spill == null && memory.size() == 0;
+        }
+
+        synchronized void attach(PrintStream terminal) {
+            if (live != null || discarded) return;
+            try {
+                memory.writeTo(terminal);
+                if (spill != null) {
+                    spill.close();
+                    Files.copy(spillFile, terminal);
+                }
+            } catch (IOException e) {
+                terminal.println("Error reading job output: " + e.getMessage());
+            }
+            memory.reset();
+            dropSpill();
+            live = terminal;
+        }
+
+        synchronized void discard() {
+            discarded = true;
+            live = null;
+            memory.reset();
+            dropSpill();
+        }
+
+        private void dropSpill() {
+            if (spill == null) return;
+            try {
+                spill.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException ignored) {
+                // a leftover temp file is all that is lost
+            }
+            spill = null;
+            spillFile = null;
+        }
+    }
+}
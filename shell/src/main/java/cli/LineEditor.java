@@ -0,0 +1,231 @@
+package cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reads lines from a terminal one key at a time, with cursor movement, word and line deletion
+ * and tab completion. The terminal is switched out of canonical mode with {@code stty} only
+ * while a line is being read, so commands see it as usual. Keys are decoded from the session's
+ * input a character at a time, so nothing typed or pasted after the line is read ahead of the
+ * command that wants it.
+ */
+final class LineEditor {
+    private static final char CTRL_A = 1, CTRL_D = 4, CTRL_E = 5, BACKSPACE = 8, TAB = 9,
+            CTRL_K = 11, CTRL_U = 21, CTRL_W = 23, ESCAPE = 27, DELETE = 127;
+
+    private final SessionInput input;
+    private final PrintStream output;
+    private final Function<String, Completion> completer;
+    private final String cookedMode;
+    private final StringBuilder line = new StringBuilder();
+    private int cursor;
+    /** The second half of a surrogate pair, read along with the first. */
+    private int pendingLowSurrogate = -1;
+
+    private LineEditor(SessionInput input, PrintStream output, Function<String, Completion> completer,
+                       String cookedMode) {
+        this.input = input;
+        this.output = output;
+        this.completer = completer;
+        this.cookedMode = cookedMode;
+    }
+
+    /** An editor on {@code input} and {@code System.out}, or null if the terminal cannot be put in raw mode. */
+    static LineEditor open(SessionInput input, Function<String, Completion> completer) {
+        String mode = Terminal.mode();
+        if (mode == null) return null;
+        LineEditor editor = new LineEditor(input, System.out, completer, mode);
+        Runtime.getRuntime().addShutdownHook(new Thread(editor::cooked));
+        return editor;
+    }
+
+    /** Reads one line after printing {@code prompt}; null at end of input (Ctrl-D on an empty line). */
+    String readLine(String prompt) throws IOException {
+        line.setLength(0);
+        cursor = 0;
+        output.print(prompt);
+        output.flush();
+        raw();
+        try {
+            boolean listed = false;
+            char previous = 0;
+            int c;
+            while ((c = readChar()) != -1) {
+                char key = (char) c;
+                switch (key) {
+                    case '\r':
+                    case '\n':
+                        output.println();
+                        return line.toString();
+                    case CTRL_D:
+                        if (line.length() == 0) {
+                            output.println();
+                            return null;
+                        }
+                        if (cursor < line.length()) line.deleteCharAt(cursor);
+                        break;
+                    case TAB:
+                        listed = complete(previous == TAB && !listed);
+                        break;
+                    case BACKSPACE:
+                    case DELETE:
+                        if (cursor > 0) line.deleteCharAt(--cursor);
+                        break;
+                    case CTRL_A:
+                        cursor = 0;
+                        break;
+                    case CTRL_E:
+                        cursor = line.length();
+                        break;
+                    case CTRL_K:
+                        line.setLength(cursor);
+                        break;
+                    case CTRL_U:
+                        line.delete(0, cursor);
+                        cursor = 0;
+                        break;
+                    case CTRL_W: {
+                        int start = cursor;
+                        while (start > 0 && line.charAt(start - 1) == ' ') start--;
+                        while (start > 0 && line.charAt(start - 1) != ' ') start--;
+                        line.delete(start, cursor);
+                        cursor = start;
+                        break;
+                    }
+                    case ESCAPE:
+                        escapeSequence();
+                        break;
+                    default:
+                        if (key >= ' ') {
+                            line.insert(cursor++, key);
+                        }
+                }
+                if (key != TAB) listed = false;
+                previous = key;
+                redraw(prompt);
+            }
+            return line.length() == 0 ? null : line.toString();
+        } finally {
+            cooked();
+        }
+    }
+
+    /**
+     * Extends the word before the cursor as far as its candidates agree. If they agree no
+     * further, the first tab rings the bell and a second lists them; returns whether it did.
+     */
+    private boolean complete(boolean list) {
+        Completion completion = completer.apply(line.substring(0, cursor));
+        if (!completion.extension().isEmpty()) {
+            line.insert(cursor, completion.extension());
+            cursor += completion.extension().length();
+            return false;
+        }
+        if (!list || completion.candidates().size() < 2) {
+            output.print('\007');
+            return false;
+        }
+        output.println();
+        printColumns(completion.candidates());
+        return true;
+    }
+
+    private void printColumns(List<String> candidates) {
+        int width = 0;
+        for (String candidate : candidates) width = Math.max(width, candidate.length() + 2);
+        int columns = Math.max(1, Terminal.columns() / width);
+        int rows = (candidates.size() + columns - 1) / columns;
+        for (int row = 0; row < rows; row++) {
+            StringBuilder text = new StringBuilder();
+            for (int column = 0; column < columns; column++) {
+                int index = column * rows + row;
+                if (index >= candidates.size()) break;
+                String candidate = candidates.get(index);
+                text.append(candidate);
+                if (column < columns - 1) text.append(" ".repeat(width - candidate.length()));
+            }
+            output.println(text.toString().stripTrailing());
+        }
+        if (candidates.size() == PathCompleter.MAX_CANDIDATES) {
+            output.println("(first " + PathCompleter.MAX_CANDIDATES + " shown)");
+        }
+    }
+
+    /** Handles the arrow, Home, End and Delete keys; any other sequence after Escape is dropped. */
+    private void escapeSequence() throws IOException {
+        int introducer = readChar();
+        if (introducer != '[' && introducer != 'O') return;
+        StringBuilder parameters = new StringBuilder();
+        int key;
+        while ((key = readChar()) != -1 && (key < 0x40 || key > 0x7e)) {
+            parameters.append((char) key);
+        }
+        String code = key == '~' ? parameters.toString() : String.valueOf((char) key);
+        switch (code) {
+            case "C":
+                if (cursor < line.length()) cursor++;
+                break;
+            case "D":
+                if (cursor > 0) cursor--;
+                break;
+            case "H":
+            case "1":
+            case "7":
+                cursor = 0;
+                break;
+            case "F":
+            case "4":
+            case "8":
+                cursor = line.length();
+                break;
+            case "3":
+                if (cursor < line.length()) line.deleteCharAt(cursor);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Reads one UTF-16 char of UTF-8 input, never reading past the character it is in. */
+    private int readChar() throws IOException {
+        if (pendingLowSurrogate >= 0) {
+            int low = pendingLowSurrogate;
+            pendingLowSurrogate = -1;
+            return low;
+        }
+        int first = input.read();
+        if (first < 0x80) return first;
+        int length = first >= 0xf0 ? 4 : first >= 0xe0 ? 3 : first >= 0xc0 ? 2 : 1;
+        byte[] bytes = new byte[length];
+        bytes[0] = (byte) first;
+        for (int i = 1; i < length; i++) {
+            int next = input.read();
+            if (next == -1) return -1;
+            bytes[i] = (byte) next;
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        if (text.length() > 1) pendingLowSurrogate = text.charAt(1);
+        return text.charAt(0);
+    }
+
+    private void redraw(String prompt) {
+        output.print("\r" + prompt + line + "\033[K");
+        if (cursor < line.length()) {
+            output.print("\033[" + (line.length() - cursor) + "D");
+        }
+        output.flush();
+    }
+
+    private void raw() {
+        // if this fails, keys still arrive a line at a time; completion just does not happen
+        Terminal.raw();
+    }
+
+    private void cooked() {
+        Terminal.restore(cookedMode);
+    }
+}
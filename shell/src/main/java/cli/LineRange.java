@@ -0,0 +1,176 @@
+package cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The first or last lines of a file or stream, for {@code head} and {@code tail}.
+ *
+ * Files are never read further than needed: {@code head} stops after the last wanted line, and
+ * {@code tail} reads backward from the end with positional reads until it has seen enough line
+ * breaks, then copies the rest out, by {@link ChannelOutput#transferFrom} when the output is a
+ * file. A stream has no end to start from, so its tail is kept as a window of the last lines.
+ */
+public final class LineRange {
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final long FOLLOW_INTERVAL_MILLIS = 1000;
+
+    private LineRange() {
+    }
+
+    /** Writes the first {@code lines} lines of {@code input}, reading no further than their end. */
+    public static void head(InputStream input, long lines, PrintStream output) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while (lines > 0 && !output.checkError() && (n = input.read(buffer)) != -1) {
+            int end = 0;
+            while (end < n && lines > 0) {
+                if (buffer[end++] == '\n') lines--;
+            }
+            output.write(buffer, 0, end);
+        }
+    }
+
+    /** Writes the last {@code lines} lines of a file; returns the position up to which it was read. */
+    public static long tail(FileChannel channel, long lines, PrintStream output) throws IOException {
+        long size = channel.size();
+        copy(channel, startOfLastLines(channel, size, lines), size, output);
+        return size;
+    }
+
+    /** Where the last {@code lines} lines of {@code channel[0, size)} begin. */
+    static long startOfLastLines(FileChannel channel, long size, long lines) throws IOException {
+        if (lines <= 0) return size;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        long position = size;
+        while (position > 0) {
+            int length = (int) Math.min(BUFFER_SIZE, position);
+            position -= length;
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("File shrank while being read");
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                // a newline at the very end closes the last line rather than starting a new one
+                if (bytes[i] == '\n' && position + i != size - 1 && --lines == 0) {
+                    return position + i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /** Writes the last {@code lines} lines of {@code input}, holding only those in memory. */
+    public static void tail(InputStream input, long lines, PrintStream output) throws IOException {
+        Deque<byte[]> window = new ArrayDeque<>();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = input.read(buffer)) != -1) {
+            int start = 0;
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] != '\n') continue;
+                line.write(buffer, start, i + 1 - start);
+                start = i + 1;
+                if (lines > 0) {
+                    window.add(line.toByteArray());
+                    if (window.size() > lines) window.remove();
+                }
+                line.reset();
+            }
+            line.write(buffer, start, n - start);
+        }
+        if (line.size() > 0 && lines > 0) {
+            window.add(line.toByteArray());
+            if (window.size() > lines) window.remove();
+        }
+        for (byte[] kept : window) {
+            output.write(kept, 0, kept.length);
+        }
+    }
+
+    /**
+     * Writes whatever is appended to {@code file} after {@code position} until the output fails
+     * or the thread is interrupted. A {@link WatchService} on the parent directory wakes the loop
+     * up early; without one it simply polls. A file that shrinks is taken to have been truncated
+     * and is followed from its start.
+     */
+    public static void follow(Path file, FileChannel channel, long position, PrintStream output) throws IOException {
+        WatchService watcher = null;
+        try {
+            try {
+                watcher = file.getFileSystem().newWatchService();
+                file.toAbsolutePath().getParent().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException | UnsupportedOperationException e) {
+                // polling alone still works, only with more latency
+            }
+            output.flush();
+            while (!output.checkError()) {
+                long size = channel.size();
+                if (size < position) {
+                    position = 0;
+                }
+                if (size > position) {
+                    copy(channel, position, size, output);
+                    output.flush();
+                    position = size;
+                }
+                if (!await(watcher)) return;
+            }
+        } finally {
+            if (watcher != null) {
+                watcher.close();
+            }
+        }
+    }
+
+    /** Waits for a change event or the poll interval; false once interrupted. */
+    private static boolean await(WatchService watcher) {
+        try {
+            if (watcher == null) {
+                Thread.sleep(FOLLOW_INTERVAL_MILLIS);
+                return true;
+            }
+            WatchKey key = watcher.poll(FOLLOW_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                key.pollEvents();
+                key.reset();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Writes {@code channel[from, to)} to {@code output}. */
+    private static void copy(FileChannel channel, long from, long to, PrintStream output) throws IOException {
+        if (output instanceof ChannelOutput) {
+            ((ChannelOutput) output).transferFrom(channel, from, to);
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = from;
+        while (position < to && !output.checkError()) {
+            buffer.clear().limit((int) Math.min(BUFFER_SIZE, to - position));
+            int n = channel.read(buffer, position);
+            if (n <= 0) break;
+            output.write(buffer.array(), 0, n);
+            position += n;
+        }
+    }
+}
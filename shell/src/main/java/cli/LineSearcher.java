@@ -0,0 +1,170 @@
+package cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the lines of a file or stream that match a regular expression, without decoding the
+ * lines that cannot match.
+ *
+ * The pattern's literal prefix, the plain characters it starts with, is searched for as bytes
+ * first; only a line that contains it is decoded and, unless the whole pattern is literal, run
+ * through the regex. Patterns without such a prefix decode every line. Large files are read
+ * through memory-mapped windows of at most {@link #WINDOW_SIZE} that always end on a line
+ * boundary, so memory use does not depend on file size. Lines are matched as UTF-8.
+ */
+public class LineSearcher {
+    static final int MAP_THRESHOLD = 256 * 1024;
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    /** Receives matching lines, without their terminator; returns false to stop the search. */
+    public interface Sink {
+        boolean accept(byte[] line) throws IOException;
+    }
+
+    private final Pattern pattern;
+    private final byte[] prefix;
+    private final boolean literal;
+
+    public LineSearcher(String regex) {
+        this.pattern = Pattern.compile(regex);
+        this.literal = !regex.isEmpty() && indexOfMetacharacter(regex) < 0;
+        this.prefix = literalPrefix(regex).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** The plain characters every match starts with, or "" if that cannot be told cheaply. */
+    static String literalPrefix(String regex) {
+        if (regex.indexOf('|') >= 0) return "";
+        int end = indexOfMetacharacter(regex);
+        if (end < 0) return regex;
+        char next = regex.charAt(end);
+        if (end > 0 && (next == '?' || next == '*' || next == '{')) {
+            // the quantifier makes the last plain character optional
+            end--;
+        }
+        return regex.substring(0, end);
+    }
+
+    private static int indexOfMetacharacter(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if (METACHARACTERS.indexOf(regex.charAt(i)) >= 0) return i;
+        }
+        return -1;
+    }
+
+    /** Searches a whole file; returns false if {@code sink} stopped the search. */
+    public boolean search(FileChannel channel, Sink sink) throws IOException {
+        long size = channel.size();
+        if (size < MAP_THRESHOLD) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+                // positional reads until the file is in memory
+            }
+            return scan(buffer, buffer.position(), sink);
+        }
+
+        long position = 0;
+        long window = WINDOW_SIZE;
+        while (position < size) {
+            long length = Math.min(window, size - position);
+            ByteBuffer mapped = FileRegions.map(channel, position, length);
+            int end = (int) length;
+            if (position + length < size) {
+                end = lastIndexOf(mapped, 0, end, (byte) '\n') + 1;
+                if (end == 0) {
+                    if (window == Integer.MAX_VALUE) {
+                        throw new IOException("Line longer than " + Integer.MAX_VALUE + " bytes");
+                    }
+                    // a single line fills the window: map a larger one and try again
+                    window = Math.min(Integer.MAX_VALUE, 2 * window);
+                    continue;
+                }
+            }
+            if (!scan(mapped, end, sink)) return false;
+            position += end;
+        }
+        return true;
+    }
+
+    /** Searches a stream until it ends; returns false if {@code sink} stopped the search. */
+    public boolean search(InputStream input, Sink sink) throws IOException {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int filled = 0;
+        int n;
+        while ((n = input.read(buffer, filled, buffer.length - filled)) != -1) {
+            filled += n;
+            ByteBuffer view = ByteBuffer.wrap(buffer);
+            int end = lastIndexOf(view, 0, filled, (byte) '\n') + 1;
+            if (end > 0) {
+                if (!scan(view, end, sink)) return false;
+                System.arraycopy(buffer, end, buffer, 0, filled - end);
+                filled -= end;
+            }
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            }
+        }
+        return filled == 0 || scan(ByteBuffer.wrap(buffer), filled, sink);
+    }
+
+    /** Hands every matching line in {@code buffer[0, end)} to {@code sink}. */
+    private boolean scan(ByteBuffer buffer, int end, Sink sink) throws IOException {
+        int lineStart = 0;
+        while (lineStart < end) {
+            int lineEnd;
+            if (prefix.length > 0) {
+                int hit = indexOf(buffer, lineStart, end, prefix);
+                if (hit < 0) return true;
+                lineStart = lastIndexOf(buffer, lineStart, hit, (byte) '\n') + 1;
+                lineEnd = indexOf(buffer, hit + prefix.length, end, (byte) '\n');
+            } else {
+                lineEnd = indexOf(buffer, lineStart, end, (byte) '\n');
+            }
+            if (lineEnd < 0) lineEnd = end;
+
+            byte[] line = new byte[lineEnd - lineStart];
+            buffer.get(lineStart, line);
+            if (literal || pattern.matcher(new String(line, StandardCharsets.UTF_8)).find()) {
+                if (!sink.accept(line)) return false;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, byte[] needle) {
+        byte first = needle[0];
+        int last = to - needle.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            if (buffer.get(i) != first) continue;
+            for (int j = 1; j < needle.length; j++) {
+                if (buffer.get(i + j) != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /** Last index of {@code value} in {@code [from, before)}, or {@code from - 1}. */
+    private static int lastIndexOf(ByteBuffer buffer, int from, int before, byte value) {
+        for (int i = before - 1; i >= from; i--) {
+            if (buffer.get(i) == value) return i;
+        }
+        return from - 1;
+    }
+}
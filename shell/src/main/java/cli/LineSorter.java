@@ -0,0 +1,200 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+
+/**
+ * Implements {@code sort}: orders lines by the whole line or a range of whitespace-separated
+ * fields, as text or as numbers, through an {@link ExternalSort}, so input far larger than the
+ * heap is sorted in runs of at most the memory budget.
+ *
+ * Lines whose keys compare equal are ordered by the whole line, as POSIX {@code sort} does,
+ * except with {@code -u}, where only the first line of each run of equal keys is printed. Keys
+ * are compared in place, without copying them out of the line.
+ */
+public class LineSorter implements Closeable {
+    /** A quarter of the heap, but never more than 256 MB, unless {@code -S} says otherwise. */
+    static final long DEFAULT_MEMORY_BUDGET = Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 4);
+
+    private boolean reverse;
+    private boolean numeric;
+    private boolean unique;
+    private int keyStart;
+    private int keyEnd;
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    private ExternalSort sort;
+
+    /** Applies one option letter; returns false if it is not a sort flag. */
+    public boolean option(char option) {
+        switch (option) {
+            case 'r':
+                reverse = true;
+                return true;
+            case 'n':
+                numeric = true;
+                return true;
+            case 'u':
+                unique = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Sets the key to fields {@code N[,M]}, counted from 1. */
+    public void key(String spec) {
+        try {
+            int comma = spec.indexOf(',');
+            keyStart = Integer.parseInt(comma < 0 ? spec : spec.substring(0, comma));
+            keyEnd = comma < 0 ? 0 : Integer.parseInt(spec.substring(comma + 1));
+        } catch (NumberFormatException e) {
+            keyStart = -1;
+        }
+        if (keyStart < 1 || keyEnd < 0 || keyEnd > 0 && keyEnd < keyStart) {
+            throw new IllegalArgumentException("Invalid key for sort -k: " + spec);
+        }
+    }
+
+    /** Sets the memory budget from a size such as {@code 65536}, {@code 512K}, {@code 64M} or {@code 1G}. */
+    public void memoryBudget(String size) {
+        long unit = 1;
+        String number = size;
+        if (!size.isEmpty()) {
+            int suffix = "KMG".indexOf(Character.toUpperCase(size.charAt(size.length() - 1)));
+            if (suffix >= 0) {
+                unit = 1L << (10 * (suffix + 1));
+                number = size.substring(0, size.length() - 1);
+            }
+        }
+        try {
+            memoryBudget = Long.parseLong(number) * unit;
+        } catch (NumberFormatException e) {
+            memoryBudget = -1;
+        }
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Invalid size for sort -S: " + size);
+        }
+    }
+
+    public void tempDirectory(Path directory) {
+        this.tempDirectory = directory;
+    }
+
+    public void addAll(BufferedReader lines) throws IOException {
+        if (sort == null) {
+            sort = new ExternalSort(order(), memoryBudget, tempDirectory);
+        }
+        String line;
+        while ((line = lines.readLine()) != null) {
+            sort.add(line);
+        }
+    }
+
+    /** Writes the sorted lines, stopping early if the output fails. */
+    public void write(PrintStream output) throws IOException {
+        if (sort == null) return;
+        Comparator<String> keys = keyOrder();
+        String[] previous = new String[1];
+        sort.drain(line -> {
+            if (unique && previous[0] != null && keys.compare(previous[0], line) == 0) return true;
+            previous[0] = line;
+            output.append(line).append(System.lineSeparator());
+            return !output.checkError();
+        });
+    }
+
+    private Comparator<String> order() {
+        Comparator<String> order = keyOrder();
+        if (!unique) {
+            order = order.thenComparing(Comparator.naturalOrder());
+        }
+        return reverse ? order.reversed() : order;
+    }
+
+    private Comparator<String> keyOrder() {
+        if (keyStart == 0 && !numeric) {
+            return Comparator.naturalOrder();
+        }
+        return (a, b) -> {
+            int aStart = keyStart == 0 ? 0 : fieldStart(a, keyStart);
+            int aEnd = keyEnd == 0 ? a.length() : fieldEnd(a, keyEnd);
+            int bStart = keyStart == 0 ? 0 : fieldStart(b, keyStart);
+            int bEnd = keyEnd == 0 ? b.length() : fieldEnd(b, keyEnd);
+            return numeric
+                    ? Double.compare(number(a, aStart, aEnd), number(b, bStart, bEnd))
+                    : compareRegions(a, aStart, Math.max(aStart, aEnd), b, bStart, Math.max(bStart, bEnd));
+        };
+    }
+
+    /** Index of the first character of field {@code field}; leading blanks belong to no field. */
+    static int fieldStart(String line, int field) {
+        int i = skipBlanks(line, 0);
+        for (int f = 1; f < field; f++) {
+            while (i < line.length() && !isBlank(line.charAt(i))) i++;
+            i = skipBlanks(line, i);
+        }
+        return i;
+    }
+
+    static int fieldEnd(String line, int field) {
+        int i = fieldStart(line, field);
+        while (i < line.length() && !isBlank(line.charAt(i))) i++;
+        return i;
+    }
+
+    private static int skipBlanks(String line, int i) {
+        while (i < line.length() && isBlank(line.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static int compareRegions(String a, int aStart, int aEnd, String b, int bStart, int bEnd) {
+        int length = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(aStart + i);
+            char y = b.charAt(bStart + i);
+            if (x != y) return x - y;
+        }
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+
+    /** The number at the start of {@code line[start, end)}, after blanks; 0 if there is none. */
+    static double number(String line, int start, int end) {
+        int i = start;
+        while (i < end && isBlank(line.charAt(i))) i++;
+        boolean negative = i < end && line.charAt(i) == '-';
+        if (negative) i++;
+        double value = 0;
+        while (i < end && isDigit(line.charAt(i))) {
+            value = value * 10 + (line.charAt(i++) - '0');
+        }
+        if (i < end && line.charAt(i) == '.') {
+            double scale = 0.1;
+            for (i++; i < end && isDigit(line.charAt(i)); i++) {
+                value += (line.charAt(i) - '0') * scale;
+                scale /= 10;
+            }
+        }
+        return negative && value != 0 ? -value : value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (sort != null) {
+            sort.close();
+        }
+    }
+}
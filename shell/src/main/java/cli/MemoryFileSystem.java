@@ -0,0 +1,599 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A file system held entirely in the heap, so the shell can be run and benchmarked without
+ * touching a disk, or serve a snapshot of a tree from RAM.
+ *
+ * The tree is a trie of nodes, one per name: a directory keeps its entries in a sorted
+ * concurrent map, so lookups and listings never lock, and a file keeps its bytes in
+ * {@link #BLOCK_SIZE} blocks, so growing a large file never copies what it already holds.
+ * Creating, deleting and moving entries is serialized on the tree; reads and writes of file
+ * contents only lock the file itself. Only the {@code basic} attribute view is supported, and
+ * there are no links and no watch service. Create one with {@link #newFileSystem()}.
+ */
+public final class MemoryFileSystem extends FileSystem {
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final AtomicLong FILE_IDS = new AtomicLong();
+
+    private final MemoryFileSystemProvider provider;
+    private final String name;
+    private final MemoryPath root;
+    private final Directory rootDirectory = new Directory();
+    private final Store store = new Store();
+    /** Guards every change to the shape of the tree. */
+    private final Object tree = new Object();
+    private volatile boolean open = true;
+
+    MemoryFileSystem(MemoryFileSystemProvider provider, String name) {
+        this.provider = provider;
+        this.name = name;
+        this.root = new MemoryPath(this, "/");
+    }
+
+    /** A new, empty file system holding nothing but its root directory. */
+    public static MemoryFileSystem newFileSystem() {
+        return MemoryFileSystemProvider.INSTANCE.newFileSystem();
+    }
+
+    /** A new file system holding a copy of the tree at {@code source}, under the same absolute path. */
+    public static MemoryFileSystem snapshot(Path source) throws IOException, InterruptedException {
+        MemoryFileSystem fileSystem = newFileSystem();
+        Path target = fileSystem.getPath(source.toAbsolutePath().normalize().toString());
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        List<String> errors = FileTreeWalker.copy(source, target, null).getErrors();
+        if (!errors.isEmpty()) {
+            fileSystem.close();
+            throw new IOException(errors.get(0));
+        }
+        return fileSystem;
+    }
+
+    String name() {
+        return name;
+    }
+
+    MemoryPath root() {
+        return root;
+    }
+
+    @Override
+    public MemoryFileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        provider.remove(this);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return List.of(root);
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return List.of(store);
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Set.of("basic");
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        if (more.length == 0) {
+            return new MemoryPath(this, first);
+        }
+        StringBuilder path = new StringBuilder(first);
+        for (String name : more) {
+            if (!name.isEmpty()) path.append('/').append(name);
+        }
+        return new MemoryPath(this, path.toString());
+    }
+
+    /** Supports {@code glob:} with {@code *}, {@code **}, {@code ?}, {@code [...]} and {@code {a,b}}, and {@code regex:}. */
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("Expected syntax:pattern, got " + syntaxAndPattern);
+        String syntax = syntaxAndPattern.substring(0, colon);
+        String pattern = syntaxAndPattern.substring(colon + 1);
+        Pattern regex;
+        if (syntax.equalsIgnoreCase("glob")) {
+            regex = Pattern.compile(globToRegex(pattern));
+        } else if (syntax.equalsIgnoreCase("regex")) {
+            regex = Pattern.compile(pattern);
+        } else {
+            throw new UnsupportedOperationException("Syntax '" + syntax + "' not recognized");
+        }
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    /** Translates a glob as {@link FileSystem#getPathMatcher} defines it into a regex. */
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder("^");
+        boolean inGroup = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (++i == glob.length()) {
+                        throw new PatternSyntaxException("No character to escape", glob, i - 1);
+                    }
+                    regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+                    break;
+                case '*':
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '[': {
+                    int end = glob.indexOf(']', i + 2);
+                    if (end < 0) throw new PatternSyntaxException("Missing ']'", glob, i);
+                    String set = glob.substring(i + 1, end);
+                    boolean negated = set.startsWith("!");
+                    regex.append(negated ? "[^/" : "[");
+                    for (char member : (negated ? set.substring(1) : set).toCharArray()) {
+                        regex.append(escapeInSet(member));
+                    }
+                    regex.append(']');
+                    i = end;
+                    break;
+                }
+                case '{':
+                    if (inGroup) throw new PatternSyntaxException("Cannot nest groups", glob, i);
+                    regex.append("(?:");
+                    inGroup = true;
+                    break;
+                case '}':
+                    regex.append(inGroup ? ")" : "\\}");
+                    inGroup = false;
+                    break;
+                case ',':
+                    regex.append(inGroup ? "|" : ",");
+                    break;
+                default:
+                    regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        if (inGroup) throw new PatternSyntaxException("Missing '}'", glob, glob.length() - 1);
+        return regex.append('$').toString();
+    }
+
+    /** A bracket expression member as a regex one; a backslash before a non-letter is always literal. */
+    private static String escapeInSet(char c) {
+        return c == '-' || Character.isLetterOrDigit(c) ? String.valueOf(c) : "\\" + c;
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("Memory file systems have no users");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Memory file systems have no watch service");
+    }
+
+    FileStore store() {
+        return store;
+    }
+
+    // ---- the tree ----
+
+    private void checkOpen() {
+        if (!open) throw new ClosedFileSystemException();
+    }
+
+    /** The node at {@code path}; throws NoSuchFileException if there is none. */
+    Node lookup(Path path) throws IOException {
+        checkOpen();
+        Node node = rootDirectory;
+        for (String name : ((MemoryPath) path.toAbsolutePath().normalize()).names()) {
+            if (!(node instanceof Directory)) throw new NoSuchFileException(path.toString());
+            node = ((Directory) node).entries.get(name);
+            if (node == null) throw new NoSuchFileException(path.toString());
+        }
+        return node;
+    }
+
+    /** The node at {@code path}, or null if there is none. */
+    Node find(Path path) {
+        try {
+            return lookup(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    Directory directory(Path path) throws IOException {
+        Node node = lookup(path);
+        if (!(node instanceof Directory)) throw new NotDirectoryException(path.toString());
+        return (Directory) node;
+    }
+
+    /**
+     * The regular file at {@code path}: created if missing and {@code create} is set, required to
+     * be missing if {@code createNew} is set.
+     */
+    RegularFile file(Path path, boolean create, boolean createNew) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        Node node = find(absolute);
+        if (node != null && createNew) throw new FileAlreadyExistsException(path.toString());
+        if (node == null) {
+            if (!create && !createNew) throw new NoSuchFileException(path.toString());
+            Path parentPath = absolute.getParent();
+            if (parentPath == null) throw new FileSystemException(path.toString(), null, "Is a directory");
+            synchronized (tree) {
+                Directory parent = directory(parentPath);
+                String name = absolute.getFileName().toString();
+                node = parent.entries.get(name);
+                if (node != null && createNew) throw new FileAlreadyExistsException(path.toString());
+                if (node == null) {
+                    node = new RegularFile();
+                    parent.entries.put(name, node);
+                    parent.touch();
+                }
+            }
+        }
+        if (!(node instanceof RegularFile)) throw new FileSystemException(path.toString(), null, "Is a directory");
+        return (RegularFile) node;
+    }
+
+    void createDirectory(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        if (absolute.getParent() == null) throw new FileAlreadyExistsException(path.toString());
+        synchronized (tree) {
+            Directory parent = directory(absolute.getParent());
+            String name = absolute.getFileName().toString();
+            if (parent.entries.containsKey(name)) throw new FileAlreadyExistsException(path.toString());
+            parent.entries.put(name, new Directory());
+            parent.touch();
+        }
+    }
+
+    void delete(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        if (absolute.getParent() == null) throw new FileSystemException(path.toString(), null, "Cannot delete the root");
+        synchronized (tree) {
+            Directory parent = directory(absolute.getParent());
+            String name = absolute.getFileName().toString();
+            Node node = parent.entries.get(name);
+            if (node == null) throw new NoSuchFileException(path.toString());
+            if (node instanceof Directory && !((Directory) node).entries.isEmpty()) {
+                throw new DirectoryNotEmptyException(path.toString());
+            }
+            parent.entries.remove(name);
+            parent.touch();
+        }
+    }
+
+    /**
+     * Moves or copies {@code source} to {@code target}. A copied directory is created empty, as
+     * {@link java.nio.file.Files#copy} specifies.
+     */
+    void transfer(Path source, Path target, boolean copy, boolean replace, boolean copyAttributes) throws IOException {
+        Path from = source.toAbsolutePath().normalize();
+        Path to = target.toAbsolutePath().normalize();
+        if (from.equals(to)) {
+            lookup(from);
+            return;
+        }
+        if (from.getParent() == null || to.getParent() == null) {
+            throw new FileSystemException(source.toString(), target.toString(), "Cannot move or copy the root");
+        }
+        if (!copy && to.startsWith(from)) {
+            throw new FileSystemException(source.toString(), target.toString(), "Cannot move a directory into itself");
+        }
+        synchronized (tree) {
+            Directory sourceParent = directory(from.getParent());
+            Directory targetParent = directory(to.getParent());
+            String sourceName = from.getFileName().toString();
+            String targetName = to.getFileName().toString();
+            Node node = sourceParent.entries.get(sourceName);
+            if (node == null) throw new NoSuchFileException(source.toString());
+            Node existing = targetParent.entries.get(targetName);
+            if (existing != null) {
+                if (!replace) throw new FileAlreadyExistsException(target.toString());
+                if (existing instanceof Directory && !((Directory) existing).entries.isEmpty()) {
+                    throw new DirectoryNotEmptyException(target.toString());
+                }
+            }
+            Node moved = copy ? node.copy(copyAttributes) : node;
+            if (!copy) {
+                sourceParent.entries.remove(sourceName);
+                sourceParent.touch();
+            }
+            targetParent.entries.put(targetName, moved);
+            targetParent.touch();
+        }
+    }
+
+    /** A file or directory; attributes are read without locking, as plain volatile snapshots. */
+    abstract static class Node {
+        final long id = FILE_IDS.incrementAndGet();
+        volatile FileTime created = FileTime.fromMillis(System.currentTimeMillis());
+        volatile FileTime lastModified = created;
+        volatile FileTime lastAccess = created;
+
+        void touch() {
+            lastModified = FileTime.fromMillis(System.currentTimeMillis());
+        }
+
+        abstract long size();
+
+        abstract Node copy(boolean copyAttributes);
+
+        <N extends Node> N copyTimes(N copy, boolean copyAttributes) {
+            if (copyAttributes) {
+                copy.created = created;
+                copy.lastModified = lastModified;
+                copy.lastAccess = lastAccess;
+            }
+            return copy;
+        }
+
+        BasicFileAttributes attributes() {
+            return new Attributes(this);
+        }
+    }
+
+    static final class Directory extends Node {
+        final ConcurrentSkipListMap<String, Node> entries = new ConcurrentSkipListMap<>();
+
+        @Override
+        long size() {
+            return 0;
+        }
+
+        @Override
+        Node copy(boolean copyAttributes) {
+            return copyTimes(new Directory(), copyAttributes);
+        }
+    }
+
+    /** File contents in fixed-size blocks; every block but the last is full. */
+    static final class RegularFile extends Node {
+        private byte[][] blocks = new byte[0][];
+        private long size;
+
+        @Override
+        synchronized long size() {
+            return size;
+        }
+
+        /** Reads from {@code position} into {@code target}; -1 at or past the end. */
+        synchronized int read(long position, ByteBuffer target) {
+            if (position >= size) return -1;
+            int total = (int) Math.min(target.remaining(), size - position);
+            for (int done = 0; done < total; ) {
+                long at = position + done;
+                int offset = (int) (at % BLOCK_SIZE);
+                int length = Math.min(total - done, BLOCK_SIZE - offset);
+                target.put(blocks[(int) (at / BLOCK_SIZE)], offset, length);
+                done += length;
+            }
+            return total;
+        }
+
+        /** Writes {@code source} at {@code position}, or at the end if {@code position} is negative. */
+        synchronized int write(long position, ByteBuffer source) {
+            if (position < 0) position = size;
+            int total = source.remaining();
+            long end = position + total;
+            int needed = (int) ((end + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            if (needed > blocks.length) {
+                int from = blocks.length;
+                blocks = Arrays.copyOf(blocks, Math.max(needed, from + (from >> 1)));
+                for (int i = from; i < blocks.length; i++) {
+                    blocks[i] = null;
+                }
+            }
+            for (int i = (int) (size / BLOCK_SIZE); i < needed; i++) {
+                if (blocks[i] == null) blocks[i] = new byte[BLOCK_SIZE];
+            }
+            for (int done = 0; done < total; ) {
+                long at = position + done;
+                int offset = (int) (at % BLOCK_SIZE);
+                int length = Math.min(total - done, BLOCK_SIZE - offset);
+                source.get(blocks[(int) (at / BLOCK_SIZE)], offset, length);
+                done += length;
+            }
+            size = Math.max(size, end);
+            touch();
+            return total;
+        }
+
+        synchronized void truncate(long newSize) {
+            if (newSize >= size) return;
+            int kept = (int) ((newSize + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            Arrays.fill(blocks, kept, blocks.length, null);
+            if (newSize % BLOCK_SIZE != 0) {
+                // zero the tail of the last block, so growing the file again reads zeros there
+                Arrays.fill(blocks[kept - 1], (int) (newSize % BLOCK_SIZE), BLOCK_SIZE, (byte) 0);
+            }
+            size = newSize;
+            touch();
+        }
+
+        @Override
+        synchronized Node copy(boolean copyAttributes) {
+            RegularFile copy = new RegularFile();
+            copy.blocks = new byte[blocks.length][];
+            for (int i = 0; i < blocks.length && blocks[i] != null; i++) {
+                copy.blocks[i] = blocks[i].clone();
+            }
+            copy.size = size;
+            return copyTimes(copy, copyAttributes);
+        }
+    }
+
+    private static final class Attributes implements BasicFileAttributes {
+        private final Node node;
+        private final long size;
+        private final FileTime lastModified;
+        private final FileTime lastAccess;
+        private final FileTime created;
+
+        Attributes(Node node) {
+            this.node = node;
+            this.size = node.size();
+            this.lastModified = node.lastModified;
+            this.lastAccess = node.lastAccess;
+            this.created = node.created;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return lastModified;
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return lastAccess;
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return created;
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return node instanceof RegularFile;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return node instanceof Directory;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return false;
+        }
+
+        @Override
+        public boolean isOther() {
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public Object fileKey() {
+            return node.id;
+        }
+    }
+
+    /** The one store of a memory file system, as large as the heap. */
+    private final class Store extends FileStore {
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String type() {
+            return MemoryFileSystemProvider.SCHEME;
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return false;
+        }
+
+        @Override
+        public long getTotalSpace() {
+            return Runtime.getRuntime().maxMemory();
+        }
+
+        @Override
+        public long getUsableSpace() {
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+        }
+
+        @Override
+        public long getUnallocatedSpace() {
+            return getUsableSpace();
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+            return type == BasicFileAttributeView.class;
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(String name) {
+            return name.equals("basic");
+        }
+
+        @Override
+        public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+            return null;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) {
+            throw new UnsupportedOperationException("'" + attribute + "' not recognized");
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package cli;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provider of {@link MemoryFileSystem}s, addressed by {@code memory://<name>/<path>} URIs.
+ *
+ * Files are opened as {@link FileChannel}s, so everything the shell does with a channel works
+ * here too except {@link FileChannel#map}, which needs a real file, and {@link FileChannel#lock}.
+ */
+public final class MemoryFileSystemProvider extends FileSystemProvider {
+    static final String SCHEME = "memory";
+    static final MemoryFileSystemProvider INSTANCE = new MemoryFileSystemProvider();
+
+    private final Map<String, MemoryFileSystem> fileSystems = new ConcurrentHashMap<>();
+    private final AtomicInteger unnamed = new AtomicInteger();
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    MemoryFileSystem newFileSystem() {
+        while (true) {
+            String name = "fs" + unnamed.incrementAndGet();
+            MemoryFileSystem fileSystem = new MemoryFileSystem(this, name);
+            if (fileSystems.putIfAbsent(name, fileSystem) == null) return fileSystem;
+        }
+    }
+
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        String name = name(uri);
+        MemoryFileSystem fileSystem = new MemoryFileSystem(this, name);
+        if (fileSystems.putIfAbsent(name, fileSystem) != null) throw new FileSystemAlreadyExistsException(name);
+        return fileSystem;
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        MemoryFileSystem fileSystem = fileSystems.get(name(uri));
+        if (fileSystem == null) throw new FileSystemNotFoundException(uri.toString());
+        return fileSystem;
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        return getFileSystem(uri).getPath(uri.getPath().isEmpty() ? "/" : uri.getPath());
+    }
+
+    private static String name(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme()) || uri.getAuthority() == null) {
+            throw new IllegalArgumentException("Expected memory://<name>/, got " + uri);
+        }
+        return uri.getAuthority();
+    }
+
+    void remove(MemoryFileSystem fileSystem) {
+        fileSystems.remove(fileSystem.name(), fileSystem);
+    }
+
+    private static MemoryFileSystem fileSystem(Path path) {
+        if (!(path instanceof MemoryPath)) throw new ProviderMismatchException(String.valueOf(path));
+        return ((MemoryPath) path).getFileSystem();
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
+            throws IOException {
+        return newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
+            throws IOException {
+        boolean append = options.contains(StandardOpenOption.APPEND);
+        boolean write = append || options.contains(StandardOpenOption.WRITE);
+        boolean read = options.contains(StandardOpenOption.READ) || !write;
+        if (append && (read || options.contains(StandardOpenOption.TRUNCATE_EXISTING))) {
+            throw new IllegalArgumentException("APPEND cannot be combined with READ or TRUNCATE_EXISTING");
+        }
+        MemoryFileSystem.RegularFile file = fileSystem(path).file(path,
+                write && options.contains(StandardOpenOption.CREATE),
+                write && options.contains(StandardOpenOption.CREATE_NEW));
+        if (write && options.contains(StandardOpenOption.TRUNCATE_EXISTING)) {
+            file.truncate(0);
+        }
+        return new Channel(file, read, write, append);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter)
+            throws IOException {
+        MemoryFileSystem.Directory directory = fileSystem(dir).directory(dir);
+        return new DirectoryStream<Path>() {
+            private boolean iterated;
+            private volatile boolean closed;
+
+            @Override
+            public Iterator<Path> iterator() {
+                if (iterated || closed) throw new IllegalStateException("Directory stream already iterated or closed");
+                iterated = true;
+                // the entries are iterated live: weakly consistent, like a real directory read
+                Iterator<String> names = directory.entries.keySet().iterator();
+                return new Iterator<Path>() {
+                    private Path next;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (next == null && !closed && names.hasNext()) {
+                            Path entry = dir.resolve(names.next());
+                            try {
+                                if (filter == null || filter.accept(entry)) next = entry;
+                            } catch (IOException e) {
+                                throw new DirectoryIteratorException(e);
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public Path next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Path entry = next;
+                        next = null;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        fileSystem(dir).createDirectory(dir);
+    }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        fileSystem(path).delete(path);
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) throws IOException {
+        List<CopyOption> list = Arrays.asList(options);
+        fileSystem(source).transfer(source, target, true, list.contains(StandardCopyOption.REPLACE_EXISTING),
+                list.contains(StandardCopyOption.COPY_ATTRIBUTES));
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) throws IOException {
+        fileSystem(source).transfer(source, target, false,
+                Arrays.asList(options).contains(StandardCopyOption.REPLACE_EXISTING), true);
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        if (path.equals(path2)) return true;
+        if (!(path2 instanceof MemoryPath) || fileSystem(path) != fileSystem(path2)) return false;
+        return fileSystem(path).lookup(path) == fileSystem(path2).lookup(path2);
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) throws IOException {
+        fileSystem(path).lookup(path);
+        return fileSystem(path).store();
+    }
+
+    /** Every file is readable, writable and executable by everyone: there only needs to be one. */
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        fileSystem(path).lookup(path);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        if (type != BasicFileAttributeView.class) return null;
+        return (V) new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return fileSystem(path).lookup(path).attributes();
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime)
+                    throws IOException {
+                MemoryFileSystem.Node node = fileSystem(path).lookup(path);
+                if (lastModifiedTime != null) node.lastModified = lastModifiedTime;
+                if (lastAccessTime != null) node.lastAccess = lastAccessTime;
+                if (createTime != null) node.created = createTime;
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options)
+            throws IOException {
+        if (type != BasicFileAttributes.class) {
+            throw new UnsupportedOperationException(type.getSimpleName() + " not supported");
+        }
+        return (A) fileSystem(path).lookup(path).attributes();
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        int colon = attributes.indexOf(':');
+        if (colon >= 0 && !attributes.startsWith("basic:")) {
+            throw new UnsupportedOperationException("View '" + attributes.substring(0, colon) + "' not supported");
+        }
+        BasicFileAttributes basic = readAttributes(path, BasicFileAttributes.class, options);
+        Map<String, Object> all = new HashMap<>();
+        all.put("lastModifiedTime", basic.lastModifiedTime());
+        all.put("lastAccessTime", basic.lastAccessTime());
+        all.put("creationTime", basic.creationTime());
+        all.put("size", basic.size());
+        all.put("isRegularFile", basic.isRegularFile());
+        all.put("isDirectory", basic.isDirectory());
+        all.put("isSymbolicLink", basic.isSymbolicLink());
+        all.put("isOther", basic.isOther());
+        all.put("fileKey", basic.fileKey());
+        Map<String, Object> selected = new HashMap<>();
+        for (String name : attributes.substring(colon + 1).split(",")) {
+            if (name.equals("*")) {
+                selected.putAll(all);
+            } else if (all.containsKey(name)) {
+                selected.put(name, all.get(name));
+            } else {
+                throw new IllegalArgumentException("'" + name + "' not recognized");
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
+        String name = attribute.startsWith("basic:") ? attribute.substring("basic:".length()) : attribute;
+        BasicFileAttributeView view = getFileAttributeView(path, BasicFileAttributeView.class, options);
+        switch (name) {
+            case "lastModifiedTime":
+                view.setTimes((FileTime) value, null, null);
+                break;
+            case "lastAccessTime":
+                view.setTimes(null, (FileTime) value, null);
+                break;
+            case "creationTime":
+                view.setTimes(null, null, (FileTime) value);
+                break;
+            default:
+                throw new UnsupportedOperationException("'" + attribute + "' cannot be set");
+        }
+    }
+
+    /** An open file; its position is its own, the contents are shared with every other channel. */
+    private static final class Channel extends FileChannel {
+        private final MemoryFileSystem.RegularFile file;
+        private final boolean readable;
+        private final boolean writable;
+        private final boolean append;
+        private long position;
+
+        Channel(MemoryFileSystem.RegularFile file, boolean readable, boolean writable, boolean append) {
+            this.file = file;
+            this.readable = readable;
+            this.writable = writable;
+            this.append = append;
+        }
+
+        private void checkReadable() throws IOException {
+            ensureOpen();
+            if (!readable) throw new NonReadableChannelException();
+        }
+
+        private void checkWritable() throws IOException {
+            ensureOpen();
+            if (!writable) throw new NonWritableChannelException();
+        }
+
+        private void ensureOpen() throws IOException {
+            if (!isOpen()) throw new ClosedChannelException();
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            checkReadable();
+            int n = dst.hasRemaining() ? file.read(position, dst) : 0;
+            if (n > 0) position += n;
+            return n;
+        }
+
+        @Override
+        public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                if (!dsts[i].hasRemaining()) continue;
+                int n = read(dsts[i]);
+                if (n < 0) return total == 0 ? -1 : total;
+                total += n;
+                if (dsts[i].hasRemaining()) break;
+            }
+            return total;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException {
+            checkWritable();
+            if (append) {
+                position = file.size();
+            }
+            int n = file.write(position, src);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public synchronized long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                total += write(srcs[i]);
+            }
+            return total;
+        }
+
+        @Override
+        public synchronized long position() throws IOException {
+            ensureOpen();
+            return append ? file.size() : position;
+        }
+
+        @Override
+        public synchronized FileChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) throw new IllegalArgumentException("Negative position");
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return file.size();
+        }
+
+        @Override
+        public synchronized FileChannel truncate(long size) throws IOException {
+            checkWritable();
+            if (size < 0) throw new IllegalArgumentException("Negative size");
+            file.truncate(size);
+            position = Math.min(position, size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            ensureOpen();
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            checkReadable();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, MemoryFileSystem.BLOCK_SIZE));
+            long done = 0;
+            while (done < count) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), count - done));
+                int n = file.read(position + done, buffer);
+                if (n <= 0) break;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                done += n;
+            }
+            return done;
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            checkWritable();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, MemoryFileSystem.BLOCK_SIZE));
+            long done = 0;
+            while (done < count) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), count - done));
+                int n = src.read(buffer);
+                if (n <= 0) break;
+                buffer.flip();
+                file.write(position + done, buffer);
+                done += n;
+            }
+            return done;
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            checkReadable();
+            if (position < 0) throw new IllegalArgumentException("Negative position");
+            return dst.hasRemaining() ? file.read(position, dst) : 0;
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            checkWritable();
+            if (position < 0) throw new IllegalArgumentException("Negative position");
+            return file.write(position, src);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) {
+            throw new UnsupportedOperationException("Memory files cannot be mapped");
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException("Memory files cannot be locked");
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException("Memory files cannot be locked");
+        }
+
+        @Override
+        protected void implCloseChannel() {
+            // nothing is held: the contents belong to the file
+        }
+    }
+}
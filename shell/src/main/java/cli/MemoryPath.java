@@ -0,0 +1,223 @@
+package cli;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A path in a {@link MemoryFileSystem}: {@code /}-separated names, absolute if it starts with
+ * {@code /}. Relative paths are resolved against the root, the file system having no working
+ * directory of its own.
+ */
+final class MemoryPath implements Path {
+    private static final String[] NO_NAMES = new String[0];
+
+    private final MemoryFileSystem fileSystem;
+    private final boolean absolute;
+    private final String[] names;
+    private String text;
+
+    MemoryPath(MemoryFileSystem fileSystem, String path) {
+        this(fileSystem, path.startsWith("/"), split(path));
+    }
+
+    private MemoryPath(MemoryFileSystem fileSystem, boolean absolute, String[] names) {
+        this.fileSystem = fileSystem;
+        this.absolute = absolute;
+        this.names = names;
+    }
+
+    private static String[] split(String path) {
+        if (path.indexOf('\0') >= 0) {
+            throw new InvalidPathException(path, "Nul character not allowed");
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : path.split("/")) {
+            if (!name.isEmpty()) names.add(name);
+        }
+        return names.isEmpty() ? NO_NAMES : names.toArray(NO_NAMES);
+    }
+
+    /** The names of this path, for the file system to walk; not to be modified. */
+    String[] names() {
+        return names;
+    }
+
+    @Override
+    public MemoryFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    @Override
+    public Path getRoot() {
+        return absolute ? fileSystem.root() : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        if (names.length == 0) return absolute ? null : this;
+        return names.length == 1 && !absolute ? this : new MemoryPath(fileSystem, false, new String[] {names[names.length - 1]});
+    }
+
+    @Override
+    public Path getParent() {
+        if (names.length == 0 || names.length == 1 && !absolute) return null;
+        return new MemoryPath(fileSystem, absolute, Arrays.copyOf(names, names.length - 1));
+    }
+
+    @Override
+    public int getNameCount() {
+        return names.length;
+    }
+
+    @Override
+    public Path getName(int index) {
+        return subpath(index, index + 1);
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException("Invalid subpath [" + beginIndex + ", " + endIndex + ")");
+        }
+        return new MemoryPath(fileSystem, false, Arrays.copyOfRange(names, beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        MemoryPath path = cast(other);
+        if (path.absolute != absolute || path.names.length > names.length) return false;
+        for (int i = 0; i < path.names.length; i++) {
+            if (!names[i].equals(path.names[i])) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        MemoryPath path = cast(other);
+        if (path.absolute) return equals(path);
+        int offset = names.length - path.names.length;
+        if (offset < 0) return false;
+        for (int i = 0; i < path.names.length; i++) {
+            if (!names[offset + i].equals(path.names[i])) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Path normalize() {
+        List<String> normal = new ArrayList<>(names.length);
+        for (String name : names) {
+            if (name.equals(".")) continue;
+            if (name.equals("..")) {
+                if (!normal.isEmpty() && !normal.get(normal.size() - 1).equals("..")) {
+                    normal.remove(normal.size() - 1);
+                    continue;
+                }
+                if (absolute) continue; // ".." of the root is the root
+            }
+            normal.add(name);
+        }
+        return normal.size() == names.length ? this : new MemoryPath(fileSystem, absolute, normal.toArray(NO_NAMES));
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        MemoryPath path = cast(other);
+        if (path.absolute || names.length == 0 && !absolute) return path;
+        if (path.names.length == 0) return this;
+        String[] joined = Arrays.copyOf(names, names.length + path.names.length);
+        System.arraycopy(path.names, 0, joined, names.length, path.names.length);
+        return new MemoryPath(fileSystem, absolute, joined);
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        MemoryPath path = cast(other);
+        if (path.absolute != absolute) {
+            throw new IllegalArgumentException("'" + other + "' is not a path of the same kind as '" + this + "'");
+        }
+        int common = 0;
+        while (common < names.length && common < path.names.length && names[common].equals(path.names[common])) {
+            common++;
+        }
+        List<String> relative = new ArrayList<>();
+        for (int i = common; i < names.length; i++) relative.add("..");
+        relative.addAll(Arrays.asList(path.names).subList(common, path.names.length));
+        return new MemoryPath(fileSystem, false, relative.toArray(NO_NAMES));
+    }
+
+    @Override
+    public URI toUri() {
+        try {
+            return new URI(MemoryFileSystemProvider.SCHEME, fileSystem.name(), toAbsolutePath().toString(), null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        return absolute ? this : fileSystem.root().resolve(this);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        Path real = toAbsolutePath().normalize();
+        fileSystem.provider().checkAccess(real);
+        return real;
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new ProviderMismatchException("Memory file systems have no watch service");
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return toString().compareTo(cast(other).toString());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MemoryPath && ((MemoryPath) other).fileSystem == fileSystem
+                && other.toString().equals(toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        String result = text;
+        if (result == null) {
+            result = text = (absolute ? "/" : "") + String.join("/", names);
+        }
+        return result;
+    }
+
+    private MemoryPath cast(Path other) {
+        if (!(other instanceof MemoryPath) || ((MemoryPath) other).fileSystem != fileSystem) {
+            throw new ProviderMismatchException(String.valueOf(other));
+        }
+        return (MemoryPath) other;
+    }
+}
@@ -0,0 +1,172 @@
+package cli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The names in one directory as a radix trie: each edge carries a run of characters and each
+ * node keeps its children sorted by first character, so the names starting with a prefix sit
+ * under a single node found in O(prefix length), however many names the directory has.
+ * Not thread-safe.
+ */
+final class NameTrie {
+    private final Node root = new Node("", false);
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void add(String name) {
+        Node node = root;
+        int i = 0;
+        while (i < name.length()) {
+            int index = node.indexOf(name.charAt(i));
+            if (index < 0) {
+                node.insert(-index - 1, new Node(name.substring(i), true));
+                size++;
+                return;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, name, i);
+            if (common < child.label.length()) {
+                Node split = new Node(child.label.substring(0, common), false);
+                child.label = child.label.substring(common);
+                split.insert(0, child);
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            i += common;
+        }
+        if (!node.terminal) size++;
+        node.terminal = true;
+    }
+
+    void remove(String name) {
+        Node parent = null;
+        Node node = root;
+        int i = 0;
+        while (i < name.length()) {
+            int index = node.indexOf(name.charAt(i));
+            if (index < 0) return;
+            Node child = node.children[index];
+            if (!name.startsWith(child.label, i)) return;
+            parent = node;
+            node = child;
+            i += child.label.length();
+        }
+        if (!node.terminal || parent == null) return;
+        node.terminal = false;
+        size--;
+        if (node.count == 0) {
+            parent.delete(parent.indexOf(node.label.charAt(0)));
+            if (parent != root && !parent.terminal && parent.count == 1) {
+                parent.absorbOnlyChild();
+            }
+        } else if (node.count == 1) {
+            node.absorbOnlyChild();
+        }
+    }
+
+    /**
+     * Returns what every name starting with {@code prefix} continues with, and up to
+     * {@code limit} of those names in order.
+     */
+    Completion match(String prefix, int limit) {
+        Node node = root;
+        int i = 0;
+        int offset = 0;
+        while (i < prefix.length()) {
+            int index = node.indexOf(prefix.charAt(i));
+            if (index < 0) return Completion.NONE;
+            node = node.children[index];
+            int common = commonPrefix(node.label, prefix, i);
+            i += common;
+            offset = common;
+            if (common < node.label.length() && i < prefix.length()) return Completion.NONE;
+        }
+
+        StringBuilder extension = new StringBuilder(node.label.length() - offset).append(node.label, offset, node.label.length());
+        Node end = node;
+        while (!end.terminal && end.count == 1) {
+            end = end.children[0];
+            extension.append(end.label);
+        }
+        List<String> names = new ArrayList<>(Math.min(limit, 16));
+        StringBuilder name = new StringBuilder(prefix).append(node.label, offset, node.label.length());
+        collect(node, name, names, limit);
+        return new Completion(extension.toString(), names, end.terminal && end.count == 0);
+    }
+
+    private static void collect(Node node, StringBuilder name, List<String> names, int limit) {
+        if (node.terminal && names.size() < limit) {
+            names.add(name.toString());
+        }
+        for (int i = 0; i < node.count && names.size() < limit; i++) {
+            Node child = node.children[i];
+            int length = name.length();
+            collect(child, name.append(child.label), names, limit);
+            name.setLength(length);
+        }
+    }
+
+    private static int commonPrefix(String label, String name, int from) {
+        int max = Math.min(label.length(), name.length() - from);
+        int i = 0;
+        while (i < max && label.charAt(i) == name.charAt(from + i)) i++;
+        return i;
+    }
+
+    private static final class Node {
+        private static final Node[] LEAF = new Node[0];
+
+        String label;
+        boolean terminal;
+        Node[] children = LEAF;
+        int count;
+
+        Node(String label, boolean terminal) {
+            this.label = label;
+            this.terminal = terminal;
+        }
+
+        /** Index of the child whose label starts with {@code c}, or {@code -(insertion point) - 1}. */
+        int indexOf(char c) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char first = children[middle].label.charAt(0);
+                if (first < c) low = middle + 1;
+                else if (first > c) high = middle - 1;
+                else return middle;
+            }
+            return -low - 1;
+        }
+
+        void insert(int index, Node child) {
+            if (count == children.length) {
+                children = Arrays.copyOf(children, Math.max(2, count * 2));
+            }
+            System.arraycopy(children, index, children, index + 1, count - index);
+            children[index] = child;
+            count++;
+        }
+
+        void delete(int index) {
+            System.arraycopy(children, index + 1, children, index, count - index - 1);
+            children[--count] = null;
+        }
+
+        /** Merges a node that no longer ends a name into its single child. */
+        void absorbOnlyChild() {
+            Node child = children[0];
+            label = label + child.label;
+            terminal = child.terminal;
+            children = child.children;
+            count = child.count;
+        }
+    }
+}
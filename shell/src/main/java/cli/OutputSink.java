@@ -0,0 +1,87 @@
+package cli;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A byte sink for the shell's standard output: writes are copied into one large direct buffer
+ * that reaches the channel in bulk, when it fills or on {@link #flush}. The shell flushes before
+ * showing a prompt, and commands that wait for more to print ({@code tail -f}, the pager) flush
+ * before waiting, so a terminal sees whole screens at a time rather than a write per line.
+ * Writes larger than the buffer go to the channel directly. Thread-safe.
+ */
+public final class OutputSink extends OutputStream {
+    public static final int DEFAULT_CAPACITY = 256 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final boolean terminal;
+
+    /** A sink on {@code channel}; {@code terminal} says whether a person is reading it. */
+    public OutputSink(WritableByteChannel channel, int capacity, boolean terminal) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+        this.terminal = terminal;
+    }
+
+    /** A sink on file descriptor 1, taken to be a terminal if the session is {@link Terminal#interactive}. */
+    public static OutputSink stdout() {
+        return new OutputSink(new FileOutputStream(FileDescriptor.out).getChannel(), DEFAULT_CAPACITY,
+                Terminal.interactive());
+    }
+
+    public boolean isTerminal() {
+        return terminal;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.remaining()) {
+            drain();
+            if (length >= buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes, offset, length));
+                return;
+            }
+        }
+        buffer.put(bytes, offset, length);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        drain();
+    }
+
+    /** Flushes; the channel is left open, as it is usually file descriptor 1. */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void drain() throws IOException {
+        if (buffer.position() == 0) return;
+        buffer.flip();
+        try {
+            writeFully(buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cli;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * The {@code less} stage: shows its input a screen at a time, waiting for a key between
+ * screens. Space shows the next screen, Enter the next line, and {@code q} stops reading; in a
+ * pipe, its input is then closed, so the stages before it fail with "Broken pipe" on their next
+ * write rather than producing everything.
+ * Keys are read from {@code /dev/tty}, since the stage's own input is what it is paging.
+ */
+final class Pager {
+    private static final int READ_BUFFER = 64 * 1024;
+    private static final String PROMPT = "\033[7m--More--\033[0m";
+    private static final String ERASE_LINE = "\r\033[K";
+
+    private Pager() {
+    }
+
+    /**
+     * Pages {@code input} to {@code output} if {@code output} is a terminal, and otherwise, or if
+     * the terminal cannot be switched to raw mode, copies it straight through.
+     */
+    static void page(InputStream input, PrintStream output, boolean terminal) throws IOException {
+        String mode = terminal ? Terminal.mode() : null;
+        if (mode == null) {
+            input.transferTo(output);
+            return;
+        }
+        int screen = Math.max(1, Terminal.rows() - 1);
+        int columns = Terminal.columns();
+        try (InputStream keys = new FileInputStream(Terminal.TTY)) {
+            byte[] buffer = new byte[READ_BUFFER];
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            int shown = 0;
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                for (int i = 0; i < n; i++) {
+                    if (lineLength == line.length) line = Arrays.copyOf(line, line.length * 2);
+                    line[lineLength++] = buffer[i];
+                    if (buffer[i] != '\n') continue;
+                    output.write(line, 0, lineLength);
+                    // a line longer than the screen is wide wraps onto several rows
+                    shown += Math.max(1, (lineLength - 1 + columns - 1) / columns);
+                    lineLength = 0;
+                    if (shown >= screen) {
+                        int key = waitForKey(keys, output, mode);
+                        if (key == 'q' || key == 'Q' || key == -1 || output.checkError()) return;
+                        shown = key == '\n' || key == '\r' || key == 'j' ? screen - 1 : 0;
+                    }
+                }
+            }
+            output.write(line, 0, lineLength);
+        }
+    }
+
+    private static int waitForKey(InputStream keys, PrintStream output, String mode) throws IOException {
+        output.print(PROMPT);
+        output.flush();
+        Terminal.raw();
+        try {
+            return keys.read();
+        } finally {
+            Terminal.restore(mode);
+            output.print(ERASE_LINE);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Completes file names against per-directory {@link NameTrie}s.
+ *
+ * A directory's trie is built the first time something in it is completed, from its names
+ * alone, and kept; the tries are LRU-bounded by the total number of names they hold, and a
+ * directory larger than that bound is read afresh for every completion. The shell reports its
+ * own changes through {@link #changed} and {@link #changedTree}, which patch the tries in place
+ * rather than dropping them. Changes made by anyone else show up as a new modification time on
+ * the directory, checked with one stat per completion, and cause a rebuild.
+ */
+public class PathCompleter {
+    public static final int DEFAULT_MAX_NAMES = 1_000_000;
+    /** How many candidates a completion lists at most. */
+    public static final int MAX_CANDIDATES = 200;
+
+    private final int maxNames;
+    private final Map<Path, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+    private int names;
+
+    public PathCompleter() {
+        this(DEFAULT_MAX_NAMES);
+    }
+
+    public PathCompleter(int maxNames) {
+        this.maxNames = maxNames;
+    }
+
+    /**
+     * Completes {@code prefix} to a name in {@code directory}; directories are offered with a
+     * trailing {@code /}. Names starting with {@code .} are only offered for a prefix that does too.
+     */
+    public Completion complete(Path directory, String prefix) {
+        directory = key(directory);
+        FileTime modified = modified(directory);
+        if (modified == null) return Completion.NONE;
+        Completion match = null;
+        synchronized (this) {
+            Listing listing = listings.get(directory);
+            if (listing != null && listing.modified.equals(modified)) {
+                match = listing.match(prefix);
+            } else if (listing != null) {
+                evict(directory);
+            }
+        }
+        if (match == null) {
+            Listing listing = read(directory, modified);
+            if (listing == null) return Completion.NONE;
+            match = listing.match(prefix);
+            synchronized (this) {
+                if (listing.size() <= maxNames && !listings.containsKey(directory)) {
+                    listings.put(directory, listing);
+                    names += listing.size();
+                    trim();
+                }
+            }
+        }
+        return markDirectories(directory, prefix, match);
+    }
+
+    /** Brings the cached parent of {@code path} up to date after the shell created or removed it. */
+    public void changed(Path path) {
+        path = key(path);
+        Path parent = path.getParent();
+        Path name = path.getFileName();
+        if (parent == null || name == null) return;
+        synchronized (this) {
+            if (!listings.containsKey(parent) && !listings.containsKey(path)) return;
+        }
+        // stat outside the lock, so that a parallel rm or cp does not queue up behind it
+        boolean exists = Files.exists(path, LinkOption.NOFOLLOW_LINKS);
+        boolean directory = exists && Files.isDirectory(path);
+        FileTime modified = modified(parent);
+        synchronized (this) {
+            if (!directory) {
+                evict(path);
+            }
+            Listing listing = listings.get(parent);
+            if (listing == null) return;
+            if (modified == null) {
+                evict(parent);
+                return;
+            }
+            names -= listing.size();
+            if (exists) {
+                listing.add(name.toString());
+            } else {
+                listing.remove(name.toString());
+            }
+            listing.modified = modified;
+            names += listing.size();
+            trim();
+        }
+    }
+
+    /** Like {@link #changed}, and also forgets every directory at or below {@code root}. */
+    public void changedTree(Path root) {
+        changed(root);
+        Path key = key(root);
+        synchronized (this) {
+            Iterator<Map.Entry<Path, Listing>> entries = listings.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Path, Listing> entry = entries.next();
+                if (entry.getKey().startsWith(key)) {
+                    names -= entry.getValue().size();
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        listings.clear();
+        names = 0;
+    }
+
+    /** The number of names held across all cached directories. */
+    public synchronized int cachedNames() {
+        return names;
+    }
+
+    /** Tries are keyed by absolute, normalized path, however the directory was named. */
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private void evict(Path directory) {
+        Listing listing = listings.remove(directory);
+        if (listing != null) names -= listing.size();
+    }
+
+    private void trim() {
+        Iterator<Listing> eldest = listings.values().iterator();
+        while (names > maxNames && eldest.hasNext()) {
+            names -= eldest.next().size();
+            eldest.remove();
+        }
+    }
+
+    /** The trie holds names only, so the few that are shown are checked for being directories here. */
+    private static Completion markDirectories(Path directory, String prefix, Completion match) {
+        if (match.candidates().isEmpty()) return match;
+        String extension = match.extension();
+        if (match.unique() && Files.isDirectory(directory.resolve(prefix + extension))) {
+            extension += "/";
+        }
+        List<String> candidates = new ArrayList<>(match.candidates().size());
+        for (String candidate : match.candidates()) {
+            candidates.add(Files.isDirectory(directory.resolve(candidate)) ? candidate + "/" : candidate);
+        }
+        return new Completion(extension, candidates, match.unique());
+    }
+
+    private static FileTime modified(Path directory) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+            return attributes.isDirectory() ? attributes.lastModifiedTime() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Listing read(Path directory, FileTime modified) {
+        Listing listing = new Listing(modified);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                listing.add(entry.getFileName().toString());
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return listing;
+    }
+
+    /** One directory's names, hidden ones in a trie of their own so that they cost nothing to skip. */
+    private static final class Listing {
+        final NameTrie visible = new NameTrie();
+        final NameTrie hidden = new NameTrie();
+        FileTime modified;
+
+        Listing(FileTime modified) {
+            this.modified = modified;
+        }
+
+        int size() {
+            return visible.size() + hidden.size();
+        }
+
+        void add(String name) {
+            (name.startsWith(".") ? hidden : visible).add(name);
+        }
+
+        void remove(String name) {
+            (name.startsWith(".") ? hidden : visible).remove(name);
+        }
+
+        Completion match(String prefix) {
+            return (prefix.startsWith(".") ? hidden : visible).match(prefix, MAX_CANDIDATES);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implements {@code grep}: prints the lines of files, directory trees or the stage's input that
+ * match a pattern.
+ *
+ * Several files are searched in parallel, at most {@link #WINDOW} at a time, and their results
+ * are written strictly in argument order, directories walked by {@link SortedTreeIterator}; a
+ * single file is streamed straight to the output. Each file's matches are held until it is its
+ * turn, so memory is bounded by the window, not by the number of files.
+ */
+public class PatternSearch {
+    static final int WINDOW = 2 * Runtime.getRuntime().availableProcessors();
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private boolean recursive;
+    private boolean countOnly;
+    private boolean filesOnly;
+    private boolean matched;
+    private boolean failed;
+
+    /** Applies one option letter; returns false if it is not a grep option. */
+    public boolean option(char option) {
+        switch (option) {
+            case 'r':
+            case 'R':
+                recursive = true;
+                return true;
+            case 'c':
+                countOnly = true;
+                return true;
+            case 'l':
+                filesOnly = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Searches {@code input} line by line; returns 0 if anything matched, 1 otherwise. */
+    public int search(LineSearcher searcher, InputStream input, PrintStream output, PrintStream errors)
+            throws IOException {
+        Result result = new Result("(standard input)");
+        searcher.search(input, line -> accept(result, line, false, output));
+        finish(result, false, output, errors);
+        return matched ? 0 : 1;
+    }
+
+    /**
+     * Searches the files named by {@code operands}, relative to {@code directory}. Returns 0 if
+     * anything matched, 1 if nothing did or a file could not be read.
+     */
+    public int search(LineSearcher searcher, Path directory, List<String> operands, PrintStream output,
+                      PrintStream errors) {
+        boolean named = recursive || operands.size() > 1;
+        Deque<CompletableFuture<Result>> pending = new ArrayDeque<>();
+
+        for (String operand : operands) {
+            Path root = directory.resolve(operand);
+            if (!Files.isDirectory(root)) {
+                if (!named) {
+                    // nothing to order against: stream the matches as they are found
+                    finish(searchFile(searcher, root, operand, false, output), false, output, errors);
+                } else {
+                    pending.add(CompletableFuture.supplyAsync(() -> searchFile(searcher, root, operand, true, null)));
+                }
+            } else if (!recursive) {
+                pending.add(CompletableFuture.completedFuture(Result.failed(operand, "Is a directory: " + operand)));
+            } else {
+                SortedTreeIterator files = new SortedTreeIterator(root, e -> pending.add(CompletableFuture.completedFuture(
+                        Result.failed(operand, "Error reading directory: " + e.getMessage()))));
+                while (files.hasNext()) {
+                    Path file = files.next();
+                    if (!files.attributes().isRegularFile()) continue;
+                    String name = root.getFileSystem().getPath(operand).resolve(root.relativize(file)).toString();
+                    pending.add(CompletableFuture.supplyAsync(() -> searchFile(searcher, file, name, true, null)));
+                    drain(pending, WINDOW - 1, output, errors);
+                    if (output.checkError()) break;
+                }
+            }
+            drain(pending, WINDOW - 1, output, errors);
+        }
+        drain(pending, 0, output, errors);
+        return matched && !failed ? 0 : 1;
+    }
+
+    /** Writes out completed searches, oldest first, until at most {@code keep} are pending. */
+    private void drain(Deque<CompletableFuture<Result>> pending, int keep, PrintStream output, PrintStream errors) {
+        while (pending.size() > keep) {
+            finish(pending.remove().join(), true, output, errors);
+        }
+    }
+
+    /** Searches one file, writing matching lines to {@code sink} or, if it is null, keeping them. */
+    private Result searchFile(LineSearcher searcher, Path file, String name, boolean named, OutputStream sink) {
+        Result result = new Result(name);
+        if (sink == null && !countOnly && !filesOnly) {
+            result.lines = new ByteArrayOutputStream();
+        }
+        OutputStream target = sink != null ? sink : result.lines;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            searcher.search(channel, line -> accept(result, line, named, target));
+        } catch (NoSuchFileException e) {
+            result.error = "File does not exist: " + name;
+        } catch (IOException e) {
+            result.error = "Error reading file: " + e.getMessage();
+        }
+        return result;
+    }
+
+    private boolean accept(Result result, byte[] line, boolean named, OutputStream target) throws IOException {
+        result.matches++;
+        if (filesOnly) return false;
+        if (countOnly) return true;
+        if (named) {
+            target.write(result.name.getBytes(StandardCharsets.UTF_8));
+            target.write(':');
+        }
+        target.write(line);
+        target.write(LINE_SEPARATOR);
+        return !(target instanceof PrintStream) || !((PrintStream) target).checkError();
+    }
+
+    /** Writes whatever of {@code result} has not been streamed already, and its failure to {@code errors}. */
+    private void finish(Result result, boolean named, PrintStream output, PrintStream errors) {
+        matched |= result.matches > 0;
+        failed |= result.error != null;
+        if (result.error != null) {
+            errors.append(result.error).append(System.lineSeparator());
+        } else if (filesOnly) {
+            if (result.matches > 0) {
+                output.append(result.name).append(System.lineSeparator());
+            }
+        } else if (countOnly) {
+            if (named) {
+                output.append(result.name).append(':');
+            }
+            output.append(Long.toString(result.matches)).append(System.lineSeparator());
+        } else if (result.lines != null) {
+            output.write(result.lines.toByteArray(), 0, result.lines.size());
+        }
+    }
+
+    private static final class Result {
+        final String name;
+        long matches;
+        ByteArrayOutputStream lines;
+        String error;
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        static Result failed(String name, String error) {
+            Result result = new Result(name);
+            result.error = error;
+            return result;
+        }
+    }
+}
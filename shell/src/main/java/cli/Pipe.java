@@ -0,0 +1,169 @@
+package cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory byte channel joining two pipeline stages.
+ *
+ * The writer blocks while the buffer is full and the reader blocks while it is empty, so a
+ * pipeline never holds more than {@code capacity} bytes per stage no matter how much data
+ * flows through it. Closing the sink signals end of input; closing the source makes further
+ * writes fail so an upstream stage can stop early.
+ */
+public class Pipe {
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final byte[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int readPos;
+    private int count;
+    private boolean writerClosed;
+    private boolean readerClosed;
+    private long bytesWritten;
+    private long bytesRead;
+
+    private final InputStream source = new Source();
+    private final OutputStream sink = new Sink();
+
+    public Pipe() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public Pipe(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    public InputStream source() {
+        return source;
+    }
+
+    public OutputStream sink() {
+        return sink;
+    }
+
+    public long getBytesWritten() {
+        lock.lock();
+        try {
+            return bytesWritten;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBytesRead() {
+        lock.lock();
+        try {
+            return bytesRead;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private class Source extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            lock.lock();
+            try {
+                while (count == 0) {
+                    if (writerClosed || readerClosed) return -1;
+                    notEmpty.await();
+                }
+                int n = Math.min(len, count);
+                int first = Math.min(n, buffer.length - readPos);
+                System.arraycopy(buffer, readPos, b, off, first);
+                System.arraycopy(buffer, 0, b, off + first, n - first);
+                readPos = (readPos + n) % buffer.length;
+                count -= n;
+                bytesRead += n;
+                notFull.signal();
+                return n;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading from pipe", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int available() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                readerClosed = true;
+                count = 0;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private class Sink extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            lock.lock();
+            try {
+                while (len > 0) {
+                    if (readerClosed) throw new IOException("Broken pipe");
+                    if (writerClosed) throw new IOException("Pipe closed");
+                    if (count == buffer.length) {
+                        notFull.await();
+                        continue;
+                    }
+                    int writePos = (readPos + count) % buffer.length;
+                    int n = Math.min(len, Math.min(buffer.length - count, buffer.length - writePos));
+                    System.arraycopy(b, off, buffer, writePos, n);
+                    count += n;
+                    bytesWritten += n;
+                    off += n;
+                    len -= n;
+                    notEmpty.signal();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing to pipe", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                writerClosed = true;
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
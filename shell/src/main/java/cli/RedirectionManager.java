@@ -0,0 +1,191 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens the files behind one session's {@code >}, {@code >>} and {@code 2>} redirections.
+ *
+ * Scripts append to the same few logs over and over, so a channel opened for appending stays
+ * open after its stage, in an LRU of at most {@link #MAX_OPEN_FILES}, and is reused for as long
+ * as the path still names the file it was opened on; a log that was removed or rotated in the
+ * meantime is opened afresh. Cached channels are closed by {@link #closeAll} (the shell calls it
+ * on {@code cd}), by {@link #close}, and once they have gone unused for {@link #IDLE_MILLIS}.
+ * {@code >} always opens, truncates and closes its file. Every output buffers into a pooled
+ * direct buffer, which is flushed to the channel only when it fills or the stage ends.
+ */
+public class RedirectionManager implements Closeable {
+    public static final int MAX_OPEN_FILES = 64;
+    static final long IDLE_MILLIS = 10_000;
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    private final Map<Path, CachedChannel> channels = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, CachedChannel> eldest) {
+            if (size() <= MAX_OPEN_FILES) return false;
+            eldest.getValue().retire();
+            return true;
+        }
+    };
+    private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+    private Thread sweeper;
+    private boolean closed;
+
+    /** Opens {@code path} for writing, creating it if needed; {@code >>} appends, {@code >} truncates. */
+    public ChannelOutput open(Path path, boolean append) throws IOException {
+        CachedChannel cached = append ? acquire(path.toAbsolutePath().normalize()) : null;
+        if (cached != null) {
+            return new ChannelOutput(cached.channel, borrow(), buffer -> {
+                giveBack(buffer);
+                cached.release();
+            });
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        return new ChannelOutput(channel, borrow(), buffer -> {
+            giveBack(buffer);
+            closeQuietly(channel);
+        });
+    }
+
+    /** The cached append channel for {@code path}, opened if need be; null once closed. */
+    private CachedChannel acquire(Path path) throws IOException {
+        Object fileKey = fileKey(path);
+        synchronized (this) {
+            if (closed) return null;
+            CachedChannel cached = channels.get(path);
+            if (cached != null && (fileKey == null || !fileKey.equals(cached.fileKey))) {
+                channels.remove(path);
+                cached.retire();
+                cached = null;
+            }
+            if (cached == null) {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+                cached = new CachedChannel(channel, fileKey != null ? fileKey : fileKey(path));
+                channels.put(path, cached);
+                if (sweeper == null) {
+                    sweeper = Thread.ofVirtual().name("redirection-sweeper").start(this::sweep);
+                }
+            }
+            cached.users++;
+            return cached;
+        }
+    }
+
+    /** Identity of the file at {@code path}, or null if it is missing or the file system has none. */
+    private static Object fileKey(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Closes channels that have been idle too long; stops once nothing is left to watch. */
+    private void sweep() {
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS);
+        try {
+            while (true) {
+                Thread.sleep(IDLE_MILLIS);
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    channels.values().removeIf(cached -> {
+                        boolean idle = cached.users == 0 && now - cached.lastUsed >= idleNanos;
+                        if (idle) cached.retire();
+                        return idle;
+                    });
+                    if (channels.isEmpty() || closed) {
+                        sweeper = null;
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private synchronized ByteBuffer borrow() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(ChannelOutput.BUFFER_SIZE);
+    }
+
+    private synchronized void giveBack(ByteBuffer buffer) {
+        if (!closed && buffers.size() < MAX_POOLED_BUFFERS) {
+            buffers.push(buffer.clear());
+        }
+    }
+
+    /** Number of append channels currently held open. */
+    public synchronized int openFiles() {
+        return channels.size();
+    }
+
+    /** Closes every cached channel; outputs still writing to one keep it until they finish. */
+    public synchronized void closeAll() {
+        channels.values().forEach(CachedChannel::retire);
+        channels.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        closeAll();
+        buffers.clear();
+        if (sweeper != null) {
+            sweeper.interrupt();
+            sweeper = null;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // everything written has already reached the file
+        }
+    }
+
+    /** An append channel and how many outputs are writing to it; guarded by the manager. */
+    private final class CachedChannel {
+        final FileChannel channel;
+        final Object fileKey;
+        int users;
+        long lastUsed = System.nanoTime();
+        boolean retired;
+
+        CachedChannel(FileChannel channel, Object fileKey) {
+            this.channel = channel;
+            this.fileKey = fileKey;
+        }
+
+        void release() {
+            synchronized (RedirectionManager.this) {
+                users--;
+                lastUsed = System.nanoTime();
+                if (retired && users == 0) {
+                    closeQuietly(channel);
+                }
+            }
+        }
+
+        void retire() {
+            retired = true;
+            if (users == 0) {
+                closeQuietly(channel);
+            }
+        }
+    }
+}
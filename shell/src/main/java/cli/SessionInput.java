@@ -0,0 +1,264 @@
+package cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The one buffered reader of a session's input, shared by everything that consumes it: the
+ * command lines themselves, {@code cat > file}, and here-documents. Since nothing else reads the
+ * underlying stream, bytes buffered past the end of a command line are still there for the
+ * command that wants them, such as the rest of a paste.
+ *
+ * Text for a command is copied from the buffer to its target a buffer at a time, looking only at
+ * line starts for the terminator line, so no line is ever decoded into a {@code String}. End of
+ * input ends the text as well; on a terminal that is Ctrl-D, after which the session goes on
+ * reading, since end of input is never remembered.
+ */
+public final class SessionInput extends InputStream {
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final InputStream source;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    public SessionInput(InputStream source) {
+        this(source, DEFAULT_CAPACITY);
+    }
+
+    public SessionInput(InputStream source, int capacity) {
+        this.source = source;
+        this.buffer = new byte[capacity];
+    }
+
+    /** {@code input} itself if it is already a session input, else a new one reading it. */
+    static SessionInput of(InputStream input) {
+        return input instanceof SessionInput ? (SessionInput) input : new SessionInput(input);
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        if (position == limit && !refill()) return -1;
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (position == limit) {
+            if (length >= buffer.length) return source.read(bytes, offset, length);
+            if (!refill()) return -1;
+        }
+        int n = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, bytes, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        return limit - position + source.available();
+    }
+
+    /** Closes the underlying stream. */
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Reads one line, decoded as UTF-8, without its {@code \n} or {@code \r\n}; null at end of
+     * input. A last line without a newline is still returned.
+     */
+    public synchronized String readLine() throws IOException {
+        int scanned = position;
+        while (true) {
+            int newline = indexOfNewline(scanned, limit);
+            if (newline >= 0) {
+                int end = newline > position && buffer[newline - 1] == '\r' ? newline - 1 : newline;
+                String line = new String(buffer, position, end - position, StandardCharsets.UTF_8);
+                position = newline + 1;
+                return line;
+            }
+            scanned = limit - position;
+            if (!refill()) {
+                if (position == limit) return null;
+                String line = new String(buffer, position, limit - position, StandardCharsets.UTF_8);
+                position = limit;
+                return line;
+            }
+            scanned += position;
+        }
+    }
+
+    /**
+     * The input up to the next line that reads exactly {@code terminator}, as a stream of its
+     * own. The terminator line is consumed but not part of the stream; closing the stream skips
+     * whatever of the text was not read, so the next command line is read from after it.
+     */
+    public InputStream hereDocument(String terminator) {
+        return new Text(terminator, false);
+    }
+
+    /**
+     * Copies input to {@code target} up to a line that reads {@code terminator}, in ASCII case
+     * if {@code ignoreCase}, or to end of input; returns the number of bytes copied.
+     */
+    public long copyUntil(String terminator, boolean ignoreCase, OutputStream target) throws IOException {
+        return new Text(terminator, ignoreCase).transferTo(target);
+    }
+
+    /**
+     * Reads more into the buffer, first moving what is left of it to the front, or growing it
+     * if there is nothing to move. Returns false at end of input.
+     */
+    private boolean refill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        } else if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int n = source.read(buffer, limit, buffer.length - limit);
+        if (n <= 0) return false;
+        limit += n;
+        return true;
+    }
+
+    private int indexOfNewline(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    /** Text read up to a terminator line, straight out of the session's buffer. */
+    private final class Text extends InputStream {
+        private final byte[] terminator;
+        private final boolean ignoreCase;
+        private boolean lineStart = true;
+        private boolean endOfInput;
+        private boolean finished;
+
+        Text(String terminator, boolean ignoreCase) {
+            this.terminator = terminator.getBytes(StandardCharsets.UTF_8);
+            this.ignoreCase = ignoreCase;
+        }
+
+        @Override
+        public int read() throws IOException {
+            synchronized (SessionInput.this) {
+                if (next(1) == 0) return -1;
+                return buffer[position++] & 0xff;
+            }
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) return 0;
+            synchronized (SessionInput.this) {
+                int n = next(length);
+                if (n == 0) return -1;
+                System.arraycopy(buffer, position, bytes, offset, n);
+                position += n;
+                return n;
+            }
+        }
+
+        /** Writes the text to {@code target} straight from the session's buffer. */
+        @Override
+        public long transferTo(OutputStream target) throws IOException {
+            synchronized (SessionInput.this) {
+                long copied = 0;
+                int n;
+                while ((n = next(Integer.MAX_VALUE)) > 0) {
+                    target.write(buffer, position, n);
+                    position += n;
+                    copied += n;
+                }
+                return copied;
+            }
+        }
+
+        /** Skips the rest of the text, terminator included. */
+        @Override
+        public void close() throws IOException {
+            synchronized (SessionInput.this) {
+                int n;
+                while ((n = next(Integer.MAX_VALUE)) > 0) {
+                    position += n;
+                }
+            }
+        }
+
+        /**
+         * How many bytes of text, at most {@code max}, are in the buffer from its position,
+         * reading more input if there are none; 0 once the text has ended.
+         */
+        private int next(int max) throws IOException {
+            while (!finished) {
+                int n = scan(max);
+                if (n > 0) return n;
+                int match = position < limit ? match(position) : 0;
+                if (match > 0) {
+                    position += match;
+                    finished = true;
+                } else if (endOfInput) {
+                    finished = true;
+                } else if (!refill()) {
+                    endOfInput = true;
+                }
+            }
+            return 0;
+        }
+
+        /** Counts text from the position up to a line that is, or may yet be, the terminator. */
+        private int scan(int max) {
+            int end = (int) Math.min(limit, (long) position + max);
+            int i = position;
+            while (i < end) {
+                if (lineStart) {
+                    if (match(i) != 0) break;
+                    lineStart = false;
+                }
+                int newline = indexOfNewline(i, end);
+                if (newline < 0) {
+                    i = end;
+                    break;
+                }
+                i = newline + 1;
+                lineStart = true;
+            }
+            return i - position;
+        }
+
+        /**
+         * The length of the terminator line at {@code i}, newline included; 0 if it is not one,
+         * or -1 if the buffer ends before that can be told.
+         */
+        private int match(int i) {
+            int available = limit - i;
+            int length = terminator.length;
+            for (int k = 0; k < Math.min(length, available); k++) {
+                if (!same(buffer[i + k], terminator[k])) return 0;
+            }
+            if (available <= length) {
+                return endOfInput && available == length ? length : endOfInput ? 0 : -1;
+            }
+            byte next = buffer[i + length];
+            if (next == '\n') return length + 1;
+            if (next != '\r') return 0;
+            if (available == length + 1) return endOfInput ? length + 1 : -1;
+            return buffer[i + length + 1] == '\n' ? length + 2 : 0;
+        }
+
+        private boolean same(byte a, byte b) {
+            if (a == b) return true;
+            return ignoreCase && (a | 0x20) == (b | 0x20) && (a | 0x20) >= 'a' && (a | 0x20) <= 'z';
+        }
+    }
+}
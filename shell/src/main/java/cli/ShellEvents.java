@@ -0,0 +1,56 @@
+package cli;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR events emitted by the shell. They cost nothing unless a recording enables them, e.g.
+ * {@code java -XX:StartFlightRecording:filename=cli.jfr ...}.
+ */
+public final class ShellEvents {
+    private ShellEvents() {
+    }
+
+    @Name("cli.Stage")
+    @Label("Pipeline Stage")
+    @Category("CLI")
+    @Description("One stage of a pipeline, from dispatch to completion")
+    public static final class Stage extends Event {
+        @Label("Command")
+        public String command;
+
+        @Label("Stage Index")
+        public int index;
+
+        @Label("Exit Status")
+        public int status;
+
+        @Label("Bytes Read")
+        @DataAmount
+        public long bytesRead;
+
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytesWritten;
+    }
+
+    @Name("cli.Redirection")
+    @Label("Redirection")
+    @Category("CLI")
+    @Description("Output of a stage written to a file with > or >>")
+    public static final class Redirection extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Append")
+        public boolean append;
+
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytesWritten;
+    }
+}
@@ -0,0 +1,95 @@
+package cli;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Load-test client for {@link ShellServer}: opens a number of concurrent sessions, runs the
+ * same command repeatedly in each and reports commands per second per session.
+ *
+ * <pre>java ShellLoadClient &lt;port | socket-path&gt; [sessions] [commands-per-session] [command]</pre>
+ */
+public class ShellLoadClient {
+    private static final String PROMPT_SUFFIX = "> ";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ShellLoadClient <port | socket-path> [sessions] [commands-per-session] [command]");
+            System.exit(TerminalParser.STATUS_SYNTAX_ERROR);
+        }
+        SocketAddress address = ShellServer.parseAddress(args[0]);
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int commands = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        String command = args.length > 3 ? args[3] : "pwd";
+
+        double[] rates = new double[sessions];
+        List<Thread> threads = new ArrayList<>(sessions);
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            int session = i;
+            threads.add(Thread.ofVirtual().start(() -> {
+                try {
+                    rates[session] = runSession(address, commands, command);
+                } catch (IOException e) {
+                    System.err.println("Session " + session + " failed: " + e.getMessage());
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(rates);
+        System.out.printf("sessions=%d commands/session=%d command=%s%n", sessions, commands, command);
+        System.out.printf("per-session cmd/s: min=%.0f p50=%.0f max=%.0f%n",
+                rates[0], rates[sessions / 2], rates[sessions - 1]);
+        System.out.printf("aggregate cmd/s: %.0f (%.2f s)%n", (double) sessions * commands / seconds, seconds);
+    }
+
+    private static double runSession(SocketAddress address, int commands, String command) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address instanceof UnixDomainSocketAddress
+                ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET)) {
+            channel.connect(address);
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            StringBuilder received = new StringBuilder();
+            // The first prompt tells us what every later prompt looks like, since we never cd.
+            readUntil(channel, buffer, received, PROMPT_SUFFIX);
+            String prompt = received.substring(received.lastIndexOf("\n") + 1);
+
+            ByteBuffer request = ByteBuffer.wrap((command + "\n").getBytes(StandardCharsets.UTF_8));
+            long start = System.nanoTime();
+            for (int i = 0; i < commands; i++) {
+                request.rewind();
+                while (request.hasRemaining()) {
+                    channel.write(request);
+                }
+                readUntil(channel, buffer, received, prompt);
+            }
+            long elapsed = System.nanoTime() - start;
+            return commands / (elapsed / 1e9);
+        }
+    }
+
+    private static void readUntil(SocketChannel channel, ByteBuffer buffer, StringBuilder received, String suffix)
+            throws IOException {
+        received.setLength(0);
+        while (received.length() < suffix.length()
+                || received.lastIndexOf(suffix) != received.length() - suffix.length()) {
+            buffer.clear();
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Server closed the session");
+            }
+            buffer.flip();
+            received.append(StandardCharsets.UTF_8.decode(buffer));
+        }
+    }
+}
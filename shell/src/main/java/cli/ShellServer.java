@@ -0,0 +1,158 @@
+package cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves shell sessions over a local TCP or Unix-domain socket.
+ *
+ * Every connection gets its own virtual thread and its own {@link TerminalParser} wired to the
+ * connection's streams, so sessions share no working directory, I/O or parse cache. An idle
+ * session is just a parked virtual thread plus two small buffers. Run with {@code -Dcli.snapshot},
+ * the server copies the initial directory into a {@link MemoryFileSystem} and serves that copy.
+ */
+public class ShellServer implements Closeable {
+    private static final int SESSION_BUFFER_SIZE = 4 * 1024;
+    private static final int BACKLOG = 1024;
+
+    private final ServerSocketChannel server;
+    private final Path home;
+    private final Path initialDirectory;
+    private final AtomicInteger sessionIds = new AtomicInteger();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private volatile CommandHistory history;
+
+    public ShellServer(SocketAddress address, Path initialDirectory) throws IOException {
+        this(address, initialDirectory.getFileSystem().getPath(System.getProperty("user.home")), initialDirectory);
+    }
+
+    /** Serves sessions in the file system of {@code initialDirectory}, which {@code home} must share. */
+    public ShellServer(SocketAddress address, Path home, Path initialDirectory) throws IOException {
+        this.server = ServerSocketChannel.open(address instanceof UnixDomainSocketAddress
+                ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET);
+        this.server.bind(address, BACKLOG);
+        this.home = home;
+        this.initialDirectory = initialDirectory;
+    }
+
+    /** Parses a port number as a loopback TCP address and anything else as a Unix socket path. */
+    public static SocketAddress parseAddress(String address) {
+        try {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        } catch (NumberFormatException e) {
+            return UnixDomainSocketAddress.of(address);
+        }
+    }
+
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    /** Has every session from now on record to and expand from {@code history}. */
+    public void setHistory(CommandHistory history) {
+        this.history = history;
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /** Accepts connections until the server is closed. */
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            activeSessions.incrementAndGet();
+            Thread.ofVirtual().name("session-" + sessionIds.incrementAndGet()).start(() -> {
+                try {
+                    runSession(channel);
+                } finally {
+                    activeSessions.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void runSession(SocketChannel channel) {
+        try (channel) {
+            SessionInput in = new SessionInput(Channels.newInputStream(channel), SESSION_BUFFER_SIZE);
+            PrintStream out = new PrintStream(new OutputSink(channel, SESSION_BUFFER_SIZE, false), false);
+            try (TerminalParser parser = new TerminalParser(initialDirectory.getFileSystem(), home, initialDirectory,
+                    in, out, out)) {
+                parser.setHistory(history);
+                runSession(parser, in, out);
+            }
+        } catch (IOException e) {
+            // the client went away; nothing to report to
+        }
+    }
+
+    private static void runSession(TerminalParser parser, SessionInput in, PrintStream out) throws IOException {
+        out.println("Welcome to the CLI! Type 'help' for a list of commands.");
+        while (true) {
+            out.print(parser.getCurrentDirectory() + "> ");
+            out.flush();
+            String input = in.readLine();
+            if (input == null || input.trim().equalsIgnoreCase("exit")) {
+                out.println("Exiting the CLI. Goodbye!");
+                out.flush();
+                break;
+            }
+            parser.processInput(input.trim());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        SocketAddress address = server.getLocalAddress();
+        server.close();
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ShellServer <port | socket-path> [initial-dir]");
+            System.exit(TerminalParser.STATUS_SYNTAX_ERROR);
+        }
+        Path initialDirectory = Paths.get(args.length > 1 ? args[1] : System.getProperty("user.dir"));
+        Path home = Paths.get(System.getProperty("user.home"));
+        if (System.getProperty("cli.snapshot") != null) {
+            // serve a copy of the tree from RAM: sessions neither see nor touch the disk
+            try {
+                String path = initialDirectory.toAbsolutePath().normalize().toString();
+                initialDirectory = MemoryFileSystem.snapshot(initialDirectory).getPath(path);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            home = initialDirectory;
+        }
+        try (ShellServer server = new ShellServer(parseAddress(args[0]), home, initialDirectory)) {
+            if (System.getProperty("cli.history") != null) {
+                server.setHistory(CommandHistory.open(CommandHistory.defaultFile()));
+            }
+            System.out.println("Serving shell sessions on " + server.getAddress());
+            server.serve();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Walks a tree depth first, the root first and each directory's entries sorted by name, so the
+ * order is the same on every run and every file system.
+ *
+ * Entries are produced lazily: a directory is only read once the caller asks for what comes
+ * after it, and only the sorted listings of the directories on the current path are held, on an
+ * explicit stack rather than the call stack. Symbolic links are returned but never followed.
+ * Entries that vanish during the walk are skipped; other failures go to the error handler and
+ * the walk carries on.
+ */
+public class SortedTreeIterator implements Iterator<Path> {
+    private static final Comparator<Path> BY_NAME = Comparator.comparing(path -> path.getFileName().toString());
+
+    private final Deque<Iterator<Path>> stack = new ArrayDeque<>();
+    private final Consumer<IOException> errors;
+    private Path root;
+    private Path next;
+    private BasicFileAttributes nextAttributes;
+    private Path pendingDirectory;
+    private BasicFileAttributes attributes;
+
+    public SortedTreeIterator(Path root, Consumer<IOException> errors) {
+        this.root = root;
+        this.errors = errors;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            Path candidate;
+            if (root != null) {
+                candidate = root;
+                root = null;
+            } else {
+                if (pendingDirectory != null) {
+                    stack.push(sortedEntries(pendingDirectory));
+                    pendingDirectory = null;
+                }
+                Iterator<Path> entries = stack.peek();
+                if (entries == null) return false;
+                if (!entries.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                candidate = entries.next();
+            }
+            try {
+                nextAttributes = Files.readAttributes(candidate, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                next = candidate;
+            } catch (NoSuchFileException e) {
+                // gone since its directory was read
+            } catch (IOException e) {
+                errors.accept(e);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Path current = next;
+        attributes = nextAttributes;
+        next = null;
+        if (attributes.isDirectory()) {
+            pendingDirectory = current;
+        }
+        return current;
+    }
+
+    /** Attributes of the path last returned by {@link #next()}, not following links. */
+    public BasicFileAttributes attributes() {
+        return attributes;
+    }
+
+    private Iterator<Path> sortedEntries(Path directory) {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+            }
+        } catch (NoSuchFileException e) {
+            return entries.iterator();
+        } catch (IOException e) {
+            errors.accept(e);
+        } catch (DirectoryIteratorException e) {
+            errors.accept(e.getCause());
+        }
+        entries.sort(BY_NAME);
+        return entries.iterator();
+    }
+}
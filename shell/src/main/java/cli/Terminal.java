@@ -0,0 +1,98 @@
+package cli;
+
+import java.io.Console;
+import java.io.File;
+import java.io.IOException;
+
+/** The controlling terminal, driven through {@code stty}: switching its mode and reading its size. */
+final class Terminal {
+    static final File TTY = new File("/dev/tty");
+    private static final int DEFAULT_ROWS = 24;
+    private static final int DEFAULT_COLUMNS = 80;
+
+    private Terminal() {
+    }
+
+    /**
+     * Whether standard input and output are both the terminal, so a person is typing and
+     * reading. From JDK 22 on there is a console even when they are redirected, and only its
+     * {@code isTerminal()} tells; before that, having a console at all means they are.
+     */
+    static boolean interactive() {
+        Console console = System.console();
+        if (console == null) return false;
+        try {
+            return (Boolean) Console.class.getMethod("isTerminal").invoke(console);
+        } catch (ReflectiveOperationException e) {
+            return true;
+        }
+    }
+
+    /** The current mode in a form {@link #restore} takes back, or null if there is no terminal. */
+    static String mode() {
+        if (!TTY.canRead()) return null;
+        try {
+            String mode = stty("-g").trim();
+            return mode.isEmpty() ? null : mode;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Delivers keys one at a time, without echoing them; false if the terminal could not be switched. */
+    static boolean raw() {
+        try {
+            stty("-icanon", "-echo", "min", "1");
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static void restore(String mode) {
+        try {
+            stty(mode);
+        } catch (IOException e) {
+            // nothing more to try
+        }
+    }
+
+    static int rows() {
+        return size(0, DEFAULT_ROWS);
+    }
+
+    static int columns() {
+        return size(1, DEFAULT_COLUMNS);
+    }
+
+    /** Field {@code index} of {@code stty size}, which prints rows then columns. */
+    private static int size(int index, int fallback) {
+        try {
+            String[] size = stty("size").trim().split("\\s+");
+            int value = Integer.parseInt(size[index]);
+            return value > 0 ? value : fallback;
+        } catch (IOException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return fallback;
+        }
+    }
+
+    private static String stty(String... arguments) throws IOException {
+        String[] command = new String[arguments.length + 1];
+        command[0] = "stty";
+        System.arraycopy(arguments, 0, command, 1, arguments.length);
+        Process process = new ProcessBuilder(command)
+                .redirectInput(ProcessBuilder.Redirect.from(TTY))
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        String result = new String(process.getInputStream().readAllBytes());
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException("stty exited with " + process.exitValue());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for stty", e);
+        }
+        return result;
+    }
+}
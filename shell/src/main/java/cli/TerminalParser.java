@@ -0,0 +1,1982 @@
+package cli;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.PatternSyntaxException;
+
+public class TerminalParser implements Closeable {
+    public static final int STATUS_SYNTAX_ERROR = 2;
+    public static final int STATUS_NOT_FOUND = 127;
+    public static final int STATUS_INTERRUPTED = 130;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int CHECKSUMS_IN_FLIGHT = 4 * FileTreeWalker.PARALLELISM;
+    /** The line that ends the text of {@code cat > file}, in any case. */
+    private static final String END_OF_TEXT = "Exit";
+    private static final int XARGS_BATCH_SIZE = 1000;
+    /**
+     * What {@code xargs} may run: built-ins that only work on their operands, so batches on
+     * other threads cannot change the session or each other's view of it.
+     */
+    private static final Set<String> XARGS_COMMANDS = Set.of("touch", "mkdir", "rmdir", "rm", "mv", "cp",
+            "ls", "cat", "grep", "find", "head", "wc", "sha256sum", "md5sum", "crc32", "crc32c", "du");
+
+    private final CommandLexer lexer = new CommandLexer();
+    private final CommandStats stats = new CommandStats();
+    private final DirectoryCache cache = new DirectoryCache();
+    private final RedirectionManager redirections = new RedirectionManager();
+    private final JobTable jobs = new JobTable();
+    private final GlobExpander globs = new GlobExpander();
+    private final PathCompleter completer = new PathCompleter();
+    private volatile SessionInput input;
+    private InputStream systemIn;
+    private SessionInput systemInput;
+    private final PrintStream stdout;
+    private final PrintStream stderr;
+    private final Path home;
+    private volatile Path currentDirectory;
+    private CommandHistory history;
+    private volatile boolean terminalIsTty;
+    private PrintStream countedTarget;
+    private CountingOutputStream terminalCounter;
+    private PrintStream countedTerminal;
+
+    /** Creates a parser bound to whatever {@code System.in/out/err} are at the time of each command. */
+    public TerminalParser(Path initialDirectory) {
+        this(initialDirectory, null, null, null);
+    }
+
+    /** Creates a parser with its own streams, sharing no state with any other instance. */
+    public TerminalParser(Path initialDirectory, InputStream stdin, PrintStream stdout, PrintStream stderr) {
+        this(initialDirectory.getFileSystem(), initialDirectory.getFileSystem().getPath(System.getProperty("user.home")),
+                initialDirectory, stdin, stdout, stderr);
+    }
+
+    /** Creates a parser working in {@code fileSystem}, starting in {@code home}, on {@code System.in/out/err}. */
+    public TerminalParser(FileSystem fileSystem, Path home) {
+        this(fileSystem, home, home, null, null, null);
+    }
+
+    /**
+     * Creates a parser working in {@code fileSystem}, which may be any NIO provider's, such as a
+     * {@link MemoryFileSystem}; {@code cd} with no argument returns to {@code home}. Streams left
+     * null follow {@code System.in/out/err}.
+     */
+    public TerminalParser(FileSystem fileSystem, Path home, Path initialDirectory,
+                          InputStream stdin, PrintStream stdout, PrintStream stderr) {
+        if (home.getFileSystem() != fileSystem || initialDirectory.getFileSystem() != fileSystem) {
+            throw new IllegalArgumentException("Home and initial directory must be paths of the given file system");
+        }
+        this.home = home;
+        this.currentDirectory = initialDirectory;
+        this.input = stdin == null ? null : SessionInput.of(stdin);
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    /**
+     * Records every line run from now on in {@code history} and expands {@code !} events
+     * against it; meant for interactive sessions, not scripts.
+     */
+    public void setHistory(CommandHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Reads here-documents and the text of {@code cat > file} from {@code input}, which the
+     * caller should read its command lines from as well, so that neither reads ahead of the other.
+     */
+    public void setInput(SessionInput input) {
+        this.input = input;
+    }
+
+    /**
+     * Tells the parser whether its terminal output reaches a person at a TTY, as an
+     * {@link OutputSink} can tell; {@code less} only pages when it does.
+     */
+    public void setTerminalIsTty(boolean terminalIsTty) {
+        this.terminalIsTty = terminalIsTty;
+    }
+
+    /**
+     * Runs one input line and returns its exit status: that of the last pipeline run in the
+     * foreground, {@value #STATUS_SYNTAX_ERROR} for a line that does not parse, or 0 for a blank
+     * line. Pipelines separated by {@code ;} run one after the other, one after {@code &&} only
+     * if the one before succeeded, and one followed by {@code &} is started as a background job.
+     * A leading {@code time} prints where the time went to stderr once its pipeline finishes.
+     */
+    public int processInput(String input) {
+        if (history != null) {
+            if (isHistoryEvent(input)) {
+                String expanded = history.expand(input);
+                if (expanded == null) {
+                    stderr().println("Event not found: " + input.split("\\s", 2)[0]);
+                    return 1;
+                }
+                stdout().println(expanded);
+                input = expanded;
+            }
+            if (!input.isBlank()) {
+                try {
+                    history.add(input);
+                } catch (IOException e) {
+                    stderr().println("Error writing history: " + e.getMessage());
+                }
+            }
+        }
+        long start = System.nanoTime();
+        CommandLine commandLine;
+        try {
+            commandLine = lexer.parse(input);
+        } catch (IllegalArgumentException e) {
+            stderr().println("Syntax error: " + e.getMessage());
+            return STATUS_SYNTAX_ERROR;
+        }
+        long parseNanos = System.nanoTime() - start;
+
+        int status = 0;
+        for (CommandLine.Pipeline pipeline : commandLine.pipelines()) {
+            if (pipeline.conditional() && status != 0) {
+                continue;
+            }
+            if (pipeline.background()) {
+                status = startJob(pipeline, parseNanos);
+            } else {
+                status = run(pipeline.stages(), parseNanos, null, terminal(), terminalCounter);
+            }
+        }
+        return status;
+    }
+
+    private static boolean isHistoryEvent(String input) {
+        return input.length() > 1 && input.charAt(0) == '!'
+                && !Character.isWhitespace(input.charAt(1)) && input.charAt(1) != '=';
+    }
+
+    /** Runs one pipeline, timing it if it starts with {@code time}; returns its last stage's status. */
+    private int run(List<CommandLine.Stage> pipeCommands, long parseNanos, InputStream input,
+                    PrintStream terminal, CountingOutputStream counter) {
+        long start = System.nanoTime() - parseNanos;
+        boolean timed = pipeCommands.get(0).argv().get(0).equals("time");
+        if (timed) {
+            pipeCommands = withoutTimePrefix(pipeCommands);
+        }
+        StageRun[] runs = runPipeline(pipeCommands, input, terminal, counter);
+        if (timed) {
+            printTimes(parseNanos, System.nanoTime() - start, runs);
+        }
+        return runs.length == 0 ? 0 : runs[runs.length - 1].status;
+    }
+
+    /** Starts a pipeline as a background job, with no input and its output held by the job. */
+    private int startJob(CommandLine.Pipeline pipeline, long parseNanos) {
+        int id = jobs.start(pipeline.toString(), output -> {
+            CountingOutputStream counter = new CountingOutputStream(output);
+            PrintStream terminal = new PrintStream(counter, false);
+            int status = run(pipeline.stages(), parseNanos, InputStream.nullInputStream(), terminal, counter);
+            terminal.flush();
+            return status;
+        });
+        stderr().println("[" + id + "]");
+        return 0;
+    }
+
+    private StageRun[] runPipeline(List<CommandLine.Stage> pipeCommands, InputStream input,
+                                   PrintStream terminal, CountingOutputStream terminalCounter) {
+        StageRun[] runs = new StageRun[pipeCommands.size()];
+        if (runs.length == 0) {
+            return runs;
+        }
+        long terminalBefore = terminalCounter.getCount();
+        if (runs.length == 1) {
+            StageRun run = runs[0] = new StageRun(pipeCommands.get(0), 0);
+            run.status = runStage(run, input, terminal);
+            if (!run.redirected) {
+                run.bytesWritten = terminalCounter.getCount() - terminalBefore;
+            }
+            finish(run);
+            return runs;
+        }
+
+        // Every stage runs concurrently; neighbours are joined by bounded pipes so memory per
+        // pipeline stays fixed and output reaches the terminal as soon as it is produced.
+        List<Thread> stages = new ArrayList<>(runs.length);
+        Pipe previousPipe = null;
+        for (int i = 0; i < runs.length; i++) {
+            StageRun run = runs[i] = new StageRun(pipeCommands.get(i), i);
+            Pipe inputPipe = previousPipe;
+            InputStream stageInput = inputPipe == null ? input : inputPipe.source();
+            boolean last = i == runs.length - 1;
+            Pipe pipe = last ? null : new Pipe();
+            PrintStream output = last ? terminal : new PrintStream(new BufferedOutputStream(pipe.sink()), false);
+            stages.add(Thread.ofVirtual().name("stage-" + i).start(() -> {
+                try {
+                    run.status = runStage(run, stageInput, output);
+                } finally {
+                    if (!last) {
+                        output.close();
+                    }
+                    closeQuietly(stageInput);
+                    if (inputPipe != null) {
+                        run.bytesRead = inputPipe.getBytesRead();
+                    }
+                    if (!run.redirected) {
+                        run.bytesWritten = last ? terminalCounter.getCount() - terminalBefore : pipe.getBytesWritten();
+                    }
+                    finish(run);
+                }
+            }));
+            previousPipe = pipe;
+        }
+
+        for (Thread stage : stages) {
+            try {
+                stage.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stages.forEach(Thread::interrupt);
+                runs[runs.length - 1].status = STATUS_INTERRUPTED;
+                break;
+            }
+        }
+        return runs;
+    }
+
+    private int runStage(StageRun run, InputStream input, PrintStream output) {
+        String[] tokens = run.stage.tokens();
+        String[] stageGlobs = run.stage.globs();
+        List<CommandLine.Redirection> stageRedirections = run.stage.redirections();
+        if (stageRedirections.isEmpty()) {
+            return executeCommand(tokens, stageGlobs, input, output, stderr());
+        }
+
+        // applied left to right: "> f 2>&1" sends both streams to f, "2>&1 > f" only stdout
+        List<ChannelOutput> files = new ArrayList<>(stageRedirections.size());
+        List<String> targets = new ArrayList<>(stageRedirections.size());
+        int status;
+        InputStream stageInput = input;
+        PrintStream stageOutput = output;
+        PrintStream errors = stderr();
+        ShellEvents.Redirection event = new ShellEvents.Redirection();
+        event.begin();
+        try {
+            for (CommandLine.Redirection redirection : stageRedirections) {
+                CommandLine.Redirection.Type type = redirection.type();
+                if (type == CommandLine.Redirection.Type.ERROR_TO_OUTPUT) {
+                    errors = stageOutput;
+                    continue;
+                }
+                if (type == CommandLine.Redirection.Type.INPUT || type == CommandLine.Redirection.Type.HEREDOC) {
+                    if (stageInput != input) closeQuietly(stageInput);
+                    try {
+                        stageInput = openInput(redirection);
+                    } catch (NoSuchFileException e) {
+                        stageInput = input;
+                        errors.println("File does not exist: " + redirection.target());
+                        return 1;
+                    } catch (IOException e) {
+                        stageInput = input;
+                        errors.println("Error reading file: " + e.getMessage());
+                        return 1;
+                    }
+                    continue;
+                }
+                boolean append = type == CommandLine.Redirection.Type.APPEND
+                        || type == CommandLine.Redirection.Type.ERROR_APPEND;
+                ChannelOutput file;
+                try {
+                    file = openOutputFile(redirection.target(), append);
+                } catch (IOException e) {
+                    errors.println("Error writing to file: " + e.getMessage());
+                    return 1;
+                }
+                files.add(file);
+                targets.add(redirection.target());
+                if (type == CommandLine.Redirection.Type.OUTPUT || type == CommandLine.Redirection.Type.APPEND) {
+                    stageOutput = file;
+                } else {
+                    errors = file;
+                }
+            }
+            status = executeCommand(tokens, stageGlobs, stageInput, stageOutput, errors);
+        } finally {
+            if (stageInput != input) {
+                closeQuietly(stageInput);
+            }
+            for (int i = 0; i < files.size(); i++) {
+                // a PrintStream keeps write failures to itself, so this is where a full disk shows
+                files.get(i).close();
+                if (files.get(i).checkError()) {
+                    stderr().println("Error writing to file: " + targets.get(i));
+                    status = 1;
+                }
+            }
+            if (stageOutput != output) {
+                run.redirected = true;
+                run.bytesWritten = ((ChannelOutput) stageOutput).getBytesWritten();
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                for (int i = 0, f = 0; i < stageRedirections.size() && f < files.size(); i++) {
+                    CommandLine.Redirection redirection = stageRedirections.get(i);
+                    if (redirection.target() == null || redirection.type() == CommandLine.Redirection.Type.INPUT
+                            || redirection.type() == CommandLine.Redirection.Type.HEREDOC) {
+                        continue;
+                    }
+                    event.path = redirection.target();
+                    event.append = redirection.type() == CommandLine.Redirection.Type.APPEND
+                            || redirection.type() == CommandLine.Redirection.Type.ERROR_APPEND;
+                    event.bytesWritten = files.get(f++).getBytesWritten();
+                    event.commit();
+                }
+            }
+        }
+        return status;
+    }
+
+    /** The input of a {@code <} file, or of a {@code <<} here-document read from the session. */
+    private InputStream openInput(CommandLine.Redirection redirection) throws IOException {
+        if (redirection.type() == CommandLine.Redirection.Type.HEREDOC) {
+            return stdin().hereDocument(redirection.target());
+        }
+        Path path = currentDirectory.resolve(redirection.target());
+        return new ChannelInput(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    private void finish(StageRun run) {
+        run.event.end();
+        run.nanos = System.nanoTime() - run.start;
+        if (run.status != STATUS_NOT_FOUND) {
+            stats.record(run.name(), run.nanos, run.bytesRead, run.bytesWritten);
+        }
+        if (run.event.shouldCommit()) {
+            run.event.command = run.name();
+            run.event.index = run.index;
+            run.event.status = run.status;
+            run.event.bytesRead = run.bytesRead;
+            run.event.bytesWritten = run.bytesWritten;
+            run.event.commit();
+        }
+    }
+
+    private static List<CommandLine.Stage> withoutTimePrefix(List<CommandLine.Stage> pipeCommands) {
+        CommandLine.Stage first = pipeCommands.get(0);
+        List<String> argv = first.argv().subList(1, first.argv().size());
+        if (argv.isEmpty()) {
+            return pipeCommands.subList(1, pipeCommands.size());
+        }
+        String[] globs = first.globs();
+        List<String> argvGlobs = globs == null
+                ? Collections.nCopies(argv.size(), null) : Arrays.asList(globs).subList(1, globs.length);
+        List<CommandLine.Stage> stages = new ArrayList<>(pipeCommands);
+        stages.set(0, new CommandLine.Stage(argv, argvGlobs, first.redirections()));
+        return stages;
+    }
+
+    private void printTimes(long parseNanos, long totalNanos, StageRun[] runs) {
+        PrintStream err = stderr();
+        err.printf("%-10s %10.3f ms%n", "parse", parseNanos / 1e6);
+        for (StageRun run : runs) {
+            err.printf("%-10s %10.3f ms  read %d B  written %d B%n",
+                    run.name(), run.nanos / 1e6, run.bytesRead, run.bytesWritten);
+        }
+        err.printf("%-10s %10.3f ms%n", "real", totalNanos / 1e6);
+    }
+
+    /** Timing and byte counts of one pipeline stage, filled in by the thread that runs it. */
+    private static final class StageRun {
+        final CommandLine.Stage stage;
+        final int index;
+        final ShellEvents.Stage event = new ShellEvents.Stage();
+        final long start;
+        int status;
+        long nanos;
+        long bytesRead;
+        long bytesWritten;
+        boolean redirected;
+
+        StageRun(CommandLine.Stage stage, int index) {
+            this.stage = stage;
+            this.index = index;
+            this.start = System.nanoTime();
+            event.begin();
+        }
+
+        String name() {
+            return stage.argv().get(0);
+        }
+    }
+
+    /** Help text is only built the first time someone asks for it. */
+    private static final class HelpText {
+        static final String TEXT = String.join(System.lineSeparator(),
+                "Available commands:",
+                "  help                 : Show this help message.",
+                "  pwd                  : Print the current directory.",
+                "  cd                   : Change directory to home directory.",
+                "  cd <dir>             : Change directory to <dir>.",
+                "  cd <..>              : Change directory to previous directory.",
+                "  ls                   : List files in the directory.",
+                "  ls -a                : List all files, including hidden ones.",
+                "  ls -r                : List files in reverse order.",
+                "  ls -l                : Long format: permissions, owner, group, size, time.",
+                "  ls -lh               : Long format with sizes in K, M, G.",
+                "  ls -S / -t           : Sort by size / modification time, largest or newest first.",
+                "  ls -U                : Do not sort; stream entries as they are read.",
+                "  ls <path>...         : List the given files, then the contents of the given directories.",
+                "  mkdir <dir>...       : Create directories, with any missing parents.",
+                "  rmdir <dir>...       : Remove empty directories.",
+                "  touch <file>...      : Create new files.",
+                "  mv <src> <dst>       : Move or rename a file or directory, across file systems too.",
+                "  mv <src>... <dir>    : Move files into a directory; -t <dir> names it first.",
+                "  rm <file>...         : Remove files.",
+                "  rm -r <path>...      : Remove directories and everything in them, in parallel.",
+                "  cp [-r] <src>... <dst> : Copy files, or directory trees with -r, in parallel; also -t <dir>.",
+                "  --progress           : With rm, cp and mv: report counts to stderr every second.",
+                "  *.txt ?.log [ab]* {x,y}.c : Globs in arguments, expanded to the sorted matching paths;",
+                "                         **/ matches any depth. A glob matching nothing is kept as typed.",
+                "  grep [-rcl] <pattern> [path...] : Print lines matching a regex; -r directories,",
+                "                         -c count per file, -l file names only. Reads input in a pipe.",
+                "  find [dir] [tests]   : List paths under dir passing every test: -name <glob>,",
+                "                         -type f|d|l, -size [+-]N[ckMG], -newer <file>.",
+                "  head [-n N] <file>   : Print the first N lines (default 10), of input in a pipe.",
+                "  tail [-n N] <file>   : Print the last N lines, reading the file from its end.",
+                "  tail -f <file>       : Print the last lines, then follow whatever is appended.",
+                "  wc [-lwc] <file>...  : Count lines, words and bytes, of input in a pipe.",
+                "  sha256sum <file>...  : Print SHA-256 checksums, hashing the files in parallel; also md5sum.",
+                "  crc32 <file>...      : Print CRC-32 checksums; crc32c for CRC-32C. Large files are split.",
+                "  du [-s] [-h] [path]  : Show the size of each directory below path; -s totals only.",
+                "  sort [-rnu] [-k N[,M]] [-S size] [-T dir] [file...] : Sort lines, spilling to",
+                "                         temp files in dir beyond size bytes of memory.",
+                "  uniq [-c] [file]     : Drop repeated adjacent lines; -c prefixes each with its count.",
+                "  cat <file>           : Display file contents.",
+                "  less [file]          : Show a file or input a screen at a time (Space, Enter, q); also more.",
+                "  cat > <file>         : Write input to a file until 'Exit' or end of input (Ctrl-D).",
+                "  command1 | command2  : Pipe the output of command1 to command2.",
+                "  ... | xargs [-n N] [-P workers] <cmd> [args] : Run a file command such as rm, cp,",
+                "                         cat or wc on N input lines at a time",
+                "                         (default 1000), with up to workers batches at once.",
+                "  command > file       : Redirect output to a file, overwriting it.",
+                "  command >> file      : Redirect output to a file, appending to it.",
+                "  command < file       : Read input from a file.",
+                "  command <<END        : Read input from the lines that follow, up to a line reading END.",
+                "  command 2> file      : Redirect error output (such as --progress) to a file; 2>> appends.",
+                "  command > file 2>&1  : Send error output wherever output goes at that point.",
+                "  command1 ; command2  : Run command1, then command2.",
+                "  command1 && command2 : Run command2 only if command1 succeeded.",
+                "  command &            : Run command in the background; its output is held until waited for.",
+                "  jobs                 : List background jobs with their state and elapsed time.",
+                "  wait [%n...]         : Wait for the given jobs, or all of them, printing their output.",
+                "  fg [%n]              : Wait for one job, the most recent by default, streaming its output.",
+                "  history [N]          : Show the last N commands, all of them by default.",
+                "  history -s <text>    : Show past commands containing text.",
+                "  !! / !n / !-n        : Rerun the last command / command n / the nth last one.",
+                "  !prefix              : Rerun the latest command starting with prefix.",
+                "  time <command>       : Run command, then print parse, per-stage and total time.",
+                "  stats [reset]        : Show (or clear) per-command latency and byte counts.",
+                "  cache on|off         : Cache listings and attributes for this session.",
+                "  cache stats|clear    : Show cache hit rates / drop everything cached.",
+                "  Tab                  : Complete a command or path; a second Tab lists the choices.",
+                "  exit                 : Exit the CLI.",
+                "");
+    }
+
+    private int displayHelp(PrintStream output) {
+        output.print(HelpText.TEXT);
+        return 0;
+    }
+
+    /** The commands {@link #executeCommand} runs, for completion; keep in step with its switch. */
+    static final List<String> COMMANDS = List.of("help", "pwd", "cd", "ls", "mkdir", "rmdir", "touch", "mv",
+            "rm", "cp", "grep", "find", "head", "tail", "wc", "sort", "uniq", "cat", "stats", "cache", "jobs",
+            "history", "wait", "fg", "sha256sum", "md5sum", "crc32", "crc32c", "du", "less", "more", "xargs");
+
+    private static final class CommandNames {
+        static final NameTrie TRIE = new NameTrie();
+
+        static {
+            for (String command : COMMANDS) TRIE.add(command);
+            TRIE.add("time");
+            TRIE.add("exit");
+        }
+    }
+
+    /**
+     * Runs one command. {@code globs} holds the pattern of each word that has one, or is null if
+     * none does; the words are expanded here, except by {@code rm}, which streams its matches.
+     */
+    private int executeCommand(String[] tokens, String[] globs, InputStream input, PrintStream output,
+                               PrintStream errors) {
+        String command = tokens[0];
+        if (globs != null && !command.equals("rm")) {
+            tokens = this.globs.expand(tokens, globs, currentDirectory);
+        }
+
+        switch (command) {
+            case "help":
+                return displayHelp(output);
+            case "pwd":
+                return pwd(output);
+            case "cd":
+                return cd(tokens, output, errors);
+            case "ls":
+                return ls(tokens, output, errors);
+            case "mkdir":
+                return mkdir(tokens, output, errors);
+            case "rmdir":
+                return rmdir(tokens, output, errors);
+            case "touch":
+                return touch(tokens, output, errors);
+            case "mv":
+                return mv(tokens, output, errors);
+            case "rm":
+                return rm(tokens, globs, output, errors);
+            case "cp":
+                return cp(tokens, output, errors);
+            case "grep":
+                return grep(tokens, input, output, errors);
+            case "find":
+                return find(tokens, output, errors);
+            case "head":
+                return head(tokens, input, output, errors);
+            case "tail":
+                return tail(tokens, input, output, errors);
+            case "wc":
+                return wc(tokens, input, output, errors);
+            case "sort":
+                return sort(tokens, input, output, errors);
+            case "uniq":
+                return uniq(tokens, input, output, errors);
+            case "cat":
+                return cat(tokens, input, output, errors);
+            case "stats":
+                return stats(tokens, output, errors);
+            case "cache":
+                return cache(tokens, output, errors);
+            case "jobs":
+                return jobs(tokens, output, errors);
+            case "history":
+                return history(tokens, output, errors);
+            case "wait":
+                return waitForJobs(tokens, output, errors);
+            case "fg":
+                return fg(tokens, output, errors);
+            case "sha256sum":
+            case "md5sum":
+            case "crc32":
+            case "crc32c":
+                return checksum(tokens, FileChecksum.Algorithm.forCommand(command), input, output, errors);
+            case "du":
+                return du(tokens, output, errors);
+            case "less":
+            case "more":
+                return less(tokens, input, output, errors);
+            case "xargs":
+                return xargs(tokens, input, output, errors);
+            default:
+                errors.append("Unknown command: ").append(command).append(System.lineSeparator());
+                return STATUS_NOT_FOUND;
+        }
+    }
+
+    private int stats(String[] tokens, PrintStream output, PrintStream errors) {
+        if (tokens.length == 1) {
+            stats.print(output);
+        } else if (tokens.length == 2 && tokens[1].equals("reset")) {
+            stats.reset();
+        } else {
+            errors.append("Usage: stats [reset]").append(System.lineSeparator());
+            return 2;
+        }
+        return 0;
+    }
+
+    private int cache(String[] tokens, PrintStream output, PrintStream errors) {
+        String action = tokens.length == 2 ? tokens[1] : "";
+        switch (action) {
+            case "on":
+                cache.setEnabled(true);
+                return 0;
+            case "off":
+                cache.setEnabled(false);
+                return 0;
+            case "clear":
+                cache.clear();
+                completer.clear();
+                return 0;
+            case "stats":
+                cache.printStats(output);
+                output.printf("%-13s %10d names%n", "completion", completer.cachedNames());
+                return 0;
+            default:
+                errors.append("Usage: cache on|off|clear|stats").append(System.lineSeparator());
+                return 2;
+        }
+    }
+
+    /** {@code history [N]} prints the last N entries, all by default; {@code history -s <text>} searches. */
+    private int history(String[] tokens, PrintStream output, PrintStream errors) {
+        if (history == null) {
+            errors.append("History is not enabled in this session").append(System.lineSeparator());
+            return 1;
+        }
+        if (tokens.length == 3 && tokens[1].equals("-s")) {
+            history.search(tokens[2], output);
+            return 0;
+        }
+        int count = Integer.MAX_VALUE;
+        try {
+            if (tokens.length == 2) {
+                count = Integer.parseInt(tokens[1]);
+            }
+        } catch (NumberFormatException e) {
+            count = -1;
+        }
+        if (tokens.length > 2 || count < 0) {
+            errors.append("Usage: history [N] | history -s <text>").append(System.lineSeparator());
+            return 2;
+        }
+        history.print(count, output);
+        return 0;
+    }
+
+    private int jobs(String[] tokens, PrintStream output, PrintStream errors) {
+        if (tokens.length != 1) {
+            errors.append("Usage: jobs").append(System.lineSeparator());
+            return 2;
+        }
+        jobs.list(output);
+        return 0;
+    }
+
+    /** {@code wait [%n...]}: joins the given jobs, or all of them, in order. */
+    private int waitForJobs(String[] tokens, PrintStream output, PrintStream errors) {
+        List<Integer> ids = new ArrayList<>();
+        try {
+            if (tokens.length == 1) {
+                ids.addAll(jobs.ids());
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                ids.add(jobs.find(tokens[i]));
+            }
+            int status = 0;
+            for (int id : ids) {
+                status = jobs.join(id, output);
+            }
+            return tokens.length == 1 ? 0 : status;
+        } catch (IllegalArgumentException e) {
+            errors.append(e.getMessage()).append(System.lineSeparator());
+            return STATUS_NOT_FOUND;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return STATUS_INTERRUPTED;
+        }
+    }
+
+    /** {@code fg [%n]}: joins one job, the most recent by default, and returns its status. */
+    private int fg(String[] tokens, PrintStream output, PrintStream errors) {
+        if (tokens.length > 2) {
+            errors.append("Usage: fg [%n]").append(System.lineSeparator());
+            return 2;
+        }
+        try {
+            return jobs.join(jobs.find(tokens.length == 2 ? tokens[1] : null), output);
+        } catch (IllegalArgumentException e) {
+            errors.append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return STATUS_INTERRUPTED;
+        }
+    }
+
+    private int pwd(PrintStream output) {
+        output.append(currentDirectory.toString()).append(System.lineSeparator());
+        return 0;
+    }
+
+    private int cd(String[] tokens, PrintStream output, PrintStream errors) {
+        if (tokens.length == 1) {
+            currentDirectory = home;
+            redirections.closeAll();
+        } else if (tokens[1].equals(".")) {
+            output.append(System.lineSeparator());
+        } else {
+            Path newPath = tokens[1].equals("..") ? currentDirectory.getParent() : currentDirectory.resolve(tokens[1]);
+            if (newPath != null && isDirectory(newPath)) {
+                currentDirectory = newPath;
+                redirections.closeAll();
+            } else {
+                errors.append("Directory does not exist: ").append(tokens[1]).append(System.lineSeparator());
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * {@code ls [-alhrStU] [path...]}: operands that are files are listed first, by the names
+     * given, then each directory, under a {@code dir:} header when there is more than one operand.
+     */
+    public int ls(String[] tokens, PrintStream output, PrintStream errors) {
+        DirectoryLister lister = new DirectoryLister();
+        List<String> operands = new ArrayList<>();
+
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.startsWith("-") && token.length() > 1) {
+                for (int j = 1; j < token.length(); j++) {
+                    if (!lister.option(token.charAt(j))) {
+                        errors.append("Unknown option for ls: ").append(token).append(System.lineSeparator());
+                        return 2;
+                    }
+                }
+            } else {
+                operands.add(token);
+            }
+        }
+        if (operands.isEmpty()) {
+            return listDirectory(lister, currentDirectory, output, errors);
+        }
+
+        int status = 0;
+        List<Path> files = new ArrayList<>();
+        List<String> fileNames = new ArrayList<>();
+        List<String> directories = new ArrayList<>();
+        for (String operand : operands) {
+            Path path = currentDirectory.resolve(operand);
+            try {
+                BasicFileAttributes attributes = cache.attributes(path);
+                if (attributes == null) {
+                    errors.append("File does not exist: ").append(operand).append(System.lineSeparator());
+                    status = 1;
+                } else if (cache.isDirectory(path)) {
+                    directories.add(operand);
+                } else {
+                    files.add(path);
+                    fileNames.add(operand);
+                }
+            } catch (IOException e) {
+                errors.append("Error listing directory: ").append(e.getMessage()).append(System.lineSeparator());
+                status = 1;
+            }
+        }
+        lister.listFiles(files, fileNames, cache, output);
+        boolean headers = operands.size() > 1;
+        boolean first = files.isEmpty();
+        for (String directory : directories) {
+            if (headers) {
+                if (!first) output.append(System.lineSeparator());
+                output.append(directory).append(':').append(System.lineSeparator());
+            }
+            first = false;
+            status = Math.max(status, listDirectory(lister, currentDirectory.resolve(directory), output, errors));
+        }
+        return status;
+    }
+
+    private int listDirectory(DirectoryLister lister, Path directory, PrintStream output, PrintStream errors) {
+        try {
+            lister.list(directory, cache, output);
+        } catch (IOException e) {
+            errors.append("Error listing directory: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        }
+        return 0;
+    }
+
+    public int mkdir(String[] tokens, PrintStream output, PrintStream errors) {
+        if (tokens.length < 2) {
+            errors.append("Usage: mkdir <dir>...").append(System.lineSeparator());
+            return 2;
+        }
+        int status = 0;
+        for (int i = 1; i < tokens.length; i++) {
+            status = Math.max(status, createDirectory(tokens[i], errors));
+        }
+        return status;
+    }
+
+    private int createDirectory(String operand, PrintStream errors) {
+        Path dirToCreate = currentDirectory.resolve(operand);
+        try {
+            Files.createDirectories(dirToCreate);
+        } catch (IOException e) {
+            errors.append("Error creating directory: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        } finally {
+            // createDirectories may have made any of the missing ancestors too
+            for (Path created = dirToCreate; created != null; created = created.getParent()) {
+                changed(created);
+            }
+        }
+        return 0;
+    }
+
+    public int rmdir(String[] tokens, PrintStream output, PrintStream errors) {
+        if (tokens.length < 2) {
+            errors.append("Usage: rmdir <dir>...").append(System.lineSeparator());
+            return 2;
+        }
+        int status = 0;
+        for (int i = 1; i < tokens.length; i++) {
+            status = Math.max(status, removeDirectory(tokens[i], errors));
+        }
+        return status;
+    }
+
+    private int removeDirectory(String operand, PrintStream errors) {
+        Path dirToRemove = currentDirectory.resolve(operand);
+        try {
+            if (cache.exists(dirToRemove)) {
+                if (cache.isDirectory(dirToRemove) && !isEmptyDirectory(dirToRemove)) {
+                    errors.append("Directory not empty: ").append(operand).append(System.lineSeparator());
+                    return 1;
+                }
+                Files.delete(dirToRemove);
+                changed(dirToRemove);
+            } else {
+                errors.append("Directory does not exist: ").append(operand).append(System.lineSeparator());
+                return 1;
+            }
+        } catch (IOException e) {
+            errors.append("Error removing directory: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        }
+        return 0;
+    }
+
+    private int touch(String[] tokens, PrintStream output, PrintStream errors) {
+        if (tokens.length < 2) {
+            errors.append("Usage: touch <file>...").append(System.lineSeparator());
+            return 2;
+        }
+        int status = 0;
+        for (int i = 1; i < tokens.length; i++) {
+            Path fileToCreate = currentDirectory.resolve(tokens[i]);
+            try {
+                Files.createFile(fileToCreate);
+                changed(fileToCreate);
+            } catch (IOException e) {
+                errors.append("Error creating file: ").append(e.getMessage()).append(System.lineSeparator());
+                status = 1;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * {@code mv <src> <dst>}, or {@code mv <src>... <dir>}: with a directory as the target,
+     * every source is moved into it. {@code -t <dir>} names the target first, as {@code xargs}
+     * needs to append the sources.
+     */
+    private int mv(String[] tokens, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        Set<String> flags = options(targetLast(tokens), "", operands, errors);
+        if (flags == null) return 2;
+        if (operands.size() < 2) {
+            errors.append("Usage: mv [--progress] <src>... <dst> | -t <dir> <src>...").append(System.lineSeparator());
+            return 2;
+        }
+        String targetOperand = operands.remove(operands.size() - 1);
+        Path target = currentDirectory.resolve(targetOperand);
+        boolean intoDirectory = isDirectory(target);
+        if (operands.size() > 1 && !intoDirectory) {
+            errors.append("Not a directory: ").append(targetOperand).append(System.lineSeparator());
+            return 1;
+        }
+        PrintStream progress = flags.contains("--progress") ? errors : null;
+        int status = 0;
+        for (String operand : operands) {
+            Path source = currentDirectory.resolve(operand);
+            Path destination = intoDirectory ? target.resolve(source.getFileName().toString()) : target;
+            status = Math.max(status, move(source, destination, progress, errors));
+            if (status == STATUS_INTERRUPTED) break;
+        }
+        return status;
+    }
+
+    private int move(Path source, Path target, PrintStream progress, PrintStream errors) {
+        try {
+            if (FileTreeWalker.sameFileStore(source, target)) {
+                Files.move(source, target);
+            } else {
+                // a rename cannot cross devices: copy the whole tree, then delete the original
+                int status = report(FileTreeWalker.copyForMove(source, target, progress), "Error moving file: ", errors);
+                if (status == 0) {
+                    status = report(FileTreeWalker.delete(source, progress), "Error moving file: ", errors);
+                }
+                return status;
+            }
+        } catch (IOException e) {
+            errors.append("Error moving file: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return STATUS_INTERRUPTED;
+        } finally {
+            changedTree(source);
+            changedTree(target);
+        }
+        return 0;
+    }
+
+    /**
+     * {@code tokens} with a {@code -t <dir>} option moved to the end, where {@code mv} and
+     * {@code cp} expect their target; a {@code -t} with no directory after it is left as it is,
+     * to be reported as an unknown option.
+     */
+    private static String[] targetLast(String[] tokens) {
+        for (int i = 1; i < tokens.length - 1; i++) {
+            if (tokens[i].equals("-t")) {
+                List<String> moved = new ArrayList<>(Arrays.asList(tokens));
+                String target = moved.remove(i + 1);
+                moved.remove(i);
+                moved.add(target);
+                return moved.toArray(new String[0]);
+            }
+        }
+        return tokens;
+    }
+
+    private int rm(String[] tokens, String[] globs, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        Set<String> flags = options(tokens, "rR", operands, errors);
+        if (flags == null) return 2;
+        if (operands.isEmpty()) {
+            errors.append("Usage: rm [-r] [--progress] <file>...").append(System.lineSeparator());
+            return 2;
+        }
+        boolean recursive = flags.contains("-r") || flags.contains("-R");
+        PrintStream progress = flags.contains("--progress") ? errors : null;
+        int status = 0;
+        for (int i = 1; i < tokens.length; i++) {
+            String operand = tokens[i];
+            if (operand.startsWith("-") && operand.length() > 1) {
+                continue; // an option, parsed above
+            }
+            String glob = globs == null ? null : globs[i];
+            status = Math.max(status, glob != null
+                    ? removeMatches(operand, glob, recursive, progress, errors)
+                    : remove(operand, recursive, progress, errors));
+        }
+        return status;
+    }
+
+    private int remove(String operand, boolean recursive, PrintStream progress, PrintStream errors) {
+        return recursive ? removeTree(operand, progress, errors) : removeFile(operand, errors);
+    }
+
+    /**
+     * Removes each match of {@code glob} as soon as the walk finds it, so even a {@code **} over
+     * a huge tree never holds the list of matches; a directory that matches is not walked into.
+     * A glob matching nothing is removed as typed, which reports it missing.
+     */
+    private int removeMatches(String operand, String glob, boolean recursive, PrintStream progress,
+                              PrintStream errors) {
+        Thread caller = Thread.currentThread();
+        AtomicInteger status = new AtomicInteger();
+        long matches = globs.forEach(currentDirectory, glob, recursive, (path, display) -> {
+            int result = caller.isInterrupted() ? STATUS_INTERRUPTED : remove(display, recursive, progress, errors);
+            status.accumulateAndGet(result, Math::max);
+        });
+        return matches == 0 ? remove(operand, recursive, progress, errors) : status.get();
+    }
+
+    private int removeFile(String operand, PrintStream errors) {
+        Path fileToRemove = currentDirectory.resolve(operand);
+        try {
+            // Check if the file exists before trying to delete it
+            if (cache.exists(fileToRemove)) {
+                Files.delete(fileToRemove);
+                changed(fileToRemove);
+            } else {
+                errors.println("File does not exist: " + operand);
+                return 1;
+            }
+        } catch (NoSuchFileException e) {
+            errors.println("File does not exist: " + operand);
+            return 1;
+        } catch (IOException e) {
+            errors.println("Error removing file: " + e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+
+    private int removeTree(String operand, PrintStream progress, PrintStream errors) {
+        Path root = currentDirectory.resolve(operand);
+        try {
+            if (!cache.exists(root)) {
+                errors.println("File does not exist: " + operand);
+                return 1;
+            }
+            return report(FileTreeWalker.delete(root, progress), "Error removing file: ", errors);
+        } catch (IOException e) {
+            errors.println("Error removing file: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return STATUS_INTERRUPTED;
+        } finally {
+            changedTree(root);
+        }
+    }
+
+    /** {@code cp [-r] <src> <dst>}, or {@code cp [-r] <src>... <dir>}; {@code -t <dir>} as for {@code mv}. */
+    private int cp(String[] tokens, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        Set<String> flags = options(targetLast(tokens), "rR", operands, errors);
+        if (flags == null) return 2;
+        if (operands.size() < 2) {
+            errors.append("Usage: cp [-r] [--progress] <src>... <dst> | -t <dir> <src>...").append(System.lineSeparator());
+            return 2;
+        }
+        String targetOperand = operands.remove(operands.size() - 1);
+        Path target = currentDirectory.resolve(targetOperand);
+        if (operands.size() > 1 && !isDirectory(target)) {
+            errors.append("Not a directory: ").append(targetOperand).append(System.lineSeparator());
+            return 1;
+        }
+        boolean recursive = flags.contains("-r") || flags.contains("-R");
+        PrintStream progress = flags.contains("--progress") ? errors : null;
+        int status = 0;
+        for (String operand : operands) {
+            status = Math.max(status, copy(operand, target, recursive, progress, errors));
+            if (status == STATUS_INTERRUPTED) break;
+        }
+        return status;
+    }
+
+    private int copy(String operand, Path target, boolean recursive, PrintStream progress, PrintStream errors) {
+        Path source = currentDirectory.resolve(operand);
+        try {
+            BasicFileAttributes attributes = cache.attributes(source);
+            if (attributes == null) {
+                errors.append("File does not exist: ").append(operand).append(System.lineSeparator());
+                return 1;
+            }
+            if (cache.isDirectory(target)) {
+                target = target.resolve(source.getFileName().toString());
+            }
+            if (attributes.isDirectory()) {
+                if (!recursive) {
+                    errors.append("Is a directory (use cp -r): ").append(operand).append(System.lineSeparator());
+                    return 1;
+                }
+                if (target.toAbsolutePath().normalize().startsWith(source.toAbsolutePath().normalize())) {
+                    errors.append("Cannot copy a directory into itself: ").append(operand).append(System.lineSeparator());
+                    return 1;
+                }
+            }
+            return report(FileTreeWalker.copy(source, target, progress), "Error copying file: ", errors);
+        } catch (IOException e) {
+            errors.append("Error copying file: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return STATUS_INTERRUPTED;
+        } finally {
+            changedTree(target);
+        }
+    }
+
+    /**
+     * Prints the checksum of each file, in the order given, while later ones are still being
+     * computed: at most {@link #CHECKSUMS_IN_FLIGHT} files are worked on at once.
+     */
+    private int checksum(String[] tokens, FileChecksum.Algorithm algorithm, InputStream input, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        Set<String> flags = options(tokens, "", operands, errors);
+        if (flags == null) return 2;
+        if (!flags.isEmpty() || operands.isEmpty() && input == null) {
+            errors.append("Usage: ").append(tokens[0]).append(" <file>...").append(System.lineSeparator());
+            return 2;
+        }
+        if (operands.isEmpty()) {
+            try {
+                output.println(FileChecksum.of(input, algorithm) + "  -");
+            } catch (IOException e) {
+                errors.append("Error reading input: ").append(e.getMessage()).append(System.lineSeparator());
+                return 1;
+            }
+            return 0;
+        }
+
+        int status = 0;
+        Deque<RecursiveTask<String>> inFlight = new ArrayDeque<>();
+        int started = 0;
+        try {
+            for (String operand : operands) {
+                while (started < operands.size() && inFlight.size() < CHECKSUMS_IN_FLIGHT) {
+                    inFlight.add(FileChecksum.start(currentDirectory.resolve(operands.get(started++)), algorithm));
+                }
+                try {
+                    output.println(FileChecksum.join(inFlight.remove()) + "  " + operand);
+                } catch (NoSuchFileException e) {
+                    errors.append("File does not exist: ").append(operand).append(System.lineSeparator());
+                    status = 1;
+                } catch (IOException e) {
+                    errors.append("Error reading file: ").append(e.getMessage()).append(System.lineSeparator());
+                    status = 1;
+                }
+            }
+        } catch (InterruptedException e) {
+            for (RecursiveTask<String> task : inFlight) {
+                task.cancel(false);
+            }
+            Thread.currentThread().interrupt();
+            return STATUS_INTERRUPTED;
+        }
+        return status;
+    }
+
+    /**
+     * {@code du [-sh] [path]...}: the total size of the files below each path, in kilobytes
+     * rounded up, or human-readable with {@code -h}. Without {@code -s} every directory is
+     * listed, each after everything below it, in the order the parallel walk finishes them.
+     */
+    private int du(String[] tokens, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        Set<String> flags = options(tokens, "sh", operands, errors);
+        if (flags == null) return 2;
+        if (operands.isEmpty()) {
+            operands.add(".");
+        }
+        boolean human = flags.contains("-h");
+        PrintStream progress = flags.contains("--progress") ? errors : null;
+        int status = 0;
+        for (String operand : operands) {
+            Path root = currentDirectory.resolve(operand);
+            try {
+                BasicFileAttributes attributes = cache.attributes(root);
+                if (attributes == null) {
+                    errors.append("File does not exist: ").append(operand).append(System.lineSeparator());
+                    status = 1;
+                    continue;
+                }
+                boolean summarize = flags.contains("-s") || !attributes.isDirectory();
+                FileTreeWalker.DirectoryTotals totals = summarize ? null
+                        : (directory, bytes) -> output.println(usage(bytes, human) + "\t" + display(operand, root, directory));
+                FileTreeWalker.Result result = FileTreeWalker.size(root, totals, progress);
+                status = Math.max(status, report(result, "Error reading: ", errors));
+                if (summarize) {
+                    output.println(usage(result.getBytes(), human) + "\t" + operand);
+                }
+            } catch (IOException e) {
+                errors.append("Error reading: ").append(e.getMessage()).append(System.lineSeparator());
+                status = 1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return STATUS_INTERRUPTED;
+            }
+        }
+        return status;
+    }
+
+    private static String usage(long bytes, boolean human) {
+        return human ? DirectoryLister.humanSize(bytes) : Long.toString((bytes + 1023) / 1024);
+    }
+
+    /** {@code directory} as reached from {@code operand}, the way {@code du} names it. */
+    private static String display(String operand, Path root, Path directory) {
+        if (directory.equals(root)) return operand;
+        String relative = root.relativize(directory).toString();
+        return operand.endsWith("/") ? operand + relative : operand + "/" + relative;
+    }
+
+    /**
+     * {@code less [file]}: pages a file or the stage's input, when it is the last stage writing to
+     * a TTY; anywhere else it passes everything through, like {@code cat}.
+     */
+    private int less(String[] tokens, InputStream input, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        Set<String> flags = options(tokens, "", operands, errors);
+        if (flags == null) return 2;
+        if (!flags.isEmpty() || operands.size() > 1 || operands.isEmpty() && input == null) {
+            errors.append("Usage: less [file]").append(System.lineSeparator());
+            return 2;
+        }
+        boolean paging = terminalIsTty && stdout == null && output == countedTerminal;
+        if (operands.isEmpty()) {
+            try {
+                Pager.page(input, output, paging);
+            } catch (IOException e) {
+                errors.append("Error reading input: ").append(e.getMessage()).append(System.lineSeparator());
+                return 1;
+            }
+            return 0;
+        }
+        String operand = operands.get(0);
+        try (InputStream file = Files.newInputStream(currentDirectory.resolve(operand))) {
+            Pager.page(file, output, paging);
+        } catch (NoSuchFileException e) {
+            errors.append("File does not exist: ").append(operand).append(System.lineSeparator());
+            return 1;
+        } catch (IOException e) {
+            errors.append("Error reading file: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * {@code xargs [-n N] [-P workers] <command> [arg...]}: runs a built-in with each N lines of
+     * its input appended to its arguments, one argument per non-blank line. Only the
+     * {@link #XARGS_COMMANDS} can be run. Up to {@code workers} batches
+     * run at once, each on its own virtual thread, with output and failures held per batch and
+     * printed as one block, in input order; a batch that failed is summed up after its block.
+     * At most twice as many batches as workers are read ahead. Returns the highest status.
+     */
+    private int xargs(String[] tokens, InputStream input, PrintStream output, PrintStream errors) {
+        int batchSize = XARGS_BATCH_SIZE;
+        int workers = 1;
+        int first = 1;
+        try {
+            for (; first + 1 < tokens.length && (tokens[first].equals("-n") || tokens[first].equals("-P")); first += 2) {
+                int value = Integer.parseInt(tokens[first + 1]);
+                if (value < 1) throw new NumberFormatException();
+                if (tokens[first].equals("-n")) {
+                    batchSize = value;
+                } else {
+                    workers = value;
+                }
+            }
+        } catch (NumberFormatException e) {
+            first = tokens.length;
+        }
+        if (first >= tokens.length || input == null) {
+            errors.append("Usage: xargs [-n N] [-P workers] <command> [arg...]").append(System.lineSeparator());
+            return 2;
+        }
+        if (!XARGS_COMMANDS.contains(tokens[first])) {
+            errors.append("Unknown command: ").append(tokens[first]).append(System.lineSeparator());
+            return STATUS_NOT_FOUND;
+        }
+        List<String> command = Arrays.asList(tokens).subList(first, tokens.length);
+
+        Semaphore running = new Semaphore(workers);
+        Deque<Batch> inFlight = new ArrayDeque<>();
+        int status = 0;
+        long lines = 0;
+        long batchStart = 0;
+        long batchEnd = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), COPY_BUFFER_SIZE)) {
+            List<String> arguments = new ArrayList<>(command);
+            String line = "";
+            while (line != null) {
+                line = reader.readLine();
+                if (line != null) {
+                    lines++;
+                    line = line.strip();
+                    if (line.isEmpty()) continue;
+                    if (arguments.size() == command.size()) batchStart = lines;
+                    arguments.add(line);
+                    batchEnd = lines;
+                }
+                int size = arguments.size() - command.size();
+                if (size == batchSize || line == null && size > 0) {
+                    if (inFlight.size() == 2 * workers) {
+                        status = Math.max(status, inFlight.remove().print(output, errors));
+                    }
+                    running.acquire();
+                    inFlight.add(new Batch(arguments.toArray(new String[0]), batchStart, batchEnd, running));
+                    arguments = new ArrayList<>(command);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                status = Math.max(status, inFlight.remove().print(output, errors));
+            }
+        } catch (IOException e) {
+            errors.append("Error reading input: ").append(e.getMessage()).append(System.lineSeparator());
+            status = 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = STATUS_INTERRUPTED;
+        } finally {
+            for (Batch batch : inFlight) {
+                batch.thread.interrupt();
+            }
+        }
+        return status;
+    }
+
+    /** One {@code xargs} run of a command, holding its output and diagnostics until they are printed in turn. */
+    private final class Batch {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        final String[] tokens;
+        final long firstLine;
+        final long lastLine;
+        final Thread thread;
+        volatile int status;
+
+        Batch(String[] tokens, long firstLine, long lastLine, Semaphore running) {
+            this.tokens = tokens;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+            this.thread = Thread.ofVirtual().name("xargs-" + firstLine).start(() -> {
+                try (PrintStream batchOutput = new PrintStream(output, false);
+                     PrintStream batchErrors = new PrintStream(errors, false)) {
+                    status = executeCommand(tokens, null, null, batchOutput, batchErrors);
+                } finally {
+                    running.release();
+                }
+            });
+        }
+
+        /** Waits for the batch and prints its output and diagnostics; returns its status. */
+        int print(PrintStream target, PrintStream diagnostics) throws InterruptedException {
+            thread.join();
+            target.write(output.toByteArray(), 0, output.size());
+            target.flush();
+            diagnostics.write(errors.toByteArray(), 0, errors.size());
+            if (status != 0) {
+                diagnostics.append("xargs: ").append(tokens[0]).append(" exited with status ").append(String.valueOf(status))
+                        .append(" on input lines ").append(String.valueOf(firstLine)).append('-')
+                        .append(String.valueOf(lastLine)).append(System.lineSeparator());
+            }
+            diagnostics.flush();
+            return status;
+        }
+    }
+
+    /** Prints each failure of a tree walk; returns 1 if there were any. */
+    private static int report(FileTreeWalker.Result result, String prefix, PrintStream errors) {
+        List<String> failures = result.getErrors();
+        for (String failure : failures) {
+            errors.append(prefix).append(failure).append(System.lineSeparator());
+        }
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Splits {@code tokens} after the command name into {@code operands} and options. Short
+     * options may be combined ({@code -rR}) and must be in {@code shortOptions}; the only long
+     * option is {@code --progress}. Returns the options seen, or null after reporting an
+     * unknown one.
+     */
+    private static Set<String> options(String[] tokens, String shortOptions, List<String> operands, PrintStream errors) {
+        Set<String> flags = new HashSet<>();
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.equals("--progress")) {
+                flags.add(token);
+            } else if (token.startsWith("-") && token.length() > 1) {
+                for (int j = 1; j < token.length(); j++) {
+                    if (shortOptions.indexOf(token.charAt(j)) < 0) {
+                        errors.append("Unknown option for ").append(tokens[0]).append(": ").append(token)
+                                .append(System.lineSeparator());
+                        return null;
+                    }
+                    flags.add("-" + token.charAt(j));
+                }
+            } else {
+                operands.add(token);
+            }
+        }
+        return flags;
+    }
+
+    public int grep(String[] tokens, InputStream input, PrintStream output, PrintStream errors) {
+        PatternSearch search = new PatternSearch();
+        List<String> operands = new ArrayList<>();
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.startsWith("-") && token.length() > 1 && operands.isEmpty()) {
+                for (int j = 1; j < token.length(); j++) {
+                    if (!search.option(token.charAt(j))) {
+                        errors.append("Unknown option for grep: ").append(token).append(System.lineSeparator());
+                        return 2;
+                    }
+                }
+            } else {
+                operands.add(token);
+            }
+        }
+        if (operands.isEmpty() || operands.size() == 1 && input == null) {
+            errors.append("Usage: grep [-rcl] <pattern> <path>...").append(System.lineSeparator());
+            return 2;
+        }
+
+        LineSearcher searcher;
+        try {
+            searcher = new LineSearcher(operands.get(0));
+        } catch (PatternSyntaxException e) {
+            errors.append("Invalid pattern: ").append(e.getDescription()).append(System.lineSeparator());
+            return 2;
+        }
+        if (operands.size() == 1) {
+            try {
+                return search.search(searcher, input, output, errors);
+            } catch (IOException e) {
+                errors.append("Error reading input: ").append(e.getMessage()).append(System.lineSeparator());
+                return 1;
+            }
+        }
+        return search.search(searcher, currentDirectory, operands.subList(1, operands.size()), output, errors);
+    }
+
+    public int find(String[] tokens, PrintStream output, PrintStream errors) {
+        FileFinder finder = new FileFinder();
+        int i = 1;
+        String operand = ".";
+        if (i < tokens.length && !tokens[i].startsWith("-")) {
+            operand = tokens[i++];
+        }
+        try {
+            while (i < tokens.length) {
+                i = finder.test(tokens, i, currentDirectory);
+            }
+        } catch (IllegalArgumentException e) {
+            errors.append(e.getMessage()).append(System.lineSeparator());
+            errors.append("Usage: find [dir] [-name <glob>] [-type f|d|l] [-size [+-]N[ckMG]] [-newer <file>]")
+                    .append(System.lineSeparator());
+            return 2;
+        } catch (NoSuchFileException e) {
+            errors.append("File does not exist: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        } catch (IOException e) {
+            errors.append("Error reading file: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        }
+        if (!Files.exists(currentDirectory.resolve(operand), LinkOption.NOFOLLOW_LINKS)) {
+            errors.append("File does not exist: ").append(operand).append(System.lineSeparator());
+            return 1;
+        }
+        return finder.find(currentDirectory, operand, output, errors);
+    }
+
+    public int head(String[] tokens, InputStream input, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        long lines = lineCount(tokens, "", new HashSet<>(), operands, errors);
+        if (lines < 0) return 2;
+        if (operands.isEmpty() && input == null) {
+            errors.append("Usage: head [-n N] <file>...").append(System.lineSeparator());
+            return 2;
+        }
+        if (operands.isEmpty()) {
+            try {
+                LineRange.head(input, lines, output);
+            } catch (IOException e) {
+                errors.append("Error reading input: ").append(e.getMessage()).append(System.lineSeparator());
+                return 1;
+            }
+            return 0;
+        }
+        int status = 0;
+        for (String operand : operands) {
+            if (operands.size() > 1) {
+                output.append("==> ").append(operand).append(" <==").append(System.lineSeparator());
+            }
+            try (InputStream file = Files.newInputStream(currentDirectory.resolve(operand))) {
+                LineRange.head(file, lines, output);
+            } catch (NoSuchFileException e) {
+                errors.append("File does not exist: ").append(operand).append(System.lineSeparator());
+                status = 1;
+            } catch (IOException e) {
+                errors.append("Error reading file: ").append(e.getMessage()).append(System.lineSeparator());
+                status = 1;
+            }
+        }
+        return status;
+    }
+
+    public int tail(String[] tokens, InputStream input, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        Set<String> flags = new HashSet<>();
+        long lines = lineCount(tokens, "f", flags, operands, errors);
+        if (lines < 0) return 2;
+        boolean follow = flags.contains("-f");
+        if (operands.isEmpty() && input == null || follow && operands.size() != 1) {
+            errors.append("Usage: tail [-n N] [-f] <file>...").append(System.lineSeparator());
+            return 2;
+        }
+        if (operands.isEmpty()) {
+            try {
+                LineRange.tail(input, lines, output);
+            } catch (IOException e) {
+                errors.append("Error reading input: ").append(e.getMessage()).append(System.lineSeparator());
+                return 1;
+            }
+            return 0;
+        }
+        int status = 0;
+        for (String operand : operands) {
+            if (operands.size() > 1) {
+                output.append("==> ").append(operand).append(" <==").append(System.lineSeparator());
+            }
+            Path file = currentDirectory.resolve(operand);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long position = LineRange.tail(channel, lines, output);
+                if (follow) {
+                    LineRange.follow(file, channel, position, output);
+                }
+            } catch (NoSuchFileException e) {
+                errors.append("File does not exist: ").append(operand).append(System.lineSeparator());
+                status = 1;
+            } catch (IOException e) {
+                errors.append("Error reading file: ").append(e.getMessage()).append(System.lineSeparator());
+                status = 1;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Parses {@code -n N} (also {@code -nN}) and the single-letter flags in {@code flagLetters},
+     * putting the rest in {@code operands}. Returns the line count, 10 by default, or -1 after
+     * reporting a bad option.
+     */
+    private static long lineCount(String[] tokens, String flagLetters, Set<String> flags, List<String> operands,
+                                  PrintStream errors) {
+        long lines = 10;
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.startsWith("-n")) {
+                String count = token.length() > 2 ? token.substring(2) : i + 1 < tokens.length ? tokens[++i] : "";
+                try {
+                    lines = Long.parseLong(count);
+                } catch (NumberFormatException e) {
+                    lines = -1;
+                }
+                if (lines < 0) {
+                    errors.append("Invalid line count: ").append(count).append(System.lineSeparator());
+                    return -1;
+                }
+            } else if (token.startsWith("-") && token.length() > 1) {
+                for (int j = 1; j < token.length(); j++) {
+                    if (flagLetters.indexOf(token.charAt(j)) < 0) {
+                        errors.append("Unknown option for ").append(tokens[0]).append(": ").append(token)
+                                .append(System.lineSeparator());
+                        return -1;
+                    }
+                    flags.add("-" + token.charAt(j));
+                }
+            } else {
+                operands.add(token);
+            }
+        }
+        return lines;
+    }
+
+    public int wc(String[] tokens, InputStream input, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        Set<String> flags = options(tokens, "lwc", operands, errors);
+        if (flags == null) return 2;
+        if (flags.contains("--progress") || operands.isEmpty() && input == null) {
+            errors.append("Usage: wc [-lwc] <file>...").append(System.lineSeparator());
+            return 2;
+        }
+        boolean all = flags.isEmpty();
+        boolean countLines = all || flags.contains("-l");
+        boolean countWords = all || flags.contains("-w");
+        boolean countBytes = all || flags.contains("-c");
+
+        if (operands.isEmpty()) {
+            try {
+                printCounts(WordCount.of(input, countWords), countLines, countWords, countBytes, null, output);
+            } catch (IOException e) {
+                errors.append("Error reading input: ").append(e.getMessage()).append(System.lineSeparator());
+                return 1;
+            }
+            return 0;
+        }
+        int status = 0;
+        WordCount total = new WordCount();
+        for (String operand : operands) {
+            try (FileChannel channel = FileChannel.open(currentDirectory.resolve(operand), StandardOpenOption.READ)) {
+                WordCount count = WordCount.of(channel, countLines, countWords);
+                printCounts(count, countLines, countWords, countBytes, operand, output);
+                total = total.merge(count);
+            } catch (NoSuchFileException e) {
+                errors.append("File does not exist: ").append(operand).append(System.lineSeparator());
+                status = 1;
+            } catch (IOException e) {
+                errors.append("Error reading file: ").append(e.getMessage()).append(System.lineSeparator());
+                status = 1;
+            }
+        }
+        if (operands.size() > 1) {
+            printCounts(total, countLines, countWords, countBytes, "total", output);
+        }
+        return status;
+    }
+
+    private static void printCounts(WordCount count, boolean lines, boolean words, boolean bytes, String name,
+                                    PrintStream output) {
+        StringBuilder line = new StringBuilder();
+        if (lines) line.append(String.format(" %7d", count.getLines()));
+        if (words) line.append(String.format(" %7d", count.getWords()));
+        if (bytes) line.append(String.format(" %7d", count.getBytes()));
+        if (name != null) line.append(' ').append(name);
+        output.append(line).append(System.lineSeparator());
+    }
+
+    public int sort(String[] tokens, InputStream input, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        try (LineSorter sorter = new LineSorter()) {
+            for (int i = 1; i < tokens.length; i++) {
+                String token = tokens[i];
+                if (token.startsWith("-") && token.length() > 1 && "kST".indexOf(token.charAt(1)) >= 0) {
+                    String argument = token.length() > 2 ? token.substring(2) : i + 1 < tokens.length ? tokens[++i] : "";
+                    switch (token.charAt(1)) {
+                        case 'k':
+                            sorter.key(argument);
+                            break;
+                        case 'S':
+                            sorter.memoryBudget(argument);
+                            break;
+                        default:
+                            sorter.tempDirectory(currentDirectory.resolve(argument));
+                            break;
+                    }
+                } else if (token.startsWith("-") && token.length() > 1) {
+                    for (int j = 1; j < token.length(); j++) {
+                        if (!sorter.option(token.charAt(j))) {
+                            errors.append("Unknown option for sort: ").append(token).append(System.lineSeparator());
+                            return 2;
+                        }
+                    }
+                } else {
+                    operands.add(token);
+                }
+            }
+            if (operands.isEmpty() && input == null) {
+                errors.append("Usage: sort [-rnu] [-k N[,M]] [-S size] [-T dir] <file>...").append(System.lineSeparator());
+                return 2;
+            }
+
+            if (operands.isEmpty()) {
+                sorter.addAll(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), COPY_BUFFER_SIZE));
+            }
+            for (String operand : operands) {
+                try (BufferedReader reader = openText(currentDirectory.resolve(operand))) {
+                    sorter.addAll(reader);
+                } catch (NoSuchFileException e) {
+                    errors.append("File does not exist: ").append(operand).append(System.lineSeparator());
+                    return 1;
+                }
+            }
+            sorter.write(output);
+        } catch (IllegalArgumentException e) {
+            errors.append(e.getMessage()).append(System.lineSeparator());
+            return 2;
+        } catch (IOException e) {
+            errors.append("Error sorting: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        }
+        return 0;
+    }
+
+    public int uniq(String[] tokens, InputStream input, PrintStream output, PrintStream errors) {
+        List<String> operands = new ArrayList<>();
+        Set<String> flags = options(tokens, "c", operands, errors);
+        if (flags == null) return 2;
+        if (flags.contains("--progress") || operands.size() > 1 || operands.isEmpty() && input == null) {
+            errors.append("Usage: uniq [-c] <file>").append(System.lineSeparator());
+            return 2;
+        }
+        boolean counts = flags.contains("-c");
+        try (BufferedReader reader = operands.isEmpty()
+                ? new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), COPY_BUFFER_SIZE)
+                : openText(currentDirectory.resolve(operands.get(0)))) {
+            String previous = null;
+            long count = 0;
+            String line;
+            while ((line = reader.readLine()) != null && !output.checkError()) {
+                if (line.equals(previous)) {
+                    count++;
+                    continue;
+                }
+                if (previous != null) {
+                    printUnique(previous, count, counts, output);
+                }
+                previous = line;
+                count = 1;
+            }
+            if (previous != null) {
+                printUnique(previous, count, counts, output);
+            }
+        } catch (NoSuchFileException e) {
+            errors.append("File does not exist: ").append(operands.get(0)).append(System.lineSeparator());
+            return 1;
+        } catch (IOException e) {
+            errors.append("Error reading file: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        }
+        return 0;
+    }
+
+    private static void printUnique(String line, long count, boolean counts, PrintStream output) {
+        if (counts) {
+            output.append(String.format("%7d ", count));
+        }
+        output.append(line).append(System.lineSeparator());
+    }
+
+    /** Opens a file for reading lines; bytes that are not valid UTF-8 are replaced rather than fatal. */
+    private static BufferedReader openText(Path file) throws IOException {
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), COPY_BUFFER_SIZE);
+    }
+
+    public int cat(String[] tokens, InputStream input, PrintStream output, PrintStream errors) {
+        if (tokens.length == 1) {
+            if (input == null) {
+                return writeFile(output, errors);
+            }
+            return copyInput(input, output, errors);
+        }
+        int status = 0;
+        for (int i = 1; i < tokens.length; i++) {
+            status = Math.max(status, readFile(tokens[i], output, errors));
+        }
+        return status;
+    }
+
+    private int copyInput(InputStream input, PrintStream output, PrintStream errors) {
+        if (input instanceof ChannelInput) {
+            // a < file: copied the same way as a file operand
+            try {
+                if (output instanceof ChannelOutput) {
+                    input.transferTo(output);
+                } else {
+                    copyChannel(((ChannelInput) input).channel(), output);
+                }
+            } catch (IOException e) {
+                errors.append("Error reading input: ").append(e.getMessage()).append(System.lineSeparator());
+                return 1;
+            }
+            return 0;
+        }
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try {
+            int n;
+            while ((n = input.read(buffer)) != -1 && !output.checkError()) {
+                output.write(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            errors.append("Error reading input: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        }
+        return 0;
+    }
+
+    private int readFile(String fileName, PrintStream output, PrintStream errors) {
+        Path filePath = currentDirectory.resolve(fileName);
+        try (FileChannel source = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            if (output instanceof ChannelOutput) {
+                ((ChannelOutput) output).transferFrom(source);
+            } else {
+                copyChannel(source, output);
+            }
+        } catch (NoSuchFileException e) {
+            errors.append("File does not exist: ").append(fileName).append(System.lineSeparator());
+            return 1;
+        } catch (IOException e) {
+            errors.append("Error reading file: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        }
+        return 0;
+    }
+
+    private void copyChannel(FileChannel source, PrintStream output) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+        while (source.read(buffer) != -1 && !output.checkError()) {
+            output.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+
+    private int writeFile(PrintStream output, PrintStream errors) {
+        stdout().println("Enter text (type 'Exit' on a new line or press Ctrl-D to finish):");
+        stdout().flush();
+        try {
+            stdin().copyUntil(END_OF_TEXT, true, output);
+        } catch (IOException e) {
+            errors.append("Error reading input: ").append(e.getMessage()).append(System.lineSeparator());
+            return 1;
+        }
+        return 0;
+    }
+
+    private ChannelOutput openOutputFile(String outputFile, boolean append) throws IOException {
+        Path path = currentDirectory.resolve(outputFile);
+        ChannelOutput file = redirections.open(path, append);
+        changed(path);
+        return file;
+    }
+
+    /** Tells the cache and the completer that the shell created, changed or removed {@code path}. */
+    private void changed(Path path) {
+        cache.invalidate(path);
+        completer.changed(path);
+    }
+
+    /** Like {@link #changed}, for a path that may be a directory whose whole tree changed. */
+    private void changedTree(Path root) {
+        cache.invalidateTree(root);
+        completer.changedTree(root);
+    }
+
+    private boolean isDirectory(Path path) {
+        try {
+            return cache.isDirectory(path);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean isEmptyDirectory(Path directory) throws IOException {
+        List<String> names = cache.listing(directory);
+        if (names != null) {
+            return names.isEmpty();
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            return !entries.iterator().hasNext();
+        }
+    }
+
+    private static void closeQuietly(InputStream input) {
+        if (input == null) return;
+        try {
+            input.close();
+        } catch (IOException ignored) {
+            // the stage is finished with its input either way
+        }
+    }
+
+    /** The session's input: the one given, else whatever {@code System.in} is now. */
+    private synchronized SessionInput stdin() {
+        if (input != null) return input;
+        if (System.in != systemIn) {
+            systemIn = System.in;
+            systemInput = SessionInput.of(systemIn);
+        }
+        return systemInput;
+    }
+
+    private PrintStream stdout() {
+        return stdout != null ? stdout : System.out;
+    }
+
+    /** The terminal as seen by the last pipeline stage, counting what is written to it. */
+    private PrintStream terminal() {
+        PrintStream target = stdout();
+        if (target != countedTarget) {
+            countedTarget = target;
+            terminalCounter = new CountingOutputStream(target);
+            countedTerminal = new PrintStream(terminalCounter, false);
+        }
+        return countedTerminal;
+    }
+
+    private PrintStream stderr() {
+        return stderr != null ? stderr : System.err;
+    }
+
+    /** Releases per-session resources: background jobs, open redirections, the cache's watch service. */
+    @Override
+    public void close() {
+        jobs.close();
+        redirections.close();
+        try {
+            cache.close();
+        } catch (IOException ignored) {
+            // nothing left to release
+        }
+    }
+
+    public Path getCurrentDirectory() {
+        return currentDirectory;
+    }
+
+    /**
+     * Completes the last word of {@code line}, as typed so far: to a command name if it starts a
+     * stage, otherwise to a path relative to the current directory. The extension comes escaped
+     * for the lexer, and ends in a space once a file name is complete.
+     */
+    public Completion complete(String line) {
+        int start = 0;
+        boolean command = true;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '\\') {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (Character.isWhitespace(c) || "|;&<>".indexOf(c) >= 0) {
+                if (i > start) {
+                    command = command && i - start == 4 && line.startsWith("time", start);
+                }
+                if ("|;&".indexOf(c) >= 0) command = true;
+                start = i + 1;
+            }
+        }
+        String word = unquote(line.substring(start));
+        if (command && word.indexOf('/') < 0) {
+            return escaped(CommandNames.TRIE.match(word, PathCompleter.MAX_CANDIDATES), (char) 0);
+        }
+        int slash = word.lastIndexOf('/');
+        Path directory = slash < 0 ? currentDirectory : currentDirectory.resolve(word.substring(0, slash + 1));
+        return escaped(completer.complete(directory, word.substring(slash + 1)), quote);
+    }
+
+    private static String unquote(String word) {
+        StringBuilder text = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == '\\' && i + 1 < word.length()) {
+                text.append(word.charAt(++i));
+            } else if (c != '\'' && c != '"') {
+                text.append(c);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Escapes what the lexer would otherwise split or expand, unless the word is inside an open
+     * {@code quote}, which is closed instead once the word is complete.
+     */
+    private static Completion escaped(Completion completion, char quote) {
+        String extension = completion.extension();
+        StringBuilder text = new StringBuilder(extension.length() + 1);
+        for (int i = 0; i < extension.length(); i++) {
+            char c = extension.charAt(i);
+            if (quote == 0 && (Character.isWhitespace(c) || "\\'\"|;&<>*?[]{}".indexOf(c) >= 0)) {
+                text.append('\\');
+            }
+            text.append(c);
+        }
+        if (completion.unique() && !extension.endsWith("/")) {
+            if (quote != 0) text.append(quote);
+            text.append(' ');
+        }
+        return new Completion(text.toString(), completion.candidates(), completion.unique());
+    }
+}
@@ -0,0 +1,135 @@
+package cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.stream.LongStream;
+
+/**
+ * Line, word and byte counts for {@code wc}.
+ *
+ * Counting is one pass over plain {@code byte[]} blocks in a loop simple enough for the JIT to
+ * vectorize; a byte count alone never reads the file at all. Files of at least
+ * {@link #PARALLEL_THRESHOLD} are cut into {@link #CHUNK_SIZE} slices that are memory-mapped and
+ * counted in parallel, and the slices' counts are merged in order, joining a word that spans two
+ * slices back into one. Words are runs of non-whitespace bytes, whitespace being ASCII only.
+ */
+public final class WordCount {
+    static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    static final long PARALLEL_THRESHOLD = 4L * CHUNK_SIZE;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private long lines;
+    private long words;
+    private long bytes;
+    private boolean startsInWord;
+    private boolean endsInWord;
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getWords() {
+        return words;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /** Counts a whole file; words are only counted if {@code countWords} is set. */
+    public static WordCount of(FileChannel channel, boolean countLines, boolean countWords) throws IOException {
+        long size = channel.size();
+        if (!countLines && !countWords) {
+            WordCount count = new WordCount();
+            count.bytes = size;
+            return count;
+        }
+        if (size < PARALLEL_THRESHOLD) {
+            return chunk(channel, 0, size, countWords);
+        }
+        long chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        try {
+            return LongStream.range(0, chunks).parallel()
+                    .mapToObj(i -> {
+                        long position = i * CHUNK_SIZE;
+                        try {
+                            return chunk(channel, position, Math.min(CHUNK_SIZE, size - position), countWords);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .reduce(new WordCount(), WordCount::merge);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Counts {@code input} to its end. */
+    public static WordCount of(InputStream input, boolean countWords) throws IOException {
+        WordCount count = new WordCount();
+        byte[] block = new byte[BLOCK_SIZE];
+        int n;
+        while ((n = input.read(block)) != -1) {
+            count.add(block, n, countWords);
+        }
+        return count;
+    }
+
+    private static WordCount chunk(FileChannel channel, long position, long length, boolean countWords)
+            throws IOException {
+        WordCount count = new WordCount();
+        ByteBuffer mapped = FileRegions.map(channel, position, length);
+        byte[] block = new byte[(int) Math.min(BLOCK_SIZE, length)];
+        while (mapped.hasRemaining()) {
+            int n = Math.min(block.length, mapped.remaining());
+            mapped.get(block, 0, n);
+            count.add(block, n, countWords);
+        }
+        return count;
+    }
+
+    private void add(byte[] block, int length, boolean countWords) {
+        if (length == 0) return;
+        int newlines = 0;
+        for (int i = 0; i < length; i++) {
+            newlines += block[i] == '\n' ? 1 : 0;
+        }
+        lines += newlines;
+
+        if (countWords) {
+            boolean inWord = endsInWord;
+            long starts = 0;
+            for (int i = 0; i < length; i++) {
+                boolean word = !isSpace(block[i]);
+                starts += word && !inWord ? 1 : 0;
+                inWord = word;
+            }
+            if (bytes == 0) {
+                startsInWord = !isSpace(block[0]);
+            }
+            words += starts;
+            endsInWord = inWord;
+        }
+        bytes += length;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0b;
+    }
+
+    /** Counts of this range followed directly by {@code next}. */
+    WordCount merge(WordCount next) {
+        if (bytes == 0) return next;
+        if (next.bytes == 0) return this;
+        WordCount merged = new WordCount();
+        merged.lines = lines + next.lines;
+        merged.words = words + next.words - (endsInWord && next.startsInWord ? 1 : 0);
+        merged.bytes = bytes + next.bytes;
+        merged.startsInWord = startsInWord;
+        merged.endsInWord = next.endsInWord;
+        return merged;
+    }
+}
@@ -0,0 +1,126 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandHistoryTest {
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("history", ".log");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        CommandHistory.open(file).close();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testExpansionAndSearch() throws IOException {
+        CommandHistory history = CommandHistory.open(file);
+        for (String line : List.of("ls -l", "grep foo a.txt", "cd src", "ls -a", "grep bar b.txt")) {
+            history.add(line);
+        }
+
+        assertEquals("grep bar b.txt", history.expand("!!"));
+        assertEquals("grep foo a.txt", history.expand("!2"));
+        assertEquals("cd src", history.expand("!-3"));
+        assertEquals("ls -a | wc", history.expand("!ls | wc"));
+        assertEquals("cd src", history.expand("!c"));
+        assertNull(history.expand("!mkdir"));
+        assertNull(history.expand("!9"));
+        assertNull(history.expand("!99999999999"));
+        assertNull(history.expand("!-99999999999"));
+        assertNull(history.expand("!99999999999999999999"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        history.search(".txt", new PrintStream(output));
+        assertEquals(String.format("%5d  grep foo a.txt%n%5d  grep bar b.txt%n", 2, 5), output.toString());
+
+        output.reset();
+        history.add("ls -l");
+        history.search("l", new PrintStream(output));
+        assertEquals(String.format("%5d  ls -a%n%5d  ls -l%n", 4, 6), output.toString());
+    }
+
+    @Test
+    public void testSurvivesReopenAndTornRecord() throws IOException {
+        CommandHistory history = CommandHistory.open(file);
+        history.add("pwd");
+        history.add("ls");
+        history.close();
+        long end = 8 + 3 + 8 + 2;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // a length that landed without its bytes and checksum
+            channel.write(ByteBuffer.allocate(4).putInt(0, 5), end);
+        }
+
+        history = CommandHistory.open(file);
+        assertEquals(2, history.size());
+        assertEquals("ls", history.get(2));
+        history.add("cd");
+        history.close();
+        assertEquals("cd", CommandHistory.open(file).get(3));
+    }
+
+    @Test
+    public void testClosedByLastHolder() throws IOException {
+        CommandHistory first = CommandHistory.open(file);
+        CommandHistory second = CommandHistory.open(file);
+        assertSame(first, second);
+        first.add("pwd");
+        first.close();
+
+        second.add("ls");
+        assertSame(second, CommandHistory.open(file));
+        second.close();
+        second.close();
+
+        CommandHistory reopened = CommandHistory.open(file);
+        assertNotSame(second, reopened);
+        assertEquals(2, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public void testLogsSharedBetweenProcessesStayInOrder() throws IOException {
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        try (HistoryLog a = new HistoryLog(file); HistoryLog b = new HistoryLog(file)) {
+            a.append("one", first::add);
+            b.append("two", second::add);
+            a.append("three", first::add);
+            b.readNew(second::add);
+        }
+        assertEquals(List.of("two"), first);
+        assertEquals(List.of("one", "three"), second);
+    }
+
+    @Test
+    public void testGrowsPastOneChunk() throws IOException {
+        CommandHistory history = CommandHistory.open(file);
+        String line = "x".repeat(1000);
+        for (int i = 0; i < 2 * HistoryLog.CHUNK_SIZE / 1000; i++) {
+            history.add(line + i);
+        }
+        history.close();
+        history = CommandHistory.open(file);
+        assertEquals(2 * HistoryLog.CHUNK_SIZE / 1000, history.size());
+        assertEquals(line + 0, history.get(1));
+    }
+}
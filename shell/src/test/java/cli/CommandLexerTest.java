@@ -0,0 +1,95 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandLexerTest {
+    private final CommandLexer lexer = new CommandLexer();
+
+    @Test
+    public void testPipelineWithRedirection() {
+        CommandLine line = lexer.parse("cat  a.txt | ls -r >> out.txt");
+
+        assertEquals(2, line.stages().size());
+        assertEquals(List.of("cat", "a.txt"), line.stages().get(0).argv());
+        assertEquals(List.of("ls", "-r"), line.stages().get(1).argv());
+        CommandLine.Redirection redirection = line.stages().get(1).redirections().get(0);
+        assertEquals(CommandLine.Redirection.Type.APPEND, redirection.type());
+        assertEquals("out.txt", redirection.target());
+    }
+
+    @Test
+    public void testQuotesAndEscapes() {
+        CommandLine line = lexer.parse("touch 'a|b.txt' \"my file\" c\\ d \"q\\\"x\" ''>x");
+
+        assertEquals(1, line.stages().size());
+        assertEquals(List.of("touch", "a|b.txt", "my file", "c d", "q\"x", ""), line.stages().get(0).argv());
+        assertEquals("x", line.stages().get(0).redirections().get(0).target());
+    }
+
+    @Test
+    public void testErrorRedirections() {
+        List<CommandLine.Redirection> redirections = lexer.parse("ls 2> e.txt > o.txt 2>&1 2>>log").stages().get(0).redirections();
+
+        assertEquals("[2>e.txt, >o.txt, 2>&1, 2>>log]", redirections.toString());
+        assertEquals(CommandLine.Redirection.Type.ERROR_TO_OUTPUT, redirections.get(2).type());
+        assertNull(redirections.get(2).target());
+        assertEquals(List.of("ls", "a2", "2", "2"), lexer.parse("ls a2>x '2'>y 2 >z").stages().get(0).argv());
+    }
+
+    @Test
+    public void testInputRedirections() {
+        List<CommandLine.Redirection> redirections = lexer.parse("sort<in.txt >out <<'END'").stages().get(0).redirections();
+
+        assertEquals("[<in.txt, >out, <<END]", redirections.toString());
+        assertEquals(CommandLine.Redirection.Type.INPUT, redirections.get(0).type());
+        assertEquals(CommandLine.Redirection.Type.HEREDOC, redirections.get(2).type());
+        assertThrows(IllegalArgumentException.class, () -> lexer.parse("cat <<A | cat <<B"));
+        assertThrows(IllegalArgumentException.class, () -> lexer.parse("cat <<A > f &"));
+        assertThrows(IllegalArgumentException.class, () -> lexer.parse("cat <"));
+        assertEquals(2, lexer.parse("cat <<A > f; cat <x &").pipelines().size());
+    }
+
+    @Test
+    public void testGlobsKeepQuotedCharactersLiteral() {
+        CommandLine.Stage stage = lexer.parse("rm *.class 'a*'b \\[x] \"{c,d}\"* plain").stages().get(0);
+
+        assertEquals(List.of("rm", "*.class", "a*b", "[x]", "{c,d}*", "plain"), stage.argv());
+        assertArrayEquals(new String[] {null, "*.class", null, null, "\\{c\\,d\\}*", null}, stage.globs());
+        assertNull(lexer.parse("ls 'a*' \\?").stages().get(0).globs());
+    }
+
+    @Test
+    public void testSequencesAndBackgroundJobs() {
+        List<CommandLine.Pipeline> pipelines = lexer.parse("cp -r a b & ls | wc -l && pwd; cat x 2>&1&").pipelines();
+
+        assertEquals(4, pipelines.size());
+        assertTrue(pipelines.get(0).background());
+        assertEquals(2, pipelines.get(1).stages().size());
+        assertTrue(pipelines.get(2).conditional());
+        assertFalse(pipelines.get(3).conditional());
+        assertEquals("cat x 2>&1 &", pipelines.get(3).toString());
+        assertThrows(IllegalArgumentException.class, () -> lexer.parse("ls &&"));
+        assertThrows(IllegalArgumentException.class, () -> lexer.parse("; ls"));
+        assertThrows(IllegalArgumentException.class, () -> lexer.parse("ls & & pwd"));
+    }
+
+    @Test
+    public void testEmptyLine() {
+        assertTrue(lexer.parse("   ").isEmpty());
+    }
+
+    @Test
+    public void testSyntaxErrors() {
+        assertThrows(IllegalArgumentException.class, () -> lexer.parse("cat 'open"));
+        assertThrows(IllegalArgumentException.class, () -> lexer.parse("ls >"));
+        assertThrows(IllegalArgumentException.class, () -> lexer.parse("ls | | cat"));
+    }
+
+    @Test
+    public void testRepeatedLinesAreCached() {
+        assertSame(lexer.parse("ls -a"), lexer.parse("ls -a"));
+    }
+}
@@ -0,0 +1,87 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalSortTest {
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("sortDir");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> runs = Files.list(tempDir)) {
+            runs.forEach(run -> run.toFile().delete());
+        }
+        Files.delete(tempDir);
+    }
+
+    @Test
+    public void testSpillsAndMergesInOrder() throws IOException {
+        List<String> expected = new ArrayList<>();
+        Random random = new Random(42);
+        try (ExternalSort sort = new ExternalSort(Comparator.naturalOrder(), 4096, tempDir)) {
+            for (int i = 0; i < 5000; i++) {
+                String record = Integer.toString(random.nextInt(100_000)) + (i % 7 == 0 ? "\nwith newline" : "");
+                expected.add(record);
+                sort.add(record);
+            }
+            assertTrue(sort.getRunCount() > 1);
+
+            List<String> actual = new ArrayList<>();
+            sort.drain(actual::add);
+            expected.sort(Comparator.naturalOrder());
+            assertEquals(expected, actual);
+        }
+        try (Stream<Path> runs = Files.list(tempDir)) {
+            assertEquals(0, runs.count());
+        }
+    }
+
+    @Test
+    public void testDrainStopsWhenSinkRefuses() throws IOException {
+        try (ExternalSort sort = new ExternalSort(Comparator.naturalOrder(), 1024, tempDir)) {
+            for (int i = 0; i < 1000; i++) {
+                sort.add(String.format("%04d", i));
+            }
+            List<String> actual = new ArrayList<>();
+            sort.drain(record -> actual.add(record) && actual.size() < 3);
+            assertEquals(List.of("0000", "0001", "0002"), actual);
+        }
+    }
+
+    @Test
+    public void testMergesManyRunsInPasses() throws IOException {
+        List<String> expected = new ArrayList<>();
+        try (ExternalSort sort = new ExternalSort(Comparator.reverseOrder(), 1, tempDir)) {
+            for (int i = 0; i < 3 * ExternalSort.MERGE_FAN_IN; i++) {
+                String record = String.format("%06d", (i * 7919) % 100_000);
+                expected.add(record);
+                sort.add(record);
+            }
+            assertTrue(sort.getRunCount() > ExternalSort.MERGE_FAN_IN);
+
+            List<String> actual = new ArrayList<>();
+            sort.drain(actual::add);
+            expected.sort(Comparator.reverseOrder());
+            assertEquals(expected, actual);
+        }
+        try (Stream<Path> runs = Files.list(tempDir)) {
+            assertEquals(0, runs.count());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileChecksumTest {
+    private final MemoryFileSystem fileSystem = MemoryFileSystem.newFileSystem();
+
+    @AfterEach
+    void tearDown() {
+        fileSystem.close();
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        Path file = fileSystem.getPath("/" + name);
+        Files.write(file, content);
+        return file;
+    }
+
+    @Test
+    public void testKnownValues() throws Exception {
+        Path abc = write("abc", "abc".getBytes(StandardCharsets.US_ASCII));
+        Path digits = write("digits", "123456789".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                FileChecksum.of(abc, FileChecksum.Algorithm.SHA256));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", FileChecksum.of(abc, FileChecksum.Algorithm.MD5));
+        assertEquals("cbf43926", FileChecksum.of(digits, FileChecksum.Algorithm.CRC32));
+        assertEquals("e3069283", FileChecksum.of(digits, FileChecksum.Algorithm.CRC32C));
+        assertEquals("e3069283", FileChecksum.of(new ByteArrayInputStream("123456789".getBytes(StandardCharsets.US_ASCII)),
+                FileChecksum.Algorithm.CRC32C));
+        assertThrows(NoSuchFileException.class, () -> FileChecksum.of(fileSystem.getPath("/missing"),
+                FileChecksum.Algorithm.MD5));
+    }
+
+    @Test
+    public void testCombinedCrcsEqualTheWholeCrc() {
+        byte[] data = new byte[100_003];
+        new Random(7).nextBytes(data);
+        for (int split : new int[] {0, 1, 4096, 65_537, data.length}) {
+            CRC32C first = new CRC32C();
+            first.update(data, 0, split);
+            CRC32C second = new CRC32C();
+            second.update(data, split, data.length - split);
+            CRC32C whole = new CRC32C();
+            whole.update(data);
+            assertEquals(whole.getValue(), FileChecksum.combine(first.getValue(), second.getValue(),
+                    data.length - split, 0x82F63B78));
+
+            CRC32 zipFirst = new CRC32();
+            zipFirst.update(data, 0, split);
+            CRC32 zipSecond = new CRC32();
+            zipSecond.update(data, split, data.length - split);
+            CRC32 zipWhole = new CRC32();
+            zipWhole.update(data);
+            assertEquals(zipWhole.getValue(), FileChecksum.combine(zipFirst.getValue(), zipSecond.getValue(),
+                    data.length - split, 0xEDB88320));
+        }
+    }
+
+    @Test
+    public void testFilesLargerThanTheBufferMatchTheirStream() throws Exception {
+        byte[] data = new byte[3 * 1024 * 1024 + 11];
+        new Random(3).nextBytes(data);
+        Path file = write("large.bin", data);
+
+        for (FileChecksum.Algorithm algorithm : FileChecksum.Algorithm.values()) {
+            assertEquals(FileChecksum.of(new ByteArrayInputStream(data), algorithm), FileChecksum.of(file, algorithm));
+        }
+        // a small file read right after must not see the large one's bytes
+        Path small = write("small.bin", Arrays.copyOf(data, 10));
+        assertEquals(FileChecksum.of(new ByteArrayInputStream(Arrays.copyOf(data, 10)), FileChecksum.Algorithm.CRC32),
+                FileChecksum.of(small, FileChecksum.Algorithm.CRC32));
+    }
+}
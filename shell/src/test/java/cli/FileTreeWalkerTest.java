@@ -0,0 +1,162 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileTreeWalkerTest {
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("treeDir");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(tempDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /** Builds a chain {@code depth} directories deep with a wide directory of files at the top. */
+    private Path createTree(int depth, int files) throws IOException {
+        Path root = tempDir.resolve("tree");
+        Path leaf = root;
+        for (int i = 0; i < depth; i++) {
+            leaf = leaf.resolve("d");
+        }
+        Files.createDirectories(leaf);
+        Files.writeString(leaf.resolve("leaf.txt"), "leaf");
+        for (int i = 0; i < files; i++) {
+            Files.writeString(root.resolve("f" + i), "x".repeat(i % 100));
+        }
+        return root;
+    }
+
+    @Test
+    public void testCopiesDeepAndWideTrees() throws Exception {
+        Path source = createTree(500, 1000);
+        Path target = tempDir.resolve("copy");
+
+        FileTreeWalker.Result result = FileTreeWalker.copy(source, target, null);
+
+        assertEquals(List.of(), result.getErrors());
+        assertEquals(1001, result.getFiles());
+        assertEquals(501, result.getDirectories());
+        assertEquals(Files.readString(source.resolve("f57")), Files.readString(target.resolve("f57")));
+        assertEquals("leaf", Files.readString(target.resolve("d/".repeat(500) + "leaf.txt")));
+    }
+
+    @Test
+    public void testCopyForMoveKeepsTimesAndRefusesExistingTargets() throws Exception {
+        Path source = createTree(3, 10);
+        FileTime then = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(source.resolve("f3"), then);
+        Files.setLastModifiedTime(source.resolve("d/d"), then);
+        Files.setLastModifiedTime(source, then);
+
+        try (MemoryFileSystem fileSystem = MemoryFileSystem.newFileSystem()) {
+            // another file store, as a move across devices has to copy
+            Path target = fileSystem.getPath("/moved");
+            assertFalse(FileTreeWalker.sameFileStore(source, target));
+
+            FileTreeWalker.Result result = FileTreeWalker.copyForMove(source, target, null);
+
+            assertEquals(List.of(), result.getErrors());
+            assertEquals(11, result.getFiles());
+            assertEquals("leaf", Files.readString(target.resolve("d/d/d/leaf.txt")));
+            assertEquals(then, Files.getLastModifiedTime(target.resolve("f3")));
+            assertEquals(then, Files.getLastModifiedTime(target.resolve("d/d")));
+            assertEquals(then, Files.getLastModifiedTime(target));
+
+            assertThrows(FileAlreadyExistsException.class, () -> FileTreeWalker.copyForMove(source, target, null));
+            Path file = fileSystem.getPath("/f3");
+            Files.writeString(file, "kept");
+            assertThrows(FileAlreadyExistsException.class,
+                    () -> FileTreeWalker.copyForMove(source.resolve("f3"), file, null));
+            assertEquals("kept", Files.readString(file));
+        }
+    }
+
+    @Test
+    public void testCopyForMoveKeepsPermissions() throws Exception {
+        Path source = Files.createDirectory(tempDir.resolve("locked"));
+        Files.writeString(source.resolve("script"), "echo");
+        Files.setPosixFilePermissions(source.resolve("script"), PosixFilePermissions.fromString("rwxr-x---"));
+        Files.setPosixFilePermissions(source, PosixFilePermissions.fromString("r-x------"));
+        Path target = tempDir.resolve("moved");
+
+        try {
+            assertEquals(List.of(), FileTreeWalker.copyForMove(source, target, null).getErrors());
+            assertEquals("rwxr-x---", PosixFilePermissions.toString(Files.getPosixFilePermissions(target.resolve("script"))));
+            assertEquals("r-x------", PosixFilePermissions.toString(Files.getPosixFilePermissions(target)));
+        } finally {
+            Files.setPosixFilePermissions(source, PosixFilePermissions.fromString("rwx------"));
+            if (Files.exists(target)) {
+                Files.setPosixFilePermissions(target, PosixFilePermissions.fromString("rwx------"));
+            }
+        }
+    }
+
+    @Test
+    public void testSizesTotalEveryDirectoryBeforeItsParent() throws Exception {
+        Path root = createTree(50, 1000);
+        List<Path> order = Collections.synchronizedList(new ArrayList<>());
+        Map<Path, Long> totals = new ConcurrentHashMap<>();
+
+        FileTreeWalker.Result result = FileTreeWalker.size(root, (directory, bytes) -> {
+            order.add(directory);
+            totals.put(directory, bytes);
+        }, null);
+
+        assertEquals(List.of(), result.getErrors());
+        assertEquals(1001, result.getFiles());
+        assertEquals(51, result.getDirectories());
+        assertEquals(49504, result.getBytes()); // ten of each length 0..99, and "leaf"
+        assertEquals(49504, (long) totals.get(root));
+        assertEquals(4, (long) totals.get(root.resolve("d/d")));
+        assertEquals(root, order.get(order.size() - 1));
+        assertEquals(4, FileTreeWalker.size(root.resolve("d/".repeat(50) + "leaf.txt"), null, null).getBytes());
+    }
+
+    @Test
+    public void testDeletesDeepAndWideTrees() throws Exception {
+        Path root = createTree(500, 1000);
+
+        FileTreeWalker.Result result = FileTreeWalker.delete(root, null);
+
+        assertEquals(List.of(), result.getErrors());
+        assertEquals(1001, result.getFiles());
+        assertEquals(501, result.getDirectories());
+        assertFalse(Files.exists(root));
+    }
+
+    @Test
+    public void testDeleteLeavesSymbolicLinkTargetsAlone() throws Exception {
+        Path kept = Files.createDirectory(tempDir.resolve("kept"));
+        Files.createFile(kept.resolve("file.txt"));
+        Path root = Files.createDirectory(tempDir.resolve("root"));
+        Files.createSymbolicLink(root.resolve("link"), kept);
+
+        FileTreeWalker.delete(root, null);
+
+        assertFalse(Files.exists(root));
+        assertTrue(Files.exists(kept.resolve("file.txt")));
+    }
+}
@@ -0,0 +1,91 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GlobExpanderTest {
+    private final GlobExpander expander = new GlobExpander();
+    private Path testDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testDir = Files.createTempDirectory("globs");
+        for (String file : List.of("a.txt", "b.txt", "c.log", ".hidden.txt", "src/Main.java", "src/util/Io.java",
+                "src/util/Io.class", "build/Main.class", ".git/x.class", "docs/a.md")) {
+            Path path = testDir.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.createFile(path);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(testDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private List<String> expand(String glob) {
+        String[] expanded = expander.expand(new String[] {"ls", glob}, new String[] {null, glob}, testDir);
+        return List.of(expanded).subList(1, expanded.length);
+    }
+
+    @Test
+    public void testSingleSegmentPatterns() {
+        assertEquals(List.of("a.txt", "b.txt"), expand("*.txt"));
+        assertEquals(List.of("a.txt", "c.log"), expand("[ac].*"));
+        assertEquals(List.of("a.txt", "b.txt", "c.log"), expand("?.{txt,log}"));
+        assertEquals(List.of(".hidden.txt"), expand(".*.txt"));
+        assertEquals(List.of("*.none"), expand("*.none"));
+    }
+
+    @Test
+    public void testMultipleSegments() {
+        assertEquals(List.of("src/util/Io.class", "src/util/Io.java"), expand("src/*/Io.*"));
+        assertEquals(List.of("docs/a.md"), expand("*/a.md"));
+        assertEquals(List.of(testDir.resolve("a.txt").toString()), expand(testDir + "/a.*"));
+    }
+
+    @Test
+    public void testDoubleStarSkipsHiddenDirectories() {
+        assertEquals(List.of("build/Main.class", "src/util/Io.class"), expand("**/*.class"));
+        assertEquals(List.of("src/Main.java", "src/util/Io.java"), expand("src/**/*.java"));
+        assertEquals(List.of("src/util/Io.class", "src/util/Io.java"), expand("src/u*/**"));
+    }
+
+    @Test
+    public void testConsecutiveDoubleStarsActAsOne() {
+        assertEquals(expand("**/*.class"), expand("**/**/*.class"));
+        assertEquals(List.of("src/util/Io.java"), expand("**/**/util/**/Io.java"));
+        assertEquals(List.of("src/Main.java", "src/util/Io.java"), expand("src/**/**/**/*.java"));
+    }
+
+    @Test
+    public void testPrunedMatchesAreNotEntered() {
+        List<String> found = Collections.synchronizedList(new ArrayList<>());
+        long matches = expander.forEach(testDir, "**/{src,util}", true, (path, display) -> found.add(display));
+
+        assertEquals(1, matches);
+        assertEquals(List.of("src"), found);
+    }
+
+    @Test
+    public void testMatchersAreCached() {
+        expand("*.txt");
+        expand("*.txt");
+        expand("src/*/*.java");
+        assertEquals(3, expander.cachedMatchers());
+        assertEquals(List.of("[a"), expand("[a"));
+    }
+}
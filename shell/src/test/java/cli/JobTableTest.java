@@ -0,0 +1,69 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobTableTest {
+    private final JobTable jobs = new JobTable();
+
+    @AfterEach
+    void tearDown() {
+        jobs.close();
+    }
+
+    @Test
+    public void testOutputIsHeldUntilJoinedAndSpillsPastThreshold() throws InterruptedException {
+        byte[] block = new byte[JobTable.SPILL_THRESHOLD / 3 + 1];
+        CountDownLatch written = new CountDownLatch(1);
+        int id = jobs.start("big", output -> {
+            for (int i = 0; i < 4; i++) {
+                Arrays.fill(block, (byte) ('a' + i));
+                output.write(block, 0, block.length);
+            }
+            written.countDown();
+            return 3;
+        });
+        written.await();
+
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        assertEquals(3, jobs.join(id, new PrintStream(terminal)));
+        byte[] bytes = terminal.toByteArray();
+        assertEquals(4 * block.length, bytes.length);
+        assertEquals('a', bytes[0]);
+        assertEquals('d', bytes[bytes.length - 1]);
+        assertEquals(List.of(), jobs.ids());
+    }
+
+    @Test
+    public void testListingReapsFinishedSilentJobs() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        jobs.start("quiet", output -> 0);
+        jobs.start("slow", output -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                return TerminalParser.STATUS_INTERRUPTED;
+            }
+            return 0;
+        });
+        assertThrows(IllegalArgumentException.class, () -> jobs.find("%3"));
+        assertEquals(2, jobs.find(null));
+        while (jobs.ids().size() == 2) {
+            jobs.list(new PrintStream(new ByteArrayOutputStream()));
+            Thread.sleep(1);
+        }
+
+        ByteArrayOutputStream listing = new ByteArrayOutputStream();
+        jobs.list(new PrintStream(listing));
+        assertTrue(listing.toString().startsWith("[2] ") && listing.toString().contains("slow"));
+        release.countDown();
+        assertEquals(0, jobs.join(2, new PrintStream(new ByteArrayOutputStream())));
+    }
+}
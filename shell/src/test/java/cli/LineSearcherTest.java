@@ -0,0 +1,45 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LineSearcherTest {
+    private static List<String> search(String pattern, String text) throws IOException {
+        List<String> lines = new ArrayList<>();
+        new LineSearcher(pattern).search(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), line -> {
+            lines.add(new String(line, StandardCharsets.UTF_8));
+            return true;
+        });
+        return lines;
+    }
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("ERROR", LineSearcher.literalPrefix("ERROR"));
+        assertEquals("ERROR ", LineSearcher.literalPrefix("ERROR [0-9]+"));
+        assertEquals("ERRO", LineSearcher.literalPrefix("ERROR?"));
+        assertEquals("ab", LineSearcher.literalPrefix("ab+c"));
+        assertEquals("", LineSearcher.literalPrefix("^ERROR"));
+        assertEquals("", LineSearcher.literalPrefix("WARN|ERROR"));
+    }
+
+    @Test
+    public void testMatchesWholeLines() throws IOException {
+        String text = "ok\nERROR 1 here\nfine ERROR x\nERROR 22\nlast ERROR 3";
+        assertEquals(List.of("ERROR 1 here", "ERROR 22", "last ERROR 3"), search("ERROR [0-9]+", text));
+        assertEquals(List.of("ERROR 1 here", "fine ERROR x", "ERROR 22", "last ERROR 3"), search("ERROR", text));
+        assertEquals(List.of("ok", "fine ERROR x"), search("^(ok|fine)", text));
+    }
+
+    @Test
+    public void testLinesLongerThanTheStreamBuffer() throws IOException {
+        String longLine = "x".repeat(200_000) + "needle";
+        assertEquals(List.of(longLine), search("needle", "a\n" + longLine + "\nb\n"));
+    }
+}
@@ -0,0 +1,133 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryFileSystemTest {
+    private final MemoryFileSystem fileSystem = MemoryFileSystem.newFileSystem();
+
+    @AfterEach
+    void tearDown() {
+        fileSystem.close();
+    }
+
+    @Test
+    public void testPaths() {
+        Path path = fileSystem.getPath("/a//b/", "c.txt");
+
+        assertEquals("/a/b/c.txt", path.toString());
+        assertEquals("c.txt", path.getFileName().toString());
+        assertEquals("/a/b", path.getParent().toString());
+        assertEquals("/", fileSystem.getPath("/a").getParent().toString());
+        assertEquals("/a/c", fileSystem.getPath("/a/./b/../c").normalize().toString());
+        assertEquals("../x", fileSystem.getPath("/a/b").relativize(fileSystem.getPath("/a/x")).toString());
+        assertEquals("/a/b/c.txt", fileSystem.getPath("/a").resolve("b/c.txt").toString());
+        assertTrue(path.startsWith(fileSystem.getPath("/a/b")));
+        assertTrue(path.endsWith(fileSystem.getPath("b/c.txt")));
+        assertEquals(path, fileSystem.provider().getPath(path.toUri()));
+    }
+
+    @Test
+    public void testFilesAndDirectories() throws IOException {
+        Path file = fileSystem.getPath("/logs/app/today.log");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "one\n");
+        Files.writeString(file, "two\n", StandardOpenOption.APPEND);
+
+        assertEquals("one\ntwo\n", Files.readString(file));
+        assertEquals(8, Files.size(file));
+        assertTrue(Files.isDirectory(file.getParent()));
+        assertThrows(FileAlreadyExistsException.class, () -> Files.createFile(file));
+        assertThrows(DirectoryNotEmptyException.class, () -> Files.delete(file.getParent()));
+        assertThrows(NoSuchFileException.class, () -> Files.readString(fileSystem.getPath("/missing")));
+
+        Files.move(file.getParent(), fileSystem.getPath("/archive"));
+        assertEquals("one\ntwo\n", Files.readString(fileSystem.getPath("/archive/today.log")));
+        assertFalse(Files.exists(file));
+        Files.copy(fileSystem.getPath("/archive/today.log"), fileSystem.getPath("/copy.log"));
+        Files.writeString(fileSystem.getPath("/copy.log"), "changed");
+        assertEquals("one\ntwo\n", Files.readString(fileSystem.getPath("/archive/today.log")));
+
+        try (Stream<Path> listing = Files.list(fileSystem.getPath("/"))) {
+            assertEquals(List.of("/archive", "/copy.log", "/logs"),
+                    listing.map(Path::toString).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testChannelsSpanBlocks() throws IOException {
+        Path file = fileSystem.getPath("/big.bin");
+        byte[] data = new byte[3 * MemoryFileSystem.BLOCK_SIZE + 17];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(data));
+            channel.truncate(MemoryFileSystem.BLOCK_SIZE + 5);
+            channel.write(ByteBuffer.wrap(new byte[] {1}), MemoryFileSystem.BLOCK_SIZE + 10);
+        }
+
+        byte[] read = Files.readAllBytes(file);
+        assertEquals(MemoryFileSystem.BLOCK_SIZE + 11, read.length);
+        assertEquals(data[MemoryFileSystem.BLOCK_SIZE + 4], read[MemoryFileSystem.BLOCK_SIZE + 4]);
+        // bytes between the truncation and the later write read as zero, not as what was there before
+        assertEquals(0, read[MemoryFileSystem.BLOCK_SIZE + 7]);
+        assertEquals(1, read[MemoryFileSystem.BLOCK_SIZE + 10]);
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertThrows(UnsupportedOperationException.class, () -> channel.map(FileChannel.MapMode.READ_ONLY, 0, 1));
+            assertEquals(16, FileRegions.map(channel, 4, 16).remaining());
+        }
+    }
+
+    @Test
+    public void testPathMatchers() {
+        PathMatcher glob = fileSystem.getPathMatcher("glob:*.{java,class}");
+        assertTrue(glob.matches(fileSystem.getPath("Main.java")));
+        assertFalse(glob.matches(fileSystem.getPath("src/Main.java")));
+        assertTrue(fileSystem.getPathMatcher("glob:**/[!.]*").matches(fileSystem.getPath("/a/b/c")));
+        assertTrue(fileSystem.getPathMatcher("glob:f?le[0-9].\\*").matches(fileSystem.getPath("file7.*")));
+        assertTrue(fileSystem.getPathMatcher("regex:.*\\.log").matches(fileSystem.getPath("/x/y.log")));
+    }
+
+    @Test
+    public void testSnapshotCopiesATree() throws IOException, InterruptedException {
+        Path source = Files.createTempDirectory("snapshot");
+        try {
+            Files.createDirectories(source.resolve("sub"));
+            Files.writeString(source.resolve("sub/file.txt"), "content");
+
+            try (MemoryFileSystem snapshot = MemoryFileSystem.snapshot(source)) {
+                Path copy = snapshot.getPath(source.toAbsolutePath().toString(), "sub", "file.txt");
+                assertEquals("content", Files.readString(copy));
+                Files.writeString(copy, "changed");
+                assertEquals("content", Files.readString(source.resolve("sub/file.txt")));
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(source)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testStringsRoundTrip() throws IOException {
+        Path file = fileSystem.getPath("/text.txt");
+        Files.write(file, List.of("h\u00e9llo", "w\u00f6rld"), StandardCharsets.UTF_8);
+        assertEquals(List.of("h\u00e9llo", "w\u00f6rld"), Files.readAllLines(file));
+    }
+}
@@ -0,0 +1,51 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutputSinkTest {
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private final OutputSink sink = new OutputSink(Channels.newChannel(written), 16, true);
+
+    @Test
+    public void testWritesWaitForFlush() throws IOException {
+        PrintStream out = new PrintStream(sink, false);
+        out.print("abc");
+        out.println(42);
+        assertEquals(0, written.size());
+
+        out.flush();
+        assertEquals("abc42" + System.lineSeparator(), written.toString(StandardCharsets.UTF_8));
+        assertTrue(sink.isTerminal());
+    }
+
+    @Test
+    public void testFullBufferIsWrittenInOnePiece() throws IOException {
+        byte[] ten = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        sink.write(ten);
+        assertEquals(0, written.size());
+        sink.write(ten); // does not fit: the first ten go out, the second wait
+        assertEquals(10, written.size());
+        sink.write('x');
+        sink.close();
+        assertEquals("01234567890123456789x", written.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testLargeWritesBypassTheBuffer() throws IOException {
+        sink.write('<');
+        byte[] large = new byte[100];
+        Arrays.fill(large, (byte) '-');
+        sink.write(large);
+        // what was buffered goes first, then the large write, with nothing left behind
+        assertEquals(101, written.size());
+        assertEquals('<', written.toByteArray()[0]);
+    }
+}
@@ -0,0 +1,121 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PathCompleterTest {
+    private final MemoryFileSystem fileSystem = MemoryFileSystem.newFileSystem();
+    private final Path directory = fileSystem.getPath("/work");
+
+    @AfterEach
+    void tearDown() {
+        fileSystem.close();
+    }
+
+    @Test
+    public void testTrieExtendsToTheCommonPrefix() {
+        NameTrie trie = new NameTrie();
+        for (String name : List.of("report-2023.txt", "report-2024.txt", "readme", "src", "srcs")) {
+            trie.add(name);
+        }
+
+        assertEquals("", trie.match("re", 10).extension());
+        assertEquals("ort-202", trie.match("rep", 10).extension());
+        assertEquals(List.of("report-2023.txt", "report-2024.txt"), trie.match("rep", 10).candidates());
+        assertEquals("c", trie.match("sr", 10).extension());
+        assertFalse(trie.match("src", 10).unique());
+        assertTrue(trie.match("srcs", 10).unique());
+        assertTrue(trie.match("x", 10).candidates().isEmpty());
+        assertTrue(trie.match("srcx", 10).candidates().isEmpty());
+        assertEquals(List.of("readme", "report-2023.txt"), trie.match("r", 2).candidates());
+
+        trie.remove("srcs");
+        trie.remove("report-2023.txt");
+        trie.remove("missing");
+        trie.remove("repo");
+        assertEquals(3, trie.size());
+        assertTrue(trie.match("src", 10).unique());
+        assertEquals("ort-2024.txt", trie.match("rep", 10).extension());
+        assertEquals(List.of("readme", "report-2024.txt", "src"), trie.match("", 10).candidates());
+    }
+
+    @Test
+    public void testCompletesNamesAndMarksDirectories() throws IOException {
+        Files.createDirectories(directory.resolve("docs"));
+        Files.createFile(directory.resolve("data.csv"));
+        Files.createFile(directory.resolve(".hidden"));
+
+        Completion completion = new PathCompleter().complete(directory, "d");
+        assertEquals("", completion.extension());
+        assertEquals(List.of("data.csv", "docs/"), completion.candidates());
+
+        PathCompleter completer = new PathCompleter();
+        assertEquals("cs/", completer.complete(directory, "do").extension());
+        assertEquals(List.of("data.csv", "docs/"), completer.complete(directory, "").candidates());
+        assertEquals(List.of(".hidden"), completer.complete(directory, ".").candidates());
+        assertTrue(completer.complete(fileSystem.getPath("/missing"), "").candidates().isEmpty());
+    }
+
+    @Test
+    public void testShellChangesPatchTheTrie() throws IOException {
+        Files.createDirectories(directory);
+        Files.createFile(directory.resolve("alpha"));
+        PathCompleter completer = new PathCompleter();
+        assertTrue(completer.complete(directory, "alpha").unique());
+        assertEquals(1, completer.cachedNames());
+
+        Files.createFile(directory.resolve("alphabet"));
+        completer.changed(directory.resolve("alphabet"));
+        Files.delete(directory.resolve("alpha"));
+        completer.changed(directory.resolve("alpha"));
+
+        assertEquals(1, completer.cachedNames());
+        assertEquals("bet", completer.complete(directory, "alpha").extension());
+    }
+
+    @Test
+    public void testOutsideChangesRebuildTheTrie() throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        PathCompleter completer = new PathCompleter();
+        assertTrue(completer.complete(directory, "").candidates().isEmpty());
+
+        Thread.sleep(5); // the memory file system keeps times to the millisecond
+        Files.createFile(directory.resolve("late.txt"));
+
+        assertEquals("late.txt", completer.complete(directory, "").extension());
+    }
+
+    @Test
+    public void testNamesAreCapped() throws IOException {
+        Path large = fileSystem.getPath("/large");
+        Path small = fileSystem.getPath("/small");
+        Files.createDirectories(large);
+        Files.createDirectories(small);
+        for (int i = 0; i < 30; i++) {
+            Files.createFile(large.resolve("file-" + i));
+        }
+        for (int i = 0; i < 15; i++) {
+            Files.createFile(small.resolve("file-" + i));
+        }
+        Files.createDirectories(directory);
+        for (int i = 0; i < 10; i++) {
+            Files.createFile(directory.resolve("file-" + i));
+        }
+        PathCompleter completer = new PathCompleter(20);
+
+        // too large to keep, but still completed
+        assertEquals(11, completer.complete(large, "file-2").candidates().size());
+        assertEquals(0, completer.cachedNames());
+
+        completer.complete(small, "");
+        assertEquals(15, completer.cachedNames());
+        completer.complete(directory, "");
+        assertEquals(10, completer.cachedNames());
+    }
+}
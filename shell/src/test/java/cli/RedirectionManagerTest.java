@@ -0,0 +1,79 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RedirectionManagerTest {
+    private final RedirectionManager manager = new RedirectionManager();
+    private Path testDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testDir = Files.createTempDirectory("redirections");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        manager.close();
+        try (Stream<Path> paths = Files.walk(testDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testAppendChannelsAreReusedUntilClosed() throws IOException {
+        Path log = testDir.resolve("log.txt");
+        for (int i = 0; i < 3; i++) {
+            try (ChannelOutput output = manager.open(log, true)) {
+                output.print("line " + i + "\n");
+            }
+        }
+        assertEquals("line 0\nline 1\nline 2\n", Files.readString(log));
+        assertEquals(1, manager.openFiles());
+
+        try (ChannelOutput output = manager.open(log, false)) {
+            output.print("new\n");
+        }
+        assertEquals("new\n", Files.readString(log));
+
+        manager.closeAll();
+        assertEquals(0, manager.openFiles());
+        try (ChannelOutput output = manager.open(log, true)) {
+            output.print("more\n");
+        }
+        assertEquals("new\nmore\n", Files.readString(log));
+    }
+
+    @Test
+    public void testOpenFilesAreBounded() throws IOException {
+        for (int i = 0; i < RedirectionManager.MAX_OPEN_FILES + 10; i++) {
+            try (ChannelOutput output = manager.open(testDir.resolve(i + ".log"), true)) {
+                output.print(i);
+            }
+        }
+        assertEquals(RedirectionManager.MAX_OPEN_FILES, manager.openFiles());
+        assertEquals("0", Files.readString(testDir.resolve("0.log")));
+    }
+
+    @Test
+    public void testLargeWritesBypassTheBuffer() throws IOException {
+        byte[] block = new byte[3 * ChannelOutput.BUFFER_SIZE + 7];
+        block[block.length - 1] = 'x';
+        Path file = testDir.resolve("big.bin");
+        try (ChannelOutput output = manager.open(file, true)) {
+            output.write('a');
+            output.write(block, 0, block.length);
+            output.flush();
+            assertEquals(block.length + 1, output.getBytesWritten());
+        }
+        assertEquals(block.length + 1, Files.size(file));
+    }
+}
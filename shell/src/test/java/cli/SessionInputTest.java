@@ -0,0 +1,70 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionInputTest {
+
+    /** Input arriving a few bytes per read, as from a terminal or a socket, into a small buffer. */
+    private static SessionInput trickle(String text, int chunk) {
+        InputStream source = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] bytes, int offset, int length) {
+                return super.read(bytes, offset, Math.min(length, chunk));
+            }
+        };
+        return new SessionInput(source, 8);
+    }
+
+    private static String copyUntil(SessionInput input, String terminator, boolean ignoreCase) throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        input.copyUntil(terminator, ignoreCase, target);
+        return target.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testReadsLinesLongerThanTheBuffer() throws IOException {
+        SessionInput input = trickle("first line is long\r\n\nsecond \u00e9\nlast", 3);
+
+        assertEquals("first line is long", input.readLine());
+        assertEquals("", input.readLine());
+        assertEquals("second \u00e9", input.readLine());
+        assertEquals("last", input.readLine());
+        assertNull(input.readLine());
+    }
+
+    @Test
+    public void testCopiesUpToTheTerminatorLine() throws IOException {
+        for (int chunk = 1; chunk <= 9; chunk++) {
+            SessionInput input = trickle("one\nEND of it\nxEND\nEND\r\nrest\n", chunk);
+            assertEquals("one\nEND of it\nxEND\n", copyUntil(input, "END", false));
+            assertEquals("rest", input.readLine());
+        }
+    }
+
+    @Test
+    public void testEndOfInputEndsTheText() throws IOException {
+        assertEquals("a\nb", copyUntil(trickle("a\nb", 2), "EOF", false));
+        assertEquals("a\n", copyUntil(trickle("a\nEOF", 2), "EOF", false));
+        assertEquals("a\nEO", copyUntil(trickle("a\nEO", 2), "EOF", false));
+        assertEquals("x\n", copyUntil(trickle("x\neXiT\n", 4), "Exit", true));
+        assertEquals("x\neXiT\n", copyUntil(trickle("x\neXiT\n", 4), "Exit", false));
+    }
+
+    @Test
+    public void testClosingAHereDocumentSkipsTheRest() throws IOException {
+        SessionInput input = trickle("12345\n67890\nEOF\nnext\n", 5);
+        InputStream document = input.hereDocument("EOF");
+        assertEquals('1', document.read());
+        document.close();
+
+        assertEquals("next", input.readLine());
+        assertEquals(-1, input.hereDocument("EOF").read());
+    }
+}
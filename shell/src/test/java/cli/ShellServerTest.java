@@ -0,0 +1,74 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShellServerTest {
+    private Path testDir;
+    private ShellServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testDir = Files.createTempDirectory("testDir");
+        Files.createDirectory(testDir.resolve("a"));
+        Files.createDirectory(testDir.resolve("b"));
+        server = new ShellServer(ShellServer.parseAddress("0"), testDir);
+        Thread.ofVirtual().start(() -> {
+            try {
+                server.serve();
+            } catch (IOException ignored) {
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        Files.walk(testDir)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(file -> file.delete());
+    }
+
+    @Test
+    public void testSessionsHaveIndependentDirectories() throws IOException {
+        int port = ((InetSocketAddress) server.getAddress()).getPort();
+        try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+            PrintWriter firstIn = new PrintWriter(first.getOutputStream(), true);
+            PrintWriter secondIn = new PrintWriter(second.getOutputStream(), true);
+            BufferedReader firstOut = new BufferedReader(new InputStreamReader(first.getInputStream()));
+            BufferedReader secondOut = new BufferedReader(new InputStreamReader(second.getInputStream()));
+
+            firstIn.println("cd a");
+            firstIn.println("pwd");
+            firstIn.println("exit");
+            secondIn.println("cd b");
+            secondIn.println("pwd");
+            secondIn.println("exit");
+
+            assertTrue(readAll(firstOut).contains(testDir.resolve("a") + System.lineSeparator()));
+            assertTrue(readAll(secondOut).contains(testDir.resolve("b") + System.lineSeparator()));
+        }
+    }
+
+    private static String readAll(BufferedReader reader) throws IOException {
+        StringBuilder text = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            text.append(line).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+}
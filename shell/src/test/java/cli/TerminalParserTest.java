@@ -0,0 +1,804 @@
+package cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TerminalParserTest {
+    private TerminalParser parser;
+    private Path testDir;
+    private ByteArrayOutputStream output;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testDir = Files.createTempDirectory("testDir");
+        parser = new TerminalParser(testDir);
+        output = new ByteArrayOutputStream();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        parser.close();
+        Files.walk(testDir)
+                .map(Path::toFile)
+                .forEach(file -> file.delete());
+    }
+
+    @Test
+    public void testPwd() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(outputStream);
+        System.setOut(printStream);
+
+        parser.processInput("pwd");
+
+        System.setOut(System.out);
+        assertEquals(testDir.toString() + System.lineSeparator(), outputStream.toString());
+    }
+
+    @Test
+    public void testCd() throws IOException {
+        String subDirName = "subDir";
+        Path subDir = testDir.resolve(subDirName);
+        Files.createDirectory(subDir);
+
+        parser.processInput("cd " + subDirName);
+        assertEquals(subDir, parser.getCurrentDirectory());
+
+        parser.processInput("cd ..");
+        assertEquals(testDir, parser.getCurrentDirectory());
+
+        Path initialDir = parser.getCurrentDirectory();
+        parser.processInput("cd .");
+        assertEquals(initialDir, parser.getCurrentDirectory());
+
+        parser.processInput("cd");
+        assertEquals(Paths.get(System.getProperty("user.home")), parser.getCurrentDirectory());
+    }
+
+    @Test
+    public void testMkdir() {
+        String newDirName = "newDir";
+        parser.processInput("mkdir " + newDirName);
+
+        assertTrue(Files.isDirectory(testDir.resolve(newDirName)));
+    }
+
+    @Test
+    public void testTouch() {
+        String fileName = "newFile.txt";
+        parser.processInput("touch " + fileName);
+
+        assertTrue(Files.isRegularFile(testDir.resolve(fileName)));
+    }
+
+    @Test
+    public void testRm() throws IOException {
+        String fileName = "fileToDelete.txt";
+        Path filePath = testDir.resolve(fileName);
+        Files.createFile(filePath);
+
+        parser.processInput("rm " + fileName);
+
+        assertFalse(Files.exists(filePath));
+    }
+
+    @Test
+    public void testMv() throws IOException {
+        String srcFileName = "srcFile.txt";
+        String dstFileName = "dstFile.txt";
+        Path srcFilePath = testDir.resolve(srcFileName);
+        Path dstFilePath = testDir.resolve(dstFileName);
+
+        Files.createFile(srcFilePath);
+        parser.processInput("mv " + srcFileName + " " + dstFileName);
+
+        assertFalse(Files.exists(srcFilePath));
+        assertTrue(Files.exists(dstFilePath));
+    }
+
+    @Test
+    public void testRedirectAndAppend() throws IOException {
+        String sourceFileName = "source.txr";
+        String destinationFileName = "destination.txr";
+
+        String createSourceCommand = "touch " + sourceFileName;
+        parser.processInput(createSourceCommand);
+
+        Files.writeString(testDir.resolve(sourceFileName), "This is the first line." + System.lineSeparator());
+
+        String createDestinationCommand = "touch " + destinationFileName;
+        parser.processInput(createDestinationCommand);
+
+        String commandCatToDest = "cat " + sourceFileName + " > " + destinationFileName;
+        parser.processInput(commandCatToDest);
+
+        Path destinationFilePath = testDir.resolve(destinationFileName);
+        assertTrue(Files.exists(destinationFilePath));
+
+        assertEquals("This is the first line." + System.lineSeparator(), Files.readString(destinationFilePath));
+
+        String commandAppendToDest = "cat " + sourceFileName + " >> " + destinationFileName;
+        parser.processInput(commandAppendToDest);
+
+        String expectedContent = "This is the first line." + System.lineSeparator() + "This is the first line." + System.lineSeparator();
+        assertEquals(expectedContent, Files.readString(destinationFilePath));
+    }
+
+    @Test
+    public void testCat() throws IOException {
+        String fileName = "test.txt";
+        String command = "cat > " + fileName;
+
+        String Input = "This is a test line." + System.lineSeparator() + "Exit" + System.lineSeparator();
+        System.setIn(new ByteArrayInputStream(Input.getBytes()));
+
+        parser.processInput(command);
+
+        Path filePath = testDir.resolve(fileName);
+        assertTrue(Files.exists(filePath));
+
+        String expectedContent = "This is a test line." + System.lineSeparator();
+        assertEquals(expectedContent, Files.readString(filePath));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        String Command = "cat " + fileName;
+        String[] tokens = Command.split("\\s+");
+
+        parser.cat(tokens, null, new PrintStream(output), System.err);
+        assertEquals(expectedContent,output.toString());
+
+    }
+
+    @Test
+    public void testCatStopsAtEndOfInputAndLeavesTheRest() throws IOException {
+        SessionInput input = new SessionInput(new ByteArrayInputStream("a\nb\nexit\nls\n".getBytes(StandardCharsets.UTF_8)));
+        parser.setInput(input);
+
+        parser.processInput("cat > one.txt");
+        assertEquals("a\nb\n", Files.readString(testDir.resolve("one.txt")));
+        assertEquals("ls", input.readLine());
+
+        parser.setInput(new SessionInput(new ByteArrayInputStream("no newline".getBytes(StandardCharsets.UTF_8))));
+        parser.processInput("cat >> one.txt");
+        assertEquals("a\nb\nno newline", Files.readString(testDir.resolve("one.txt")));
+    }
+
+    @Test
+    public void testInputRedirectionAndHereDocuments() throws IOException {
+        Files.writeString(testDir.resolve("in.txt"), "pear\napple\n");
+        SessionInput input = new SessionInput(new ByteArrayInputStream(
+                "b\nEOFX\na\nEOF\nx\nEOF\nnext line\n".getBytes(StandardCharsets.UTF_8)));
+        parser.setInput(input);
+
+        assertEquals(0, parser.processInput("cat < in.txt > copy.txt"));
+        assertEquals("pear\napple\n", Files.readString(testDir.resolve("copy.txt")));
+        assertEquals(0, parser.processInput("sort < in.txt > sorted.txt"));
+        assertEquals(List.of("apple", "pear"), Files.readAllLines(testDir.resolve("sorted.txt")));
+        assertEquals(1, parser.processInput("cat < missing.txt > copy.txt"));
+
+        assertEquals(0, parser.processInput("cat <<EOF | sort > doc.txt"));
+        assertEquals(List.of("EOFX", "a", "b"), Files.readAllLines(testDir.resolve("doc.txt")));
+        // a command that ignores its here-document still consumes it
+        assertEquals(0, parser.processInput("pwd <<EOF > /dev/null"));
+        assertEquals("next line", input.readLine());
+    }
+
+    @Test
+    public void testMutatingCommandsTakeManyOperands() throws IOException {
+        assertEquals(0, parser.processInput("mkdir d1 d2/sub && touch a b c"));
+        assertTrue(Files.isDirectory(testDir.resolve("d2/sub")));
+        assertEquals(1, parser.processInput("touch b x > errors.txt"));
+        assertTrue(Files.exists(testDir.resolve("x")));
+
+        assertEquals(0, parser.processInput("mv a b d1 && cp -t d2 c x && rmdir d2/sub"));
+        assertTrue(Files.exists(testDir.resolve("d1/a")) && Files.exists(testDir.resolve("d1/b")));
+        assertTrue(Files.exists(testDir.resolve("d2/c")) && Files.exists(testDir.resolve("c")));
+        assertFalse(Files.exists(testDir.resolve("d2/sub")));
+        assertEquals(1, parser.processInput("mv c x missing-dir 2> errors.txt"));
+        assertEquals("Not a directory: missing-dir", Files.readString(testDir.resolve("errors.txt")).trim());
+    }
+
+    @Test
+    public void testXargsRunsBatchesInInputOrder() throws IOException {
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            names.append("f-").append(i).append(i % 50 == 0 ? "\n\n" : "\n");
+        }
+        Files.writeString(testDir.resolve("names.txt"), names);
+        Files.createDirectory(testDir.resolve("files"));
+
+        assertEquals(0, parser.processInput("cd files && cat ../names.txt | xargs -n 30 -P 4 touch"));
+        parser.processInput("cd ..");
+        try (Stream<Path> files = Files.list(testDir.resolve("files"))) {
+            assertEquals(250, files.count());
+        }
+        assertEquals(0, parser.processInput("cd files && xargs -n 7 -P 3 wc -l < ../names.txt > ../counts.txt"));
+        parser.processInput("cd ..");
+        List<String> counts = Files.readAllLines(testDir.resolve("counts.txt"));
+        assertEquals("0 f-0", counts.get(0).trim().replaceAll("\\s+", " "));
+        assertEquals("0 f-249", counts.get(counts.size() - 2).trim().replaceAll("\\s+", " "));
+        assertEquals("0 total", counts.get(counts.size() - 1).trim().replaceAll("\\s+", " "));
+
+        Files.delete(testDir.resolve("files/f-42"));
+        assertEquals(1, parser.processInput("cd files && cat ../names.txt | xargs -n 10 rm 2> ../rm.txt"));
+        parser.processInput("cd ..");
+        assertEquals(List.of("File does not exist: f-42", "xargs: rm exited with status 1 on input lines 42-51"),
+                Files.readAllLines(testDir.resolve("rm.txt")));
+        try (Stream<Path> files = Files.list(testDir.resolve("files"))) {
+            assertEquals(0, files.count());
+        }
+        assertEquals(2, parser.processInput("xargs -n 0 touch < names.txt > usage.txt"));
+        assertEquals(127, parser.processInput("xargs nosuch < names.txt > usage.txt"));
+        for (String command : List.of("cd", "xargs", "fg", "wait", "jobs", "history", "cache", "stats", "less")) {
+            assertEquals(127, parser.processInput("ls | xargs -n 1 -P 4 " + command + " 2> usage.txt"), command);
+            assertEquals("Unknown command: " + command, Files.readString(testDir.resolve("usage.txt")).trim());
+        }
+        assertEquals(testDir, parser.getCurrentDirectory());
+    }
+
+    @Test
+    public void testPipe() throws IOException {
+        String dirName = "test.txt";
+
+        parser.processInput("mkdir " + dirName + " | ls");
+
+        Path newDirPath = testDir.resolve(dirName);
+        assertTrue(Files.isDirectory(newDirPath));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        parser.ls(new String[]{"ls"}, new PrintStream(output), System.err);
+
+        assertTrue(output.toString().contains(dirName));
+    }
+
+    @Test
+    public void testPipeStreamsLargeOutput() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append("line ").append(i).append(System.lineSeparator());
+        }
+        Files.writeString(testDir.resolve("big.txt"), content);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+        System.setOut(new PrintStream(outputStream));
+        try {
+            parser.processInput("cat big.txt | cat | cat");
+        } finally {
+            System.setOut(originalOut);
+        }
+
+        assertEquals(content.toString(), outputStream.toString());
+    }
+
+    @Test
+    public void testCatRedirectIsBinarySafe() throws IOException {
+        byte[] content = {'a', '\r', '\n', 0, (byte) 0xff, (byte) 0xc3, '\n', 'b'};
+        Files.write(testDir.resolve("data.bin"), content);
+
+        parser.processInput("cat data.bin > copy.bin");
+        assertArrayEquals(content, Files.readAllBytes(testDir.resolve("copy.bin")));
+
+        parser.processInput("cat data.bin >> copy.bin");
+        byte[] doubled = new byte[content.length * 2];
+        System.arraycopy(content, 0, doubled, 0, content.length);
+        System.arraycopy(content, 0, doubled, content.length, content.length);
+        assertArrayEquals(doubled, Files.readAllBytes(testDir.resolve("copy.bin")));
+    }
+
+    @Test
+    public void testRedirectionTruncatesAndCreates() throws IOException {
+        String pwd = testDir + System.lineSeparator();
+        Files.writeString(testDir.resolve("out.txt"), "stale content much longer than the new one" + pwd);
+
+        parser.processInput("pwd > out.txt");
+        assertEquals(pwd, Files.readString(testDir.resolve("out.txt")));
+
+        parser.processInput("pwd >> new.log");
+        parser.processInput("pwd >> new.log");
+        assertEquals(pwd + pwd, Files.readString(testDir.resolve("new.log")));
+
+        // the cached append channel must not outlive the file it was opened on
+        parser.processInput("rm new.log");
+        parser.processInput("pwd >> new.log");
+        assertEquals(pwd, Files.readString(testDir.resolve("new.log")));
+    }
+
+    @Test
+    public void testGlobExpansion() throws IOException {
+        for (String file : List.of("a.tmp", "b.tmp", "keep.txt", "out/x.class", "out/deep/y.class", "src/Z.java")) {
+            Path path = testDir.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.createFile(path);
+        }
+
+        assertEquals(0, parser.processInput("ls s* > list.txt"));
+        assertEquals("Z.java" + System.lineSeparator(), Files.readString(testDir.resolve("list.txt")));
+        assertEquals(1, parser.processInput("ls 's*'"));
+
+        assertEquals(0, parser.processInput("rm *.tmp **/*.class"));
+        assertFalse(Files.exists(testDir.resolve("a.tmp")));
+        assertFalse(Files.exists(testDir.resolve("out/deep/y.class")));
+        assertTrue(Files.exists(testDir.resolve("src/Z.java")));
+
+        assertEquals(1, parser.processInput("rm *.tmp 2> rm.txt"));
+        assertEquals("File does not exist: *.tmp" + System.lineSeparator(), Files.readString(testDir.resolve("rm.txt")));
+
+        assertEquals(0, parser.processInput("rm -r o*"));
+        assertFalse(Files.exists(testDir.resolve("out")));
+    }
+
+    @Test
+    public void testInMemoryFileSystem() throws IOException {
+        try (MemoryFileSystem fileSystem = MemoryFileSystem.newFileSystem()) {
+            Path home = fileSystem.getPath("/home/user");
+            Files.createDirectories(home);
+            ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(terminal, true);
+            try (TerminalParser memory = new TerminalParser(fileSystem, home, fileSystem.getPath("/"),
+                    InputStream.nullInputStream(), out, out)) {
+                assertEquals(0, memory.processInput("cd"));
+                assertEquals(0, memory.processInput("mkdir src/main && touch src/main/A.java && touch src/B.java"));
+                assertEquals(0, memory.processInput("pwd > src/main/where.txt; cp -r src copy"));
+                assertEquals(0, memory.processInput("rm -r src"));
+                terminal.reset();
+                assertEquals(0, memory.processInput("find copy -name *.java | sort"));
+                assertEquals("copy/B.java" + System.lineSeparator() + "copy/main/A.java" + System.lineSeparator(),
+                        terminal.toString());
+                assertEquals("/home/user" + System.lineSeparator(),
+                        Files.readString(home.resolve("copy/main/where.txt")));
+            }
+        }
+        // nothing of it reached the disk
+        assertFalse(Files.exists(testDir.resolve("copy")));
+    }
+
+    @Test
+    public void testCompletion() throws IOException {
+        Files.createDirectory(testDir.resolve("src"));
+        Files.createFile(testDir.resolve("my file.txt"));
+
+        assertEquals("tory ", parser.complete("his").extension());
+        assertEquals("ep ", parser.complete("ls | wc -l && gr").extension());
+        assertEquals("rt ", parser.complete("time so").extension());
+        assertEquals(List.of("cache", "cat"), parser.complete("ca").candidates());
+        assertEquals("rc/", parser.complete("cd s").extension());
+        assertEquals("\\ file.txt ", parser.complete("cat my").extension());
+        assertEquals(" file.txt\" ", parser.complete("cat \"my").extension());
+
+        parser.processInput("touch src/Main.java");
+        assertEquals("ain.java ", parser.complete("wc -l < src/M").extension());
+        parser.processInput("rm src/Main.java");
+        assertTrue(parser.complete("cat src/").candidates().isEmpty());
+    }
+
+    @Test
+    public void testChecksumsAndDu() throws IOException {
+        Files.createDirectories(testDir.resolve("data/sub"));
+        Files.writeString(testDir.resolve("data/abc.txt"), "abc");
+        Files.write(testDir.resolve("data/sub/big.bin"), new byte[2900]);
+
+        assertEquals(1, parser.processInput("sha256sum data/abc.txt data/missing data/abc.txt > sums.txt 2>&1"));
+        assertEquals(List.of(
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad  data/abc.txt",
+                "File does not exist: data/missing",
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad  data/abc.txt"),
+                Files.readAllLines(testDir.resolve("sums.txt")));
+        parser.processInput("cat data/abc.txt | md5sum > md5.txt");
+        assertEquals("900150983cd24fb0d6963f7d28e17f72  -", Files.readString(testDir.resolve("md5.txt")).trim());
+
+        parser.processInput("du -s data > du.txt");
+        assertEquals("3\tdata", Files.readString(testDir.resolve("du.txt")).trim());
+        parser.processInput("du -h data > du.txt");
+        assertEquals(List.of("2.9K\tdata/sub", "2.9K\tdata"), Files.readAllLines(testDir.resolve("du.txt")));
+        assertEquals("3.0K", DirectoryLister.humanSize(3003));
+        assertEquals("1023", DirectoryLister.humanSize(1023));
+        assertEquals("15M", DirectoryLister.humanSize(15L * 1024 * 1024 - 5));
+    }
+
+    @Test
+    public void testLessPassesThroughWhenNotPaging() throws IOException {
+        Files.writeString(testDir.resolve("lines.txt"), "one\ntwo\nthree\n");
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(terminal, true);
+        try (TerminalParser shell = new TerminalParser(testDir, InputStream.nullInputStream(), out, out)) {
+            shell.setTerminalIsTty(true); // but its output is the injected stream, not the TTY
+            assertEquals(0, shell.processInput("cat lines.txt | less"));
+            assertEquals(0, shell.processInput("less lines.txt > copy.txt"));
+            assertEquals(1, shell.processInput("more missing.txt"));
+            assertEquals(2, shell.processInput("less a b"));
+        }
+        assertEquals("one\ntwo\nthree\n", Files.readString(testDir.resolve("copy.txt")));
+        assertTrue(terminal.toString().startsWith("one\ntwo\nthree\nFile does not exist: missing.txt"));
+    }
+
+    @Test
+    public void testCompletedCommandsAreKnown() throws IOException {
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(terminal, true);
+        try (TerminalParser quiet = new TerminalParser(testDir, InputStream.nullInputStream(), out, out)) {
+            for (String command : TerminalParser.COMMANDS) {
+                quiet.processInput(command + " no-such-operand");
+            }
+        }
+        assertFalse(terminal.toString().contains("Unknown command"), terminal.toString());
+    }
+
+    @Test
+    public void testErrorRedirection() throws IOException {
+        assertEquals(1, parser.processInput("pwd 2> err.txt > missing/out.txt"));
+        assertTrue(Files.readString(testDir.resolve("err.txt")).startsWith("Error writing to file: "));
+
+        parser.processInput("pwd > out.txt 2>&1 >> missing/out.txt");
+        assertTrue(Files.readString(testDir.resolve("out.txt")).startsWith("Error writing to file: "));
+
+        assertEquals(1, parser.processInput("ls nosuchdir 2> err.txt > out.txt"));
+        assertEquals("", Files.readString(testDir.resolve("out.txt")));
+        assertEquals("File does not exist: nosuchdir" + System.lineSeparator(), Files.readString(testDir.resolve("err.txt")));
+        assertEquals(1, parser.processInput("cat missing 2> err.txt"));
+        assertEquals("File does not exist: missing" + System.lineSeparator(), Files.readString(testDir.resolve("err.txt")));
+    }
+
+    @Test
+    public void testFailedWritesToRedirectionTargetsAreReported() {
+        Path full = Paths.get("/dev/full");
+        assumeTrue(Files.isWritable(full));
+        TerminalParser session = new TerminalParser(testDir, null, new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(output));
+        try {
+            assertEquals(1, session.processInput("pwd > " + full));
+            assertEquals("Error writing to file: " + full + System.lineSeparator(), output.toString());
+            output.reset();
+            assertEquals(1, session.processInput("pwd >> " + full));
+            assertEquals("Error writing to file: " + full + System.lineSeparator(), output.toString());
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    public void testSequencing() {
+        assertEquals(0, parser.processInput("touch a.txt ; touch b.txt"));
+        assertTrue(Files.exists(testDir.resolve("b.txt")));
+
+        assertEquals(1, parser.processInput("rm missing.txt && touch c.txt"));
+        assertFalse(Files.exists(testDir.resolve("c.txt")));
+        assertEquals(0, parser.processInput("rm missing.txt ; touch c.txt"));
+        assertTrue(Files.exists(testDir.resolve("c.txt")));
+    }
+
+    @Test
+    public void testBackgroundJobs() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append("line ").append(i).append(System.lineSeparator());
+        }
+        Files.writeString(testDir.resolve("big.txt"), content);
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        TerminalParser session = new TerminalParser(testDir, null, new PrintStream(terminal), new PrintStream(output));
+        try {
+            assertEquals(0, session.processInput("cat big.txt & cat big.txt | wc -l &"));
+            assertEquals("[1]" + System.lineSeparator() + "[2]" + System.lineSeparator(), output.toString());
+            assertEquals("", terminal.toString());
+
+            assertEquals(0, session.processInput("wait %2"));
+            assertEquals(String.format(" %7d%n", 5000), terminal.toString());
+            terminal.reset();
+
+            session.processInput("jobs");
+            assertTrue(terminal.toString().startsWith("[1] "));
+            terminal.reset();
+            assertEquals(0, session.processInput("fg"));
+            assertEquals(content.toString(), terminal.toString());
+            terminal.reset();
+
+            output.reset();
+            assertEquals(TerminalParser.STATUS_NOT_FOUND, session.processInput("wait %1"));
+            assertEquals("", terminal.toString());
+            assertEquals("No such job: %1" + System.lineSeparator(), output.toString());
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    public void testHistoryExpansion() throws IOException {
+        Path file = Files.createTempFile("history", ".log");
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        TerminalParser session = new TerminalParser(testDir, null, new PrintStream(terminal), new PrintStream(output));
+        try {
+            session.setHistory(CommandHistory.open(file));
+            session.processInput("touch a.txt");
+            session.processInput("pwd");
+            terminal.reset();
+
+            assertEquals(0, session.processInput("!pw"));
+            assertEquals("pwd" + System.lineSeparator() + testDir + System.lineSeparator(), terminal.toString());
+            assertEquals(1, session.processInput("!mkdir"));
+
+            terminal.reset();
+            session.processInput("history 2");
+            assertEquals(String.format("%5d  pwd%n%5d  history 2%n", 3, 4), terminal.toString());
+        } finally {
+            session.close();
+            CommandHistory.open(file).close();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTimeAndStats() throws IOException {
+        Files.writeString(testDir.resolve("a.txt"), "hello" + System.lineSeparator());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        System.setOut(new PrintStream(outputStream));
+        System.setErr(new PrintStream(errorStream));
+        try {
+            parser.processInput("time cat a.txt | cat");
+            parser.processInput("stats");
+        } finally {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+
+        assertTrue(errorStream.toString().contains("real"));
+        String stats = outputStream.toString();
+        assertTrue(stats.startsWith("hello" + System.lineSeparator()));
+        assertTrue(stats.contains("cat               2"), stats);
+    }
+
+    @Test
+    void testRmdirWithoutArguments() {
+        String[] tokens = {"rmdir"};
+        parser.rmdir(tokens, System.out, new PrintStream(output));
+
+        assertEquals("Usage: rmdir <dir>..." + System.lineSeparator(), output.toString());
+    }
+
+    @Test
+    void testRmdirNonExistentDirectory() {
+        String[] tokens = {"rmdir", "nonExistentDir"};
+        parser.rmdir(tokens, System.out, new PrintStream(output));
+
+        assertEquals("Directory does not exist: nonExistentDir" + System.lineSeparator(), output.toString());
+    }
+
+    @Test
+    void testRmdirEmptyDirectory() throws IOException {
+        Path emptyDir = Files.createDirectory(testDir.resolve("emptyDir"));
+        String[] tokens = {"rmdir", "emptyDir"};
+
+        parser.rmdir(tokens, System.out, new PrintStream(output));
+
+        assertTrue(Files.notExists(emptyDir));
+        assertEquals("", output.toString());
+    }
+
+    @Test
+    void testRmdirNonEmptyDirectory() throws IOException {
+        Path nonEmptyDir = Files.createDirectory(testDir.resolve("nonEmptyDir"));
+        Files.createFile(nonEmptyDir.resolve("file.txt"));
+        String[] tokens = {"rmdir", "nonEmptyDir"};
+
+        parser.rmdir(tokens, System.out, new PrintStream(output));
+
+        assertTrue(Files.exists(nonEmptyDir));
+        assertEquals("Directory not empty: nonEmptyDir" + System.lineSeparator(), output.toString());
+    }
+
+    @Test
+    public void testLs() throws IOException {
+        String fileName1 = "file1.txt";
+        String fileName2 = "file2.txt";
+
+        parser.processInput("touch " + fileName1);
+        parser.processInput("touch " + fileName2);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        parser.ls(new String[]{"ls"}, new PrintStream(output), System.err);
+        assertEquals(fileName1 + System.lineSeparator() + fileName2 + System.lineSeparator(), output.toString());
+    }
+
+    @Test
+    public void testLsAll() throws IOException {
+        String fileName1 = "file1.txt";
+        String fileName2 = "file2.txt";
+        String hiddenFile = ".hiddenFile";
+
+        parser.processInput("touch " + fileName1);
+        parser.processInput("touch " + fileName2);
+        parser.processInput("touch " + hiddenFile);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        parser.ls(new String[]{"ls", "-a"}, new PrintStream(output), System.err);
+        assertTrue(output.toString().contains(hiddenFile), "Hidden file not found in ls -a output");
+    }
+
+    @Test
+    public void testLsBySizeAndLongFormat() throws IOException {
+        Files.writeString(testDir.resolve("small.txt"), "a");
+        Files.writeString(testDir.resolve("large.txt"), "a".repeat(100));
+        Files.createFile(testDir.resolve("empty.txt"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        parser.ls(new String[]{"ls", "-S"}, new PrintStream(output), System.err);
+        assertEquals("large.txt" + System.lineSeparator() + "small.txt" + System.lineSeparator()
+                + "empty.txt" + System.lineSeparator(), output.toString());
+
+        output.reset();
+        parser.ls(new String[]{"ls", "-lr"}, new PrintStream(output), System.err);
+        String[] lines = output.toString().split(System.lineSeparator());
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].endsWith(" small.txt"), lines[0]);
+        assertTrue(lines[1].matches("-[rwx-]{9} .* 100 .* large\\.txt"), lines[1]);
+    }
+
+    @Test
+    public void testLsUnsortedListsEverything() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            Files.createFile(testDir.resolve("f" + i));
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        parser.ls(new String[]{"ls", "-U"}, new PrintStream(output), System.err);
+        assertEquals(50, output.toString().split(System.lineSeparator()).length);
+    }
+
+    @Test
+    public void testLsListsFilesThenDirectories() throws IOException {
+        Files.createFile(testDir.resolve("b.log"));
+        Files.createFile(testDir.resolve("a.log"));
+        Files.createFile(testDir.resolve("c.txt"));
+        Files.createDirectories(testDir.resolve("old.log"));
+        Files.createFile(testDir.resolve("old.log/x.log"));
+        String n = System.lineSeparator();
+
+        assertEquals(0, parser.processInput("ls *.log > out.txt"));
+        assertEquals("a.log" + n + "b.log" + n + n + "old.log:" + n + "x.log" + n,
+                Files.readString(testDir.resolve("out.txt")));
+
+        assertEquals(0, parser.processInput("ls -l c.txt > out.txt"));
+        assertTrue(Files.readString(testDir.resolve("out.txt")).matches("-[rwx-]{9} .* 0 .* c\\.txt\\R"));
+
+        assertEquals(0, parser.processInput("ls old.log > out.txt"));
+        assertEquals("x.log" + n, Files.readString(testDir.resolve("out.txt")));
+        assertEquals(1, parser.processInput("ls missing c.txt > out.txt 2> err.txt"));
+        assertEquals("c.txt" + n, Files.readString(testDir.resolve("out.txt")));
+        assertEquals("File does not exist: missing" + n, Files.readString(testDir.resolve("err.txt")));
+    }
+
+    @Test
+    public void testLsReverse() throws IOException {
+        String fileName1 = "file1.txt";
+        String fileName2 = "file2.txt";
+
+        parser.processInput("touch " + fileName1);
+        parser.processInput("touch " + fileName2);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        parser.ls(new String[]{"ls", "-r"}, new PrintStream(output), System.err);
+        assertEquals(fileName2 + System.lineSeparator() + fileName1 + System.lineSeparator(), output.toString());
+    }
+
+    @Test
+    public void testCacheSeesShellMutations() throws IOException, InterruptedException {
+        Files.createFile(testDir.resolve("file1.txt"));
+        Files.createDirectory(testDir.resolve("out"));
+        parser.processInput("cache on");
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        parser.ls(new String[]{"ls"}, new PrintStream(output), System.err);
+        parser.processInput("touch file2.txt");
+        output.reset();
+        parser.ls(new String[]{"ls"}, new PrintStream(output), System.err);
+        assertEquals("file1.txt" + System.lineSeparator() + "file2.txt" + System.lineSeparator()
+                + "out" + System.lineSeparator(), output.toString());
+
+        parser.processInput("rm file1.txt");
+        output.reset();
+        parser.ls(new String[]{"ls"}, new PrintStream(output), System.err);
+        parser.ls(new String[]{"ls"}, new PrintStream(output), System.err);
+        assertEquals(("file2.txt" + System.lineSeparator() + "out" + System.lineSeparator()).repeat(2), output.toString());
+
+        // the watcher may still be dropping the listing for the changes above, so list until one is served
+        // from the cache, keeping the stats out of the listed directory
+        String stats = "";
+        for (int attempt = 0; attempt < 100; attempt++) {
+            parser.ls(new String[]{"ls"}, new PrintStream(new ByteArrayOutputStream()), System.err);
+            parser.processInput("cache stats > out/stats.txt");
+            stats = Files.readString(testDir.resolve("out/stats.txt"));
+            if (stats.matches("(?s).*listings +[1-9]\\d* hits.*")) break;
+            Thread.sleep(20);
+        }
+        assertTrue(stats.matches("(?s).*listings +[1-9]\\d* hits.*"), stats);
+    }
+
+    @Test
+    public void testCpAndRmRecursive() throws IOException {
+        Files.createDirectories(testDir.resolve("src/sub"));
+        Files.writeString(testDir.resolve("src/sub/a.txt"), "a");
+        Files.createDirectory(testDir.resolve("dst"));
+
+        assertEquals(1, parser.processInput("cp src copy"));
+        assertEquals(0, parser.processInput("cp -r src dst"));
+        assertEquals("a", Files.readString(testDir.resolve("dst/src/sub/a.txt")));
+        assertEquals(1, parser.processInput("cp -r src src/sub"));
+
+        assertEquals(0, parser.processInput("rm -r src dst"));
+        assertFalse(Files.exists(testDir.resolve("src")));
+        assertFalse(Files.exists(testDir.resolve("dst")));
+        assertEquals(1, parser.processInput("rm -r src"));
+    }
+
+    @Test
+    public void testGrepAndFind() throws IOException {
+        Files.createDirectories(testDir.resolve("logs/b"));
+        Files.writeString(testDir.resolve("logs/a.log"), "ok\nERROR one\n");
+        Files.writeString(testDir.resolve("logs/b/c.log"), "ERROR two\n");
+        Files.writeString(testDir.resolve("logs/b/d.txt"), "fine\n");
+
+        parser.processInput("grep -r ERROR logs > grep.txt");
+        assertEquals("logs/a.log:ERROR one" + System.lineSeparator() + "logs/b/c.log:ERROR two" + System.lineSeparator(),
+                Files.readString(testDir.resolve("grep.txt")).replace('\\', '/'));
+
+        parser.processInput("find logs -name '*.log' | grep c.log > find.txt");
+        assertEquals("logs/b/c.log" + System.lineSeparator(),
+                Files.readString(testDir.resolve("find.txt")).replace('\\', '/'));
+
+        assertEquals(1, parser.processInput("grep missing logs/a.log"));
+    }
+
+    @Test
+    public void testHeadTailAndWc() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= 1000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        Files.writeString(testDir.resolve("lines.txt"), text);
+
+        parser.processInput("head -n 2 lines.txt > head.txt");
+        assertEquals("line 1\nline 2\n", Files.readString(testDir.resolve("head.txt")));
+
+        parser.processInput("tail -n 2 lines.txt > tail.txt");
+        assertEquals("line 999\nline 1000\n", Files.readString(testDir.resolve("tail.txt")));
+
+        parser.processInput("cat lines.txt | tail -n 1 > piped.txt");
+        assertEquals("line 1000\n", Files.readString(testDir.resolve("piped.txt")));
+
+        parser.processInput("wc lines.txt > wc.txt");
+        assertEquals("1000 2000 " + text.length() + " lines.txt",
+                Files.readString(testDir.resolve("wc.txt")).trim().replaceAll(" +", " "));
+    }
+
+    @Test
+    public void testSortAndUniq() throws IOException {
+        Files.writeString(testDir.resolve("in.txt"), "10 b\n9 a\n-3 c\n10 a\n9 a\n");
+
+        parser.processInput("sort -n in.txt > numeric.txt");
+        assertEquals(List.of("-3 c", "9 a", "9 a", "10 a", "10 b"), Files.readAllLines(testDir.resolve("numeric.txt")));
+
+        parser.processInput("sort -r -k 2 in.txt > keyed.txt");
+        assertEquals(List.of("-3 c", "10 b", "9 a", "9 a", "10 a"), Files.readAllLines(testDir.resolve("keyed.txt")));
+
+        parser.processInput("cat in.txt | sort | uniq -c > counted.txt");
+        assertEquals(List.of("1 -3 c", "1 10 a", "1 10 b", "2 9 a"),
+                Files.readAllLines(testDir.resolve("counted.txt")).stream().map(String::trim).toList());
+    }
+}
@@ -0,0 +1,34 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WordCountTest {
+    private static WordCount count(String text) throws IOException {
+        return WordCount.of(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), true);
+    }
+
+    @Test
+    public void testCountsLinesWordsAndBytes() throws IOException {
+        WordCount count = count("one two\n  three\t four\n\nfive");
+        assertEquals(3, count.getLines());
+        assertEquals(5, count.getWords());
+        assertEquals(27, count.getBytes());
+    }
+
+    @Test
+    public void testMergeJoinsWordsSplitAcrossChunks() throws IOException {
+        String text = "alpha beta\ngamma delta epsilon\n";
+        WordCount whole = count(text);
+        for (int split = 0; split <= text.length(); split++) {
+            WordCount merged = count(text.substring(0, split)).merge(count(text.substring(split)));
+            assertEquals(whole.getWords(), merged.getWords(), "split at " + split);
+            assertEquals(whole.getLines(), merged.getLines());
+            assertEquals(whole.getBytes(), merged.getBytes());
+        }
+    }
+}